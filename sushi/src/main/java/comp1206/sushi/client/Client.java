@@ -9,6 +9,8 @@ import org.apache.logging.log4j.Logger;
 public class Client implements ClientInterface
 {
 	private static final Logger logger = LogManager.getLogger("Client");
+	private static final long STALE_POSITION_TIME = 3000;
+	private static final PositionFeed NO_POSITIONS = new PositionFeed(0, new String[0], new double[0], new double[0], new float[0]);
 
 	private Restaurant restaurant;
 	private User loggedInUser = null;
@@ -16,6 +18,9 @@ public class Client implements ClientInterface
 	private final ArrayList<Postcode> postcodes = new ArrayList<>();
 	private final ArrayList<Dish> dishes = new ArrayList<>();
 	private final ArrayList<UpdateListener> listeners = new ArrayList<>();
+	private volatile PositionFeed positionFeed = NO_POSITIONS;
+	private volatile long positionFeedReceived = 0;
+	private volatile ServiceArea serviceArea;
 	private final ClientComms comms = new ClientComms(this);
 	
 	public Client()
@@ -55,6 +60,13 @@ public class Client implements ClientInterface
 				return null;
 		}
 
+		// Users outside of the service area can't be delivered to.
+		if (serviceArea != null && serviceArea.getRadius() > 0 && !serviceArea.covers(postcode))
+		{
+			logger.warn("Unable to register as " + postcode.getName() + " is outside of the service area.");
+			return null;
+		}
+
 		// If it does not, create a new user and return it.
 		User user = new User(username, password, address, postcode);
 		this.users.add(user);
@@ -166,7 +178,14 @@ public class Client implements ClientInterface
 		order.setOrderedDishes(basket);
 		user.placeOrder(order);
 		order.setStatus("Preparing");
+
+		long quote = getDeliveryQuote(user);
+
+		if (quote >= 0)
+			logger.info("Order " + order.getName() + " is expected to be delivered in " + Math.round(quote / 60000.0) + " minutes.");
+
 		comms.sendMessage("NEW ORDER", order, loggedInUser);
+		trackOrder(order);
 		this.notifyUpdate();
 		return order;
 	}
@@ -230,6 +249,72 @@ public class Client implements ClientInterface
 
 	public void setRestaurant(Restaurant restaurant) { this.restaurant = restaurant; }
 
+	public void setServiceArea(ServiceArea serviceArea) { this.serviceArea = serviceArea; }
+
+	public ServiceArea getServiceArea() { return serviceArea; }
+
+	// rejectRegistration(User): Undoes the registration of the passed user, which the server rejected as their postcode is outside of the service area, logging them out.
+	public void rejectRegistration(User user)
+	{
+		logger.warn("Registration of \"" + user.getName() + "\" was rejected by the server as " + user.getPostcode().getName() + " is outside of the service area.");
+
+		users.removeIf(u -> u.getName().equals(user.getName()));
+
+		if (loggedInUser != null && loggedInUser.getName().equals(user.getName()))
+			loggedInUser = null;
+
+		this.notifyUpdate();
+	}
+
+	// getDeliveryQuote(User): Returns the number of milliseconds a delivery to the user is quoted to take, or -1 if it can't be quoted.
+	public long getDeliveryQuote(User user)
+	{
+		ServiceArea area = serviceArea;
+		return (area == null) ? -1 : area.getQuote(user.getPostcode());
+	}
+
+	// trackOrder(Order): Subscribes to the live position of the drone delivering the passed order.
+	public void trackOrder(Order order)
+	{
+		comms.sendMessage("TRACK ORDER", order);
+	}
+
+	public void setPositionFeed(PositionFeed positionFeed)
+	{
+		this.positionFeed = positionFeed;
+		this.positionFeedReceived = System.currentTimeMillis();
+	}
+
+	// getPositionFeed(): Returns the latest PositionFeed, or an empty one if the server has stopped sending positions (i.e. none of the tracked orders are out for delivery).
+	private PositionFeed getPositionFeed()
+	{
+		if (System.currentTimeMillis() - positionFeedReceived > STALE_POSITION_TIME)
+			return NO_POSITIONS;
+
+		return positionFeed;
+	}
+
+	// getOrderPosition(Order): Returns the latest latitude and longitude of the drone delivering the passed order, or null if it is not out for delivery.
+	public double[] getOrderPosition(Order order)
+	{
+		PositionFeed feed = getPositionFeed();
+		int index = feed.indexOf(order.getId());
+
+		if (index < 0)
+			return null;
+
+		return new double[] { feed.getLatitude(index), feed.getLongitude(index) };
+	}
+
+	// getOrderProgress(Order): Returns the progress of the delivery of the passed order, or 0 if it is not out for delivery.
+	public float getOrderProgress(Order order)
+	{
+		PositionFeed feed = getPositionFeed();
+		int index = feed.indexOf(order.getId());
+
+		return (index < 0) ? 0 : feed.getProgress(index);
+	}
+
 	@Override
 	public void addUpdateListener(UpdateListener listener)
 	{
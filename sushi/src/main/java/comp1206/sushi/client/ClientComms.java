@@ -115,6 +115,10 @@ public class ClientComms extends Thread implements Comms
                         output.writeObject((User)model);
                         break;
 
+                    case "TRACK ORDER":
+                        output.writeObject((Order)model);
+                        break;
+
                     default:
                         throw new IOException("Attempting to send unrecognised command - " + message);
                 }
@@ -188,6 +192,7 @@ public class ClientComms extends Thread implements Comms
         client.getDishes().addAll((List<Dish>)input.readObject());
         client.getUsers().clear();
         client.getUsers().addAll((List<User>)input.readObject());
+        client.setServiceArea((ServiceArea)input.readObject());
     }
 
     // receiveMessage(): Receives any messages from the Server.
@@ -246,6 +251,19 @@ public class ClientComms extends Thread implements Comms
                     clearData();
                     break;
 
+                case "SERVICE AREA":
+                    client.setServiceArea((ServiceArea)input.readObject());
+                    break;
+
+                case "REGISTRATION REJECTED":
+                    client.rejectRegistration((User)input.readObject());
+                    break;
+
+                case "DRONE POSITIONS":
+                    // Position updates don't change anything shown by the user interface, so return without notifying it.
+                    client.setPositionFeed((PositionFeed)input.readObject());
+                    return;
+
                 default:
                     throw new IOException("Unrecognised message received - " + message);
             }
@@ -307,10 +325,13 @@ public class ClientComms extends Thread implements Comms
         return dish;
     }
 
-    // addPostcode(): Adds the passed Postcode object to the client.
+    // addPostcode(): Adds the passed Postcode object to the client, unless it already has it.
     private void addPostcode() throws IOException, ClassNotFoundException
     {
-        client.getPostcodes().add((Postcode)input.readObject());
+        Postcode postcode = (Postcode)input.readObject();
+
+        if (!client.getPostcodes().contains(postcode))
+            client.getPostcodes().add(postcode);
     }
 
     // editPostcode(): Removes the passed Postcode object and then adds it back to the client.
@@ -320,21 +341,12 @@ public class ClientComms extends Thread implements Comms
         client.getPostcodes().add(postcode);
     }
 
-    // removePostcode(): Removes the passed Postcode object based on it's name.
+    // removePostcode(): Removes the passed Postcode object, which is the client's own copy once deserialised.
     private Postcode removePostcode() throws IOException, ClassNotFoundException
     {
         Postcode postcode = (Postcode)input.readObject();
-        Postcode clientPostcode = null;
-
-        for (Postcode p : client.getPostcodes())
-        {
-            if (p.getName().equals(postcode.getName()))
-            {
-                clientPostcode = p;
-            }
-        }
 
-        client.getPostcodes().remove(clientPostcode);
+        client.getPostcodes().remove(postcode);
         return postcode;
     }
 
@@ -368,7 +380,7 @@ public class ClientComms extends Thread implements Comms
         client.getOrders(client.getLoggedInUser()).add(order);
     }
 
-    // removeOrder(): Removes the passed Order object, based on it's name, from the list of orders of the logged in user.
+    // removeOrder(): Removes the passed Order object, based on it's ID, from the list of orders of the logged in user.
     private Order removeOrder() throws IOException, ClassNotFoundException
     {
         Order order = (Order)input.readObject();
@@ -376,7 +388,7 @@ public class ClientComms extends Thread implements Comms
 
         for (Order o : client.getOrders(client.getLoggedInUser()))
         {
-            if (o.getName().equals(order.getName()))
+            if (o.getId().equals(order.getId()))
             {
                 clientOrder = o;
                 break;
@@ -0,0 +1,65 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// ChargingStation class: Models the charging bays at the restaurant, queuing drones in arrival order whenever every bay is occupied.
+public class ChargingStation
+{
+    private int bays;
+    private int occupied = 0;
+    private final Deque<Thread> queue = new ArrayDeque<>();
+
+    public ChargingStation(int bays)
+    {
+        setBays(bays);
+    }
+
+    // acquireBay(): Blocks until the calling thread is at the front of the queue and a bay is free, then occupies that bay.
+    public synchronized void acquireBay() throws InterruptedException
+    {
+        Thread thread = Thread.currentThread();
+        queue.addLast(thread);
+
+        try
+        {
+            while (queue.peekFirst() != thread || occupied >= bays)
+            {
+                wait();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            // Leave the queue so that the drones behind this one are not held up.
+            queue.remove(thread);
+            notifyAll();
+            throw ex;
+        }
+
+        queue.removeFirst();
+        occupied++;
+
+        // Wake the rest of the queue in case another bay is also free.
+        notifyAll();
+    }
+
+    // releaseBay(): Frees up a bay and wakes up any drones waiting in the queue.
+    public synchronized void releaseBay()
+    {
+        occupied = Math.max(occupied - 1, 0);
+        notifyAll();
+    }
+
+    // setBays(int): Sets the number of charging bays at the restaurant (at least 1).
+    public synchronized void setBays(int bays)
+    {
+        this.bays = Math.max(bays, 1);
+        notifyAll();
+    }
+
+    public synchronized int getBays() { return bays; }
+
+    public synchronized int getOccupiedBays() { return occupied; }
+
+    public synchronized int getQueueLength() { return queue.size(); }
+}
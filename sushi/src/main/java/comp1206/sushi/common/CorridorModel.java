@@ -0,0 +1,242 @@
+package comp1206.sushi.common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// CorridorModel class: TravelTimeModel that keeps drones out of circular no-fly zones, sending any leg that would cross one through a network of corridor waypoints instead.
+// The cheapest route between every pair of waypoints is found with Dijkstra's algorithm when the model is loaded, so routing a blocked leg only has to pick the best
+// waypoint to join the network at and the best one to leave it at.
+// The model is loaded from a file of lines in the same style as the configuration file:
+//   NOFLY:<lat>:<long>:<radius in metres>
+//   WAYPOINT:<lat>:<long>
+//   WIND:<speed in metres per second>:<bearing it blows from in degrees>
+public class CorridorModel implements TravelTimeModel
+{
+    private static final Logger logger = LogManager.getLogger("CorridorModel");
+
+    private final String name;
+    private final TravelTimeModel legs;
+
+    private final double[] zoneLatRadians;
+    private final double[] zoneLonRadians;
+    private final double[] zoneCosLatitudes;
+    private final double[] zoneRadii;
+
+    private final double[] waypointLatRadians;
+    private final double[] waypointLonRadians;
+    private final double[] waypointCosLatitudes;
+
+    // The cost of the cheapest route from each waypoint to every other one, through the waypoints only.
+    private final double[][] routes;
+
+    private final AtomicBoolean warned = new AtomicBoolean(false);
+
+    // CorridorModel(String, TravelTimeModel, double[][], double[][]): Creates a model flying each leg with the passed model, avoiding the passed zones (latitude, longitude and
+    // radius) by way of the passed waypoints (latitude and longitude), all in degrees and metres.
+    public CorridorModel(String name, TravelTimeModel legs, double[][] zones, double[][] waypoints)
+    {
+        this.name = name;
+        this.legs = legs;
+
+        zoneLatRadians = new double[zones.length];
+        zoneLonRadians = new double[zones.length];
+        zoneCosLatitudes = new double[zones.length];
+        zoneRadii = new double[zones.length];
+
+        for (int i = 0; i < zones.length; i++)
+        {
+            zoneLatRadians[i] = Math.toRadians(zones[i][0]);
+            zoneLonRadians[i] = Math.toRadians(zones[i][1]);
+            zoneCosLatitudes[i] = Math.cos(zoneLatRadians[i]);
+            zoneRadii[i] = zones[i][2];
+        }
+
+        waypointLatRadians = new double[waypoints.length];
+        waypointLonRadians = new double[waypoints.length];
+        waypointCosLatitudes = new double[waypoints.length];
+
+        for (int i = 0; i < waypoints.length; i++)
+        {
+            waypointLatRadians[i] = Math.toRadians(waypoints[i][0]);
+            waypointLonRadians[i] = Math.toRadians(waypoints[i][1]);
+            waypointCosLatitudes[i] = Math.cos(waypointLatRadians[i]);
+        }
+
+        routes = new double[waypoints.length][];
+
+        for (int i = 0; i < waypoints.length; i++)
+        {
+            routes[i] = dijkstra(i);
+        }
+    }
+
+    // load(File): Loads a model from the passed file, flying straight between waypoints unless the file sets a wind. A file that can't be read gives a model without any zones.
+    public static CorridorModel load(File file)
+    {
+        List<double[]> zones = new ArrayList<>();
+        List<double[]> waypoints = new ArrayList<>();
+        TravelTimeModel legs = TravelTimeModels.STRAIGHT_LINE;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                String[] parameters = line.trim().split(":");
+
+                try
+                {
+                    switch (parameters[0].toUpperCase())
+                    {
+                        case "NOFLY":
+                            zones.add(new double[] { Double.parseDouble(parameters[1]), Double.parseDouble(parameters[2]), Double.parseDouble(parameters[3]) });
+                            break;
+
+                        case "WAYPOINT":
+                            waypoints.add(new double[] { Double.parseDouble(parameters[1]), Double.parseDouble(parameters[2]) });
+                            break;
+
+                        case "WIND":
+                            legs = TravelTimeModels.wind(Double.parseDouble(parameters[1]), Double.parseDouble(parameters[2]));
+                            break;
+                    }
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException ex)
+                {
+                    logger.warn("Ignoring line \"" + line + "\" of " + file + ".");
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.error("Unable to load the corridor file " + file + ": " + ex.getMessage());
+        }
+
+        logger.info("Loaded " + zones.size() + " no-fly zones and " + waypoints.size() + " waypoints from " + file + ".");
+
+        return new CorridorModel("corridors:" + file.getPath(), legs, zones.toArray(new double[0][]), waypoints.toArray(new double[0][]));
+    }
+
+    public String getName() { return name; }
+
+    // getCost(double, double, double, double, double, double): Returns the cost of flying straight if that doesn't cross a no-fly zone, otherwise the cheapest route
+    // through the waypoints. If there is no such route the straight leg is flown anyway, so that a badly drawn corridor file never strands a delivery.
+    public double getCost(double fromLat, double fromCos, double fromLon, double toLat, double toCos, double toLon)
+    {
+        if (isClear(fromLat, fromCos, fromLon, toLat, toCos, toLon))
+            return legs.getCost(fromLat, fromCos, fromLon, toLat, toCos, toLon);
+
+        int count = routes.length;
+        double[] arrivals = new double[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            arrivals[i] = isClear(waypointLatRadians[i], waypointCosLatitudes[i], waypointLonRadians[i], toLat, toCos, toLon)
+                    ? legs.getCost(waypointLatRadians[i], waypointCosLatitudes[i], waypointLonRadians[i], toLat, toCos, toLon)
+                    : Double.POSITIVE_INFINITY;
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < count; i++)
+        {
+            if (!isClear(fromLat, fromCos, fromLon, waypointLatRadians[i], waypointCosLatitudes[i], waypointLonRadians[i]))
+                continue;
+
+            double departure = legs.getCost(fromLat, fromCos, fromLon, waypointLatRadians[i], waypointCosLatitudes[i], waypointLonRadians[i]);
+            double[] route = routes[i];
+
+            for (int j = 0; j < count; j++)
+            {
+                best = Math.min(best, departure + route[j] + arrivals[j]);
+            }
+        }
+
+        if (best == Double.POSITIVE_INFINITY)
+        {
+            if (warned.compareAndSet(false, true))
+                logger.warn("Some legs cross a no-fly zone with no corridor around it, so they are flown straight.");
+
+            return legs.getCost(fromLat, fromCos, fromLon, toLat, toCos, toLon);
+        }
+
+        return best;
+    }
+
+    // isClear(double, double, double, double, double, double): Returns whether the straight leg between the two points stays out of every no-fly zone.
+    // Each zone is small enough to treat the ground around it as flat, so the leg is projected onto metres east and north of the zone's centre.
+    private boolean isClear(double fromLat, double fromCos, double fromLon, double toLat, double toCos, double toLon)
+    {
+        for (int i = 0; i < zoneRadii.length; i++)
+        {
+            double fromX = (fromLon - zoneLonRadians[i]) * zoneCosLatitudes[i] * Haversine.EARTH_RADIUS;
+            double fromY = (fromLat - zoneLatRadians[i]) * Haversine.EARTH_RADIUS;
+            double toX = (toLon - zoneLonRadians[i]) * zoneCosLatitudes[i] * Haversine.EARTH_RADIUS;
+            double toY = (toLat - zoneLatRadians[i]) * Haversine.EARTH_RADIUS;
+
+            // Find the point on the leg closest to the centre of the zone.
+            double deltaX = toX - fromX;
+            double deltaY = toY - fromY;
+            double length = (deltaX * deltaX) + (deltaY * deltaY);
+            double t = (length == 0.0) ? 0.0 : Math.max(0.0, Math.min(1.0, -((fromX * deltaX) + (fromY * deltaY)) / length));
+            double closestX = fromX + (t * deltaX);
+            double closestY = fromY + (t * deltaY);
+
+            if ((closestX * closestX) + (closestY * closestY) < zoneRadii[i] * zoneRadii[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    // dijkstra(int): Returns the cost of the cheapest route from the passed waypoint to every other waypoint, only flying legs that are clear of the no-fly zones.
+    private double[] dijkstra(int source)
+    {
+        int count = waypointLatRadians.length;
+        double[] costs = new double[count];
+        boolean[] settled = new boolean[count];
+
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[source] = 0.0;
+
+        // Every waypoint can reach every other one, so a linear scan for the closest unsettled waypoint beats a priority queue.
+        for (int step = 0; step < count; step++)
+        {
+            int current = -1;
+
+            for (int i = 0; i < count; i++)
+            {
+                if (!settled[i] && (current < 0 || costs[i] < costs[current]))
+                    current = i;
+            }
+
+            if (costs[current] == Double.POSITIVE_INFINITY)
+                break;
+
+            settled[current] = true;
+
+            for (int i = 0; i < count; i++)
+            {
+                if (settled[i] || !isClear(waypointLatRadians[current], waypointCosLatitudes[current], waypointLonRadians[current], waypointLatRadians[i], waypointCosLatitudes[i], waypointLonRadians[i]))
+                    continue;
+
+                double cost = costs[current] + legs.getCost(waypointLatRadians[current], waypointCosLatitudes[current], waypointLonRadians[current], waypointLatRadians[i], waypointCosLatitudes[i], waypointLonRadians[i]);
+
+                if (cost < costs[i])
+                    costs[i] = cost;
+            }
+        }
+
+        return costs;
+    }
+}
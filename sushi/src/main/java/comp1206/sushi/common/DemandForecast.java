@@ -0,0 +1,298 @@
+package comp1206.sushi.common;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// DemandForecast class: Learns how many of each dish (and, through their recipes, each ingredient) are ordered in every hour of the day, using exponentially weighted averages,
+// so that the kitchen and the drones can restock ahead of the busy hours instead of only once the stock has run out.
+// Cancelled orders and dishes taken off the menu are taken back out of the averages, so that they don't keep the thresholds raised.
+public class DemandForecast implements Serializable
+{
+    private static final long serialVersionUID = -9042108537252910237L;
+
+    private static final int HOURS_PER_DAY = 24;
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final double SMOOTHING = 0.3;
+    private static final int MAX_MISSED_HOURS = HOURS_PER_DAY * 7;
+    private static final long DISH_LEAD_TIME = 15 * 60 * 1000;
+    private static final long INGREDIENT_LEAD_TIME = 30 * 60 * 1000;
+    private static final int BATCHES_PER_LEAD_TIME = 4;
+
+    private final Map<String, Demand> dishDemand = new ConcurrentHashMap<>();
+    private final Map<String, Demand> ingredientDemand = new ConcurrentHashMap<>();
+    private final DemandHeatmap heatmap = new DemandHeatmap();
+
+    // The time every demand is recorded and forecast at, which is only replaced by tests.
+    private transient LongSupplier clock;
+
+    // Demand class: The smoothed demand for a single dish or ingredient in each hour of the day, along with the count for the hour currently in progress.
+    private static class Demand implements Serializable
+    {
+        private static final long serialVersionUID = 3458471728763469770L;
+
+        private final double[] rates = new double[HOURS_PER_DAY];
+        private long hour = -1;
+        private double count = 0;
+
+        // record(double, long): Adds the passed quantity to the count of the current hour.
+        private synchronized void record(double quantity, long now)
+        {
+            roll(now);
+            count += quantity;
+        }
+
+        // rate(long, long): Returns the expected demand per hour at the passed time, as forecast at the current time.
+        private synchronized double rate(long time, long now)
+        {
+            roll(now);
+
+            int hourOfDay = hourOfDay(time);
+
+            // Never expect less for the current hour than has already been ordered in it.
+            if (time / HOUR == hour)
+                return Math.max(rates[hourOfDay], count);
+
+            return rates[hourOfDay];
+        }
+
+        // remove(double, long, long): Takes the passed quantity, recorded at the passed time, back out of the count of its hour, or out of the average for its hour of the
+        // day along with everything it has added to the average since if that hour has finished.
+        private synchronized void remove(double quantity, long recorded, long now)
+        {
+            roll(now);
+
+            long recordedHour = recorded / HOUR;
+
+            // Quantities from the future, or so long ago they have no weight left, can be left alone.
+            if (recordedHour > hour || hour - recordedHour > MAX_MISSED_HOURS)
+                return;
+
+            if (recordedHour == hour)
+            {
+                count = Math.max(count - quantity, 0);
+                return;
+            }
+
+            // The quantity was folded in with a weight of SMOOTHING, which has been scaled by (1 - SMOOTHING) every day since.
+            int hourOfDay = hourOfDay(recorded);
+            long days = (hour - 1 - recordedHour) / HOURS_PER_DAY;
+            rates[hourOfDay] = Math.max(rates[hourOfDay] - (SMOOTHING * quantity * Math.pow(1 - SMOOTHING, days)), 0);
+        }
+
+        // remove(Demand, double, long): Takes the passed multiple of another demand back out of this one, such as the demand a dish taken off the menu put on an ingredient.
+        private void remove(Demand other, double multiple, long now)
+        {
+            double[] otherRates;
+            double otherCount;
+
+            // Copy the other demand first rather than holding both locks at once.
+            synchronized (other)
+            {
+                other.roll(now);
+                otherRates = other.rates.clone();
+                otherCount = other.count;
+            }
+
+            synchronized (this)
+            {
+                roll(now);
+
+                for (int i = 0; i < HOURS_PER_DAY; i++)
+                {
+                    rates[i] = Math.max(rates[i] - (otherRates[i] * multiple), 0);
+                }
+
+                count = Math.max(count - (otherCount * multiple), 0);
+            }
+        }
+
+        // roll(long): Folds the count of every hour that has finished into the average for its hour of the day, counting any hours without orders as 0.
+        private void roll(long now)
+        {
+            long current = now / HOUR;
+
+            if (hour < 0)
+                hour = current;
+
+            // Hours more than a week old have almost no weight left, so stop folding them in.
+            if (current - hour > MAX_MISSED_HOURS)
+            {
+                hour = current - MAX_MISSED_HOURS;
+                count = 0;
+            }
+
+            while (hour < current)
+            {
+                int hourOfDay = hourOfDay(hour * HOUR);
+                rates[hourOfDay] = (SMOOTHING * count) + ((1 - SMOOTHING) * rates[hourOfDay]);
+                count = 0;
+                hour++;
+            }
+        }
+
+        // writeObject(ObjectOutputStream): Backs up the demand while holding its lock, so that an hour being rolled is never half written.
+        private synchronized void writeObject(ObjectOutputStream output) throws IOException
+        {
+            output.defaultWriteObject();
+        }
+    }
+
+    // record(Order): Records every dish in the passed order as demand for the current hour.
+    public void record(Order order)
+    {
+        order.getOrderedDishes().forEach((dish, quantity) -> record(dish, quantity.intValue()));
+    }
+
+    // record(Dish, int): Records the passed quantity of a dish, and the ingredients its recipe uses, as demand for the current hour.
+    public void record(Dish dish, int quantity)
+    {
+        if (quantity <= 0)
+            return;
+
+        long now = now();
+
+        dishDemand.computeIfAbsent(dish.getName(), d -> new Demand()).record(quantity, now);
+        dish.getRecipe().forEach((ingredient, amount) ->
+                ingredientDemand.computeIfAbsent(ingredient.getName(), i -> new Demand()).record(amount.doubleValue() * quantity, now));
+    }
+
+    // cancel(Order): Takes every dish in the passed order, which has been cancelled, back out of the demand, as if they were all ordered when the order was placed.
+    public void cancel(Order order)
+    {
+        order.getOrderedDishes().forEach((dish, quantity) -> cancel(dish, quantity.intValue(), order.getPlacedAt()));
+    }
+
+    // cancel(Dish, int, long): Takes the passed quantity of a dish, recorded at the passed time, and the ingredients its recipe uses back out of the demand.
+    public void cancel(Dish dish, int quantity, long recorded)
+    {
+        if (quantity <= 0)
+            return;
+
+        long now = now();
+        Demand demand = dishDemand.get(dish.getName());
+
+        if (demand == null)
+            return;
+
+        demand.remove(quantity, recorded, now);
+        dish.getRecipe().forEach((ingredient, amount) -> {
+            Demand used = ingredientDemand.get(ingredient.getName());
+
+            if (used != null)
+                used.remove(amount.doubleValue() * quantity, recorded, now);
+        });
+    }
+
+    // forget(Dish): Forgets the demand for a dish that has been taken off the menu, along with the demand it put on the ingredients of its recipe.
+    public void forget(Dish dish)
+    {
+        Demand demand = dishDemand.remove(dish.getName());
+
+        if (demand == null)
+            return;
+
+        long now = now();
+
+        dish.getRecipe().forEach((ingredient, amount) -> {
+            Demand used = ingredientDemand.get(ingredient.getName());
+
+            if (used != null)
+                used.remove(demand, amount.doubleValue(), now);
+        });
+    }
+
+    // getDemand(Dish, long): Returns the number of the dish expected to be ordered over the passed number of milliseconds from now.
+    public double getDemand(Dish dish, long period) { return expected(dishDemand.get(dish.getName()), now(), period); }
+
+    // getDemand(Ingredient, long): Returns the amount of the ingredient expected to be used over the passed number of milliseconds from now.
+    public double getDemand(Ingredient ingredient, long period) { return expected(ingredientDemand.get(ingredient.getName()), now(), period); }
+
+    // getThreshold(Dish): Returns the restock threshold of the dish, raised to cover the demand expected while another batch is prepared.
+    public int getThreshold(Dish dish)
+    {
+        return Math.max(dish.getRestockThreshold().intValue(), (int)Math.ceil(getDemand(dish, DISH_LEAD_TIME)));
+    }
+
+    // getBatchSize(Dish): Returns the restock amount of the dish, raised to a multiple of itself large enough to meet the expected demand in a few batches.
+    public int getBatchSize(Dish dish)
+    {
+        return batchSize(dish.getRestockAmount().intValue(), getDemand(dish, DISH_LEAD_TIME));
+    }
+
+    // getThreshold(Ingredient): Returns the restock threshold of the ingredient, raised to cover the demand expected while a drone collects more.
+    public int getThreshold(Ingredient ingredient)
+    {
+        return Math.max(ingredient.getRestockThreshold().intValue(), (int)Math.ceil(getDemand(ingredient, INGREDIENT_LEAD_TIME)));
+    }
+
+    // getThreshold(Ingredient, Stock): Returns the restock threshold of the ingredient, also raised to cover as much of it as was taken out of the stock over the last lead time,
+    // which catches any use the orders alone don't show, such as dishes made ahead of the demand.
+    public int getThreshold(Ingredient ingredient, Stock stock)
+    {
+        long now = now();
+        return Math.max(getThreshold(ingredient), stock.getUsage(ingredient, now - INGREDIENT_LEAD_TIME, now));
+    }
+
+    // getBatchSize(Ingredient): Returns the restock amount of the ingredient, raised to a multiple of itself large enough to meet the expected demand in a few trips.
+    public int getBatchSize(Ingredient ingredient)
+    {
+        return batchSize(ingredient.getRestockAmount().intValue(), getDemand(ingredient, INGREDIENT_LEAD_TIME));
+    }
+
+    // getHeatmap(): Returns the DemandHeatmap of where orders have been placed from.
+    public DemandHeatmap getHeatmap() { return heatmap; }
+
+    // clear(): Forgets all of the recorded demand.
+    public void clear()
+    {
+        dishDemand.clear();
+        ingredientDemand.clear();
+        heatmap.clear();
+    }
+
+    // expected(Demand, long, long): Adds up the expected demand of each hour (or part of an hour) over the passed number of milliseconds from the passed current time.
+    private static double expected(Demand demand, long now, long period)
+    {
+        if (demand == null)
+            return 0.0;
+
+        long time = now;
+        long end = time + period;
+        double expected = 0.0;
+
+        while (time < end)
+        {
+            long next = Math.min(((time / HOUR) + 1) * HOUR, end);
+            expected += demand.rate(time, now) * ((next - time) / (double)HOUR);
+            time = next;
+        }
+
+        return expected;
+    }
+
+    // batchSize(int, double): Rounds the share of the expected demand covered by one batch up to a multiple of the restock amount (at least the restock amount itself).
+    private static int batchSize(int amount, double demand)
+    {
+        if (amount <= 0)
+            return amount;
+
+        return amount * Math.max((int)Math.ceil(demand / (amount * BATCHES_PER_LEAD_TIME)), 1);
+    }
+
+    // setClock(LongSupplier): Replaces the clock the demand is recorded and forecast with, or goes back to the system clock if null.
+    void setClock(LongSupplier clock) { this.clock = clock; }
+
+    // now(): Returns the current time by the forecast's clock.
+    private long now() { return (clock != null) ? clock.getAsLong() : System.currentTimeMillis(); }
+
+    // hourOfDay(long): Returns the local hour of the day at the passed time.
+    static int hourOfDay(long time)
+    {
+        return (int)Math.floorMod((time + TimeZone.getDefault().getOffset(time)) / HOUR, (long)HOURS_PER_DAY);
+    }
+}
@@ -0,0 +1,216 @@
+package comp1206.sushi.common;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// DemandHeatmap class: Counts the orders placed from every cell of a fixed latitude and longitude grid in each hour of the day, so that where demand comes from can be
+// seen without going back through the orders. Each cell is given the next row of a flat counts array the first time an order comes from it, so recording an order is
+// a single map lookup and two increments, and the counts for every cell and hour are kept in one compact cube.
+public class DemandHeatmap implements Serializable
+{
+    private static final long serialVersionUID = -2409748616220915298L;
+
+    public static final double CELL_SIZE = 0.01;
+    public static final int ALL_HOURS = -1;
+
+    private static final int HOURS_PER_DAY = 24;
+    private static final int INITIAL_CELLS = 64;
+
+    private final Map<Long, Integer> cellIndices = new HashMap<>();
+    private int[] rows = new int[INITIAL_CELLS];
+    private int[] columns = new int[INITIAL_CELLS];
+    private int[] counts = new int[INITIAL_CELLS * HOURS_PER_DAY];
+    private int[] cellTotals = new int[INITIAL_CELLS];
+    private final int[] hourTotals = new int[HOURS_PER_DAY];
+    private int cells = 0;
+
+    // Cell class: The number of orders placed from a single cell of the grid, along with the coordinates of the centre of the cell.
+    public static class Cell implements Serializable
+    {
+        private static final long serialVersionUID = -8302904150578652303L;
+
+        private final double latitude;
+        private final double longitude;
+        private final int count;
+
+        private Cell(double latitude, double longitude, int count)
+        {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+        }
+
+        public double getLatitude() { return latitude; }
+
+        public double getLongitude() { return longitude; }
+
+        public int getCount() { return count; }
+    }
+
+    // record(Postcode, long): Counts an order placed from the passed postcode at the passed time. Postcodes that could not be looked up are left out.
+    public synchronized void record(Postcode postcode, long time)
+    {
+        if (!postcode.isLocated())
+            return;
+
+        int row = (int)Math.floor(postcode.getLatitude() / CELL_SIZE);
+        int column = (int)Math.floor(postcode.getLongitude() / CELL_SIZE);
+        int hour = DemandForecast.hourOfDay(time);
+        int cell = cellIndices.computeIfAbsent(key(row, column), k -> addCell(row, column));
+
+        counts[(cell * HOURS_PER_DAY) + hour]++;
+        cellTotals[cell]++;
+        hourTotals[hour]++;
+    }
+
+    // remove(Postcode, long): Takes back an order counted from the passed postcode at the passed time, such as one that has been cancelled.
+    public synchronized void remove(Postcode postcode, long time)
+    {
+        if (!postcode.isLocated())
+            return;
+
+        Integer cell = cellIndices.get(key((int)Math.floor(postcode.getLatitude() / CELL_SIZE), (int)Math.floor(postcode.getLongitude() / CELL_SIZE)));
+        int hour = DemandForecast.hourOfDay(time);
+
+        if (cell == null || counts[(cell * HOURS_PER_DAY) + hour] == 0)
+            return;
+
+        counts[(cell * HOURS_PER_DAY) + hour]--;
+        cellTotals[cell]--;
+        hourTotals[hour]--;
+    }
+
+    // getCount(Postcode, int): Returns the number of orders placed from the cell the postcode is in during the passed hour of the day, or in every hour for ALL_HOURS.
+    public synchronized int getCount(Postcode postcode, int hour)
+    {
+        if (!postcode.isLocated())
+            return 0;
+
+        Integer cell = cellIndices.get(key((int)Math.floor(postcode.getLatitude() / CELL_SIZE), (int)Math.floor(postcode.getLongitude() / CELL_SIZE)));
+
+        if (cell == null)
+            return 0;
+
+        return count(cell, hour);
+    }
+
+    // getTotal(int): Returns the number of orders placed during the passed hour of the day, or in every hour for ALL_HOURS.
+    public synchronized int getTotal(int hour)
+    {
+        return (hour == ALL_HOURS) ? Arrays.stream(hourTotals).sum() : hourTotals[hour];
+    }
+
+    // getHeatmap(int): Returns every cell orders were placed from during the passed hour of the day (or in every hour for ALL_HOURS), busiest first.
+    public List<Cell> getHeatmap(int hour) { return getHotspots(hour, Integer.MAX_VALUE); }
+
+    // getHotspots(int, int): Returns up to the passed number of the busiest cells during the passed hour of the day, or in every hour for ALL_HOURS.
+    public synchronized List<Cell> getHotspots(int hour, int limit)
+    {
+        List<Cell> heatmap = new ArrayList<>();
+
+        for (int cell = 0; cell < cells; cell++)
+        {
+            int count = count(cell, hour);
+
+            if (count > 0)
+                heatmap.add(new Cell((rows[cell] + 0.5) * CELL_SIZE, (columns[cell] + 0.5) * CELL_SIZE, count));
+        }
+
+        heatmap.sort(Comparator.comparingInt(Cell::getCount).reversed());
+
+        return (heatmap.size() > limit) ? new ArrayList<>(heatmap.subList(0, limit)) : heatmap;
+    }
+
+    // getReach(Postcode, int, double): Returns the distance from the origin that the passed share of the orders placed during the passed hour of the day came from
+    // within, measured to the centre of each cell, or 0 if no orders have been placed in that hour.
+    public synchronized double getReach(Postcode origin, int hour, double share)
+    {
+        int total = getTotal(hour);
+
+        if (total == 0 || !origin.isLocated())
+            return 0.0;
+
+        double[][] distances = new double[cells][];
+        int size = 0;
+
+        for (int cell = 0; cell < cells; cell++)
+        {
+            int count = count(cell, hour);
+
+            if (count == 0)
+                continue;
+
+            double latitude = Math.toRadians((rows[cell] + 0.5) * CELL_SIZE);
+            double longitude = Math.toRadians((columns[cell] + 0.5) * CELL_SIZE);
+
+            distances[size++] = new double[] { Haversine.distance(origin.getLatRadians(), origin.getCosLatitude(), origin.getLonRadians(), latitude, Math.cos(latitude), longitude), count };
+        }
+
+        Arrays.sort(distances, 0, size, Comparator.comparingDouble(entry -> entry[0]));
+
+        double needed = share * total;
+        double covered = 0.0;
+
+        for (int i = 0; i < size; i++)
+        {
+            covered += distances[i][1];
+
+            if (covered >= needed)
+                return distances[i][0];
+        }
+
+        return distances[size - 1][0];
+    }
+
+    // clear(): Forgets every order counted.
+    public synchronized void clear()
+    {
+        cellIndices.clear();
+        rows = new int[INITIAL_CELLS];
+        columns = new int[INITIAL_CELLS];
+        counts = new int[INITIAL_CELLS * HOURS_PER_DAY];
+        cellTotals = new int[INITIAL_CELLS];
+        Arrays.fill(hourTotals, 0);
+        cells = 0;
+    }
+
+    public synchronized int size() { return cells; }
+
+    // count(int, int): Returns the count of the cell in the passed hour of the day, or in every hour for ALL_HOURS.
+    private int count(int cell, int hour)
+    {
+        return (hour == ALL_HOURS) ? cellTotals[cell] : counts[(cell * HOURS_PER_DAY) + hour];
+    }
+
+    // addCell(int, int): Gives the cell in the passed row and column the next row of the counts array, doubling the arrays if they are full.
+    private int addCell(int row, int column)
+    {
+        if (cells == rows.length)
+        {
+            rows = Arrays.copyOf(rows, cells * 2);
+            columns = Arrays.copyOf(columns, cells * 2);
+            counts = Arrays.copyOf(counts, cells * 2 * HOURS_PER_DAY);
+            cellTotals = Arrays.copyOf(cellTotals, cells * 2);
+        }
+
+        rows[cells] = row;
+        columns[cells] = column;
+
+        return cells++;
+    }
+
+    private static long key(int row, int column) { return ((long)row << 32) | (column & 0xFFFFFFFFL); }
+
+    // writeObject(ObjectOutputStream): Backs up the heatmap while holding its lock, so that a cell being added is never half written.
+    private synchronized void writeObject(ObjectOutputStream output) throws IOException
+    {
+        output.defaultWriteObject();
+    }
+}
@@ -0,0 +1,76 @@
+package comp1206.sushi.common;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// DispatchPolicies class: The built in DispatchPolicy strategies.
+public class DispatchPolicies
+{
+    // FIFO: Dispatch orders in the order they were placed.
+    public static final DispatchPolicy FIFO = new DispatchPolicy()
+    {
+        public String getName() { return "FIFO"; }
+
+        public double priority(Order order, double distance, long now) { return order.getPlacedAt(); }
+
+        public boolean isTimeDependent() { return false; }
+    };
+
+    // EARLIEST_DEADLINE: Dispatch the order that is due to be delivered soonest.
+    public static final DispatchPolicy EARLIEST_DEADLINE = new DispatchPolicy()
+    {
+        public String getName() { return "EDF"; }
+
+        public double priority(Order order, double distance, long now) { return order.getDeadline(); }
+
+        public boolean isTimeDependent() { return false; }
+    };
+
+    // SHORTEST_DISTANCE: Dispatch the order with the shortest delivery first. The Dispatcher breaks ties by placement time.
+    public static final DispatchPolicy SHORTEST_DISTANCE = new DispatchPolicy()
+    {
+        public String getName() { return "SDF"; }
+
+        public double priority(Order order, double distance, long now) { return distance; }
+
+        public boolean isTimeDependent() { return false; }
+    };
+
+    // WAITING_TIME: Dispatch the order with the highest response ratio ((time waited + delivery time) / delivery time), so short deliveries go first
+    // but long deliveries are not left waiting forever.
+    public static final DispatchPolicy WAITING_TIME = new DispatchPolicy()
+    {
+        private static final double REFERENCE_SPEED = 20.0;
+
+        public String getName() { return "WAITING"; }
+
+        public double priority(Order order, double distance, long now)
+        {
+            double deliveryTime = Math.max(distance / REFERENCE_SPEED, 1.0);
+            double waitingTime = Math.max(now - order.getPlacedAt(), 0) / 1000.0;
+
+            return -((waitingTime + deliveryTime) / deliveryTime);
+        }
+
+        public boolean isTimeDependent() { return true; }
+    };
+
+    private static final List<DispatchPolicy> POLICIES = Arrays.asList(FIFO, EARLIEST_DEADLINE, SHORTEST_DISTANCE, WAITING_TIME);
+
+    private DispatchPolicies() { }
+
+    // forName(String): Returns the built in policy with the passed name, otherwise throwing a NoSuchElementException.
+    public static DispatchPolicy forName(String name) throws NoSuchElementException
+    {
+        for (DispatchPolicy policy : POLICIES)
+        {
+            if (policy.getName().equalsIgnoreCase(name.trim()))
+                return policy;
+        }
+
+        throw new NoSuchElementException("Cannot find dispatch policy called \"" + name + "\"");
+    }
+
+    public static List<DispatchPolicy> getPolicies() { return POLICIES; }
+}
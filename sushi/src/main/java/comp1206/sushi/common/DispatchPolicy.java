@@ -0,0 +1,15 @@
+package comp1206.sushi.common;
+
+// DispatchPolicy interface: Strategy used by the Dispatcher to decide the order in which orders are sent out for delivery.
+public interface DispatchPolicy
+{
+    // getName(): Returns the name used to select the policy in the configuration file.
+    String getName();
+
+    // priority(Order, double, long): Returns the priority of the order given the distance of its delivery and the current time - the lowest value is dispatched first,
+    // and orders with the same value are dispatched in the order they were placed.
+    double priority(Order order, double distance, long now);
+
+    // isTimeDependent(): Returns true if priorities change as time passes, meaning they must be recalculated before an order is chosen.
+    boolean isTimeDependent();
+}
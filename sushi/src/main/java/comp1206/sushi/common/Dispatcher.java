@@ -0,0 +1,255 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// Dispatcher class: Holds every order waiting to go out for delivery in a sorted set ordered by the current DispatchPolicy, and keeps wait time metrics for each policy.
+// Idle drones wait on the dispatcher until it is signalled that there may be new work, rather than polling the stock.
+// A drone looking for work walks the queue in order, claiming one order at a time so that no other drone looks at it, and asks whether it can deliver it without holding
+// the dispatcher's lock. Orders it turns down stay where they are in the queue, so nothing is taken out and put back.
+public class Dispatcher
+{
+    // How often the priorities of a time dependent policy are worked out again, in milliseconds.
+    private static final long REPRIORITISE_INTERVAL = 1000;
+
+    // Orders with the same priority are dispatched in the order they were placed.
+    private static final Comparator<Entry> PRIORITY_ORDER = Comparator.<Entry>comparingDouble(e -> e.priority)
+            .thenComparingLong(e -> e.order.getPlacedAt())
+            .thenComparingLong(e -> e.sequence);
+
+    private final ToDoubleFunction<Order> deliveryDistance;
+    private final Map<String, WaitTimeHistogram> waitTimes = new HashMap<>();
+    private final Map<String, WaitTimeHistogram> deliveryTimes = new HashMap<>();
+    private final Map<Order, Entry> entries = new IdentityHashMap<>();
+    private DispatchPolicy policy;
+    private TreeSet<Entry> queue;
+    private long reprioritised = 0;
+    private long sequence = 0;
+    private long signals = 0;
+
+    public Dispatcher(DispatchPolicy policy, ToDoubleFunction<Order> deliveryDistance)
+    {
+        this.deliveryDistance = deliveryDistance;
+        this.policy = policy;
+        this.queue = new TreeSet<>(PRIORITY_ORDER);
+    }
+
+    // Entry class: An order in the queue, along with the distance of its delivery, its priority under the current policy and whether a drone is looking at it.
+    private static class Entry
+    {
+        private final Order order;
+        private final long sequence;
+        private double distance;
+        private double priority;
+        private boolean claimed = false;
+
+        private Entry(Order order, long sequence, double distance, double priority)
+        {
+            this.order = order;
+            this.sequence = sequence;
+            this.distance = distance;
+            this.priority = priority;
+        }
+    }
+
+    // addOrder(Order): Queues the passed order for delivery.
+    public synchronized void addOrder(Order order)
+    {
+        double distance = deliveryDistance.applyAsDouble(order);
+        Entry entry = new Entry(order, sequence++, distance, policy.priority(order, distance, System.currentTimeMillis()));
+        Entry previous = entries.put(order, entry);
+
+        if (previous != null)
+            queue.remove(previous);
+
+        queue.add(entry);
+        signal();
+    }
+
+    // removeOrder(Order): Removes the passed order from the queue, if it is in it.
+    public synchronized void removeOrder(Order order)
+    {
+        Entry entry = entries.remove(order);
+
+        if (entry != null)
+            queue.remove(entry);
+    }
+
+    // nextOrder(Predicate<Order>): Returns the highest priority order that the passed predicate accepts, marking it as out for delivery, or null if there isn't one.
+    // Orders that are complete or cancelled are dropped from the queue along the way. The predicate is only called for orders this drone has claimed, and never while
+    // holding the dispatcher's lock. If the order is cancelled while the predicate is deciding, null is returned even though the predicate accepted it.
+    public Order nextOrder(Predicate<Order> canDeliver)
+    {
+        long now = System.currentTimeMillis();
+        Entry entry = null;
+
+        while ((entry = claimNext(entry, now)) != null)
+        {
+            boolean accepted = false;
+
+            // Always give up the claim on an order that wasn't accepted, even if the predicate throws an exception.
+            try
+            {
+                accepted = canDeliver.test(entry.order);
+            }
+            finally
+            {
+                if (!accepted)
+                    unclaim(entry);
+            }
+
+            if (accepted)
+                return dispatch(entry, now) ? entry.order : null;
+        }
+
+        return null;
+    }
+
+    // claimNext(Entry, long): Claims and returns the next order after the passed one (or the first, if null) that could go out for delivery, or null if there are none left.
+    private synchronized Entry claimNext(Entry after, long now)
+    {
+        // Work out the priorities again at the start of a search if they change over time, but no more often than every REPRIORITISE_INTERVAL.
+        if (after == null && policy.isTimeDependent() && now - reprioritised >= REPRIORITISE_INTERVAL)
+        {
+            reprioritise(now, false);
+            reprioritised = now;
+        }
+
+        Entry entry = (after == null) ? (queue.isEmpty() ? null : queue.first()) : queue.higher(after);
+
+        while (entry != null)
+        {
+            Order order = entry.order;
+            Entry next = queue.higher(entry);
+
+            if (order.isComplete() || order.isCancelled())
+            {
+                entries.remove(order);
+                queue.remove(entry);
+            }
+            // Empty orders are still being filled in, and orders already out for delivery or claimed by another drone are taken.
+            else if (!entry.claimed && !order.isOutForDelivery() && !order.getOrderedDishes().isEmpty())
+            {
+                entry.claimed = true;
+                return entry;
+            }
+
+            entry = next;
+        }
+
+        return null;
+    }
+
+    // unclaim(Entry): Gives up the claim on an order that was turned down, so that other drones can take it.
+    private synchronized void unclaim(Entry entry)
+    {
+        entry.claimed = false;
+    }
+
+    // dispatch(Entry, long): Takes the accepted order out of the queue and marks it as out for delivery, unless it was removed or cancelled while it was claimed.
+    private synchronized boolean dispatch(Entry entry, long now)
+    {
+        Order order = entry.order;
+        entry.claimed = false;
+
+        if (entries.get(order) != entry || order.isComplete() || order.isCancelled())
+            return false;
+
+        entries.remove(order);
+        queue.remove(entry);
+        order.deliverOrder();
+        getWaitTimes(policy.getName()).record(now - order.getPlacedAt());
+
+        return true;
+    }
+
+    // orderDelivered(Order): Records the total time taken to deliver the passed order against the current policy.
+    public synchronized void orderDelivered(Order order)
+    {
+        getDeliveryTimes(policy.getName()).record(System.currentTimeMillis() - order.getPlacedAt());
+    }
+
+    // setPolicy(DispatchPolicy): Changes the policy, re-ordering the queue according to it.
+    public synchronized void setPolicy(DispatchPolicy policy)
+    {
+        this.policy = policy;
+        reprioritise(System.currentTimeMillis(), false);
+    }
+
+    // remeasure(): Works out the delivery distance of every queued order again after the distances have changed, re-ordering the queue.
+    public synchronized void remeasure()
+    {
+        reprioritise(System.currentTimeMillis(), true);
+    }
+
+    // reprioritise(long, boolean): Works out the priority of every queued order again, and their delivery distances too if asked, and re-orders the queue. The entries are
+    // taken out of the set while their priorities change, since the set relies on them staying put.
+    private void reprioritise(long now, boolean remeasure)
+    {
+        List<Entry> existing = new ArrayList<>(queue);
+        queue.clear();
+
+        for (Entry e : existing)
+        {
+            if (remeasure)
+                e.distance = deliveryDistance.applyAsDouble(e.order);
+
+            e.priority = policy.priority(e.order, e.distance, now);
+        }
+
+        queue.addAll(existing);
+    }
+
+    public synchronized DispatchPolicy getPolicy() { return policy; }
+
+    // getWaitTimes(String): Returns the distribution of the times orders waited before being dispatched under the named policy.
+    public synchronized WaitTimeHistogram getWaitTimes(String policy)
+    {
+        return waitTimes.computeIfAbsent(policy, p -> new WaitTimeHistogram());
+    }
+
+    // getDeliveryTimes(String): Returns the distribution of the times from placement to delivery of orders dispatched under the named policy.
+    public synchronized WaitTimeHistogram getDeliveryTimes(String policy)
+    {
+        return deliveryTimes.computeIfAbsent(policy, p -> new WaitTimeHistogram());
+    }
+
+    // signal(): Wakes every idle drone to look for work.
+    public synchronized void signal()
+    {
+        signals++;
+        notifyAll();
+    }
+
+    // getSignals(): Returns the number of signals so far, which a drone reads before looking for work so that it can't miss a signal sent while it was looking.
+    public synchronized long getSignals() { return signals; }
+
+    // awaitSignal(long, long): Blocks until there has been a signal since the passed count was read, or the timeout (in milliseconds) runs out.
+    public synchronized void awaitSignal(long seen, long timeout) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+
+        while (signals == seen && remaining > 0)
+        {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    public synchronized int size() { return queue.size(); }
+
+    // clear(): Removes every order from the queue.
+    public synchronized void clear()
+    {
+        queue.clear();
+        entries.clear();
+    }
+}
@@ -0,0 +1,290 @@
+package comp1206.sushi.common;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// DistanceMatrix class: Dense matrix of the distances between every known postcode, kept up to date as postcodes are added and removed so that planners never
+// have to calculate a distance on the fly.
+// The distances come from a TravelTimeModel, so they are the cost of the route a drone actually flies rather than the straight line, and the distance from one
+// postcode to another may not be the same as the distance back.
+// The matrix takes 8 bytes for every pair of postcodes, so it stops growing at MAX_CAPACITY postcodes (32 MB); 8192 postcodes would take 512 MB. Postcodes added after
+// that are left out, and distances to them are calculated when they are asked for instead, as for postcodes that were never added.
+public class DistanceMatrix
+{
+    private static final Logger logger = LogManager.getLogger("DistanceMatrix");
+
+    private static final int INITIAL_CAPACITY = 16;
+    public static final int MAX_CAPACITY = 2048;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<Postcode, Integer> indices = new ConcurrentHashMap<>();
+    private Postcode[] postcodes = new Postcode[INITIAL_CAPACITY];
+    private double[] distances = new double[INITIAL_CAPACITY * INITIAL_CAPACITY];
+    private double[] latRadians = new double[INITIAL_CAPACITY];
+    private double[] cosLatitudes = new double[INITIAL_CAPACITY];
+    private double[] lonRadians = new double[INITIAL_CAPACITY];
+    private double[] row = new double[INITIAL_CAPACITY];
+    private int capacity = INITIAL_CAPACITY;
+    private int size = 0;
+    private volatile TravelTimeModel model;
+    private final AtomicBoolean warned = new AtomicBoolean(false);
+
+    public DistanceMatrix() { this(TravelTimeModels.STRAIGHT_LINE); }
+
+    public DistanceMatrix(TravelTimeModel model) { this.model = model; }
+
+    // setModel(TravelTimeModel): Changes the model the distances come from, working out the distances between every postcode already in the matrix again.
+    public void setModel(TravelTimeModel model)
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            Postcode[] existing = Arrays.copyOf(postcodes, size);
+
+            this.model = model;
+            reset();
+
+            for (Postcode postcode : existing)
+            {
+                add(postcode);
+            }
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public TravelTimeModel getModel() { return model; }
+
+    // addPostcode(Postcode): Adds the passed postcode to the matrix, calculating only its own row and column. Postcodes that could not be looked up, or that arrive once the
+    // matrix is full, are left out.
+    public void addPostcode(Postcode postcode)
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            add(postcode);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // removePostcode(Postcode): Removes the passed postcode from the matrix by moving the last postcode into its row and column.
+    public void removePostcode(Postcode postcode)
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            Integer removed = indices.remove(postcode);
+
+            if (removed == null)
+                return;
+
+            int index = removed;
+            int last = size - 1;
+
+            if (index != last)
+            {
+                Postcode moved = postcodes[last];
+                postcodes[index] = moved;
+                latRadians[index] = latRadians[last];
+                cosLatitudes[index] = cosLatitudes[last];
+                lonRadians[index] = lonRadians[last];
+
+                for (int i = 0; i < last; i++)
+                {
+                    distances[(index * capacity) + i] = (i == index) ? 0.0 : distances[(last * capacity) + i];
+                    distances[(i * capacity) + index] = (i == index) ? 0.0 : distances[(i * capacity) + last];
+                }
+
+                indices.put(moved, index);
+            }
+
+            postcodes[last] = null;
+            size--;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // clear(): Removes every postcode from the matrix.
+    public void clear()
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            reset();
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // getDistance(Postcode, Postcode): Returns the distance between the two postcodes, calculating it directly if either of them is not in the matrix.
+    public double getDistance(Postcode source, Postcode destination)
+    {
+        if (source == destination)
+            return 0.0;
+
+        // Read optimistically so that lookups never block each other, only retrying under the read lock if a postcode was added or removed in the meantime.
+        long stamp = lock.tryOptimisticRead();
+        double distance = lookup(source, destination);
+
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+
+            try
+            {
+                distance = lookup(source, destination);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        if (!Double.isNaN(distance))
+            return distance;
+
+        // Fails in the same way as Postcode.calculateDistance() if either postcode could not be looked up.
+        if (!source.isLocated() || !destination.isLocated())
+            return source.calculateDistance(destination);
+
+        return Haversine.round(cost(source.getLatRadians(), source.getCosLatitude(), source.getLonRadians(), destination.getLatRadians(), destination.getCosLatitude(), destination.getLonRadians()));
+    }
+
+    // getLegTime(Postcode, Postcode, double): Returns the number of seconds a drone flying at the passed speed takes to fly from one postcode to the other.
+    public long getLegTime(Postcode source, Postcode destination, double speed)
+    {
+        return (long)Math.ceil(getDistance(source, destination) / speed);
+    }
+
+    public int size() { return size; }
+
+    // add(Postcode): Adds the postcode to the matrix while the write lock is held. The straight line model fills the row in a single pass of the Haversine kernel
+    // and mirrors it into the column, since it is the same distance both ways, while any other model is asked for each direction.
+    private void add(Postcode postcode)
+    {
+        if (indices.containsKey(postcode) || !postcode.isLocated())
+            return;
+
+        if (size == capacity)
+        {
+            if (capacity >= MAX_CAPACITY)
+            {
+                if (warned.compareAndSet(false, true))
+                    logger.warn("The distance matrix is full at " + MAX_CAPACITY + " postcodes, so distances to any more are calculated when they are needed.");
+
+                return;
+            }
+
+            grow();
+        }
+
+        int index = size;
+        postcodes[index] = postcode;
+        latRadians[index] = postcode.getLatRadians();
+        cosLatitudes[index] = postcode.getCosLatitude();
+        lonRadians[index] = postcode.getLonRadians();
+
+        if (model == TravelTimeModels.STRAIGHT_LINE)
+        {
+            Haversine.distances(latRadians[index], cosLatitudes[index], lonRadians[index], latRadians, cosLatitudes, lonRadians, row, size);
+
+            for (int i = 0; i < size; i++)
+            {
+                double distance = Haversine.round(row[i]);
+
+                distances[(index * capacity) + i] = distance;
+                distances[(i * capacity) + index] = distance;
+            }
+        }
+        else
+        {
+            for (int i = 0; i < size; i++)
+            {
+                distances[(index * capacity) + i] = Haversine.round(cost(latRadians[index], cosLatitudes[index], lonRadians[index], latRadians[i], cosLatitudes[i], lonRadians[i]));
+                distances[(i * capacity) + index] = Haversine.round(cost(latRadians[i], cosLatitudes[i], lonRadians[i], latRadians[index], cosLatitudes[index], lonRadians[index]));
+            }
+        }
+
+        distances[(index * capacity) + index] = 0.0;
+
+        size++;
+        indices.put(postcode, index);
+    }
+
+    // cost(double, double, double, double, double, double): Returns the cost of flying between the two points under the current model.
+    private double cost(double fromLat, double fromCos, double fromLon, double toLat, double toCos, double toLon)
+    {
+        return model.getCost(fromLat, fromCos, fromLon, toLat, toCos, toLon);
+    }
+
+    // reset(): Empties the matrix while the write lock is held.
+    private void reset()
+    {
+        indices.clear();
+        postcodes = new Postcode[INITIAL_CAPACITY];
+        distances = new double[INITIAL_CAPACITY * INITIAL_CAPACITY];
+        latRadians = new double[INITIAL_CAPACITY];
+        cosLatitudes = new double[INITIAL_CAPACITY];
+        lonRadians = new double[INITIAL_CAPACITY];
+        row = new double[INITIAL_CAPACITY];
+        capacity = INITIAL_CAPACITY;
+        size = 0;
+    }
+
+    // lookup(Postcode, Postcode): Looks up the distance between the two postcodes in the matrix, returning NaN if either of them is not in the matrix.
+    private double lookup(Postcode source, Postcode destination)
+    {
+        Integer from = indices.get(source);
+        Integer to = indices.get(destination);
+        double[] distances = this.distances;
+        int capacity = this.capacity;
+
+        if (from == null || to == null || ((from * capacity) + to) >= distances.length)
+            return Double.NaN;
+
+        return distances[(from * capacity) + to];
+    }
+
+    // grow(): Doubles the capacity of the matrix, copying each existing row across.
+    private void grow()
+    {
+        int newCapacity = capacity * 2;
+        double[] newDistances = new double[newCapacity * newCapacity];
+        Postcode[] newPostcodes = new Postcode[newCapacity];
+
+        for (int i = 0; i < size; i++)
+        {
+            System.arraycopy(distances, i * capacity, newDistances, i * newCapacity, size);
+        }
+
+        System.arraycopy(postcodes, 0, newPostcodes, 0, size);
+
+        distances = newDistances;
+        postcodes = newPostcodes;
+        latRadians = Arrays.copyOf(latRadians, newCapacity);
+        cosLatitudes = Arrays.copyOf(cosLatitudes, newCapacity);
+        lonRadians = Arrays.copyOf(lonRadians, newCapacity);
+        row = new double[newCapacity];
+        capacity = newCapacity;
+    }
+}
@@ -22,21 +22,31 @@ public class Drone extends Model implements Runnable, Serializable
 	private final Stock stock;
 	private final List<Ingredient> ingredients;
 	private final List<Order> orders;
-	private final List<User> users;
-	private final Restaurant restaurant;
+	private final Map<String, User> customers;
+	private volatile Restaurant restaurant;
+	private transient DemandForecast forecast;
     private transient ServerComms comms;
-	private transient volatile static boolean readyToCheck = true;
+	private transient ChargingStation chargingStation;
+	private transient DistanceMatrix distances;
+	private transient Dispatcher dispatcher;
+	private transient boolean lowBattery = false;
+	private transient Stock.Reservation reservation;
 	private transient DataPersistence dataPersistence;
+	private transient DroneTelemetry telemetry = new DroneTelemetry(TELEMETRY_SAMPLES);
 
 	private String currentOrder = "";
 
 	private static final double BATTERY_USAGE_RATE = 0.25;
 	private static final int DRONE_CAPACITY = 10000;
 	private static final long RECHARGE_TIME = 120000;
+	private static final int TELEMETRY_SAMPLES = 600;
+	private static final long IDLE_TIMEOUT = 30000;
+	private static final long HOUR = 60 * 60 * 1000;
+	private static final double EXPECTED_DEMAND_SHARE = 0.9;
 
     private transient static final Map<Ingredient, Number> RESTOCKS_IN_PROGRESS = new HashMap<>();
 
-	public Drone(Number speed, Stock stock, ServerComms comms, List<Ingredient> ingredients, List<Order> orders, List<User> users, Restaurant restaurant, DataPersistence dataPersistence)
+	public Drone(Number speed, Stock stock, ServerComms comms, List<Ingredient> ingredients, List<Order> orders, Map<String, User> customers, Restaurant restaurant, DemandForecast forecast, ChargingStation chargingStation, DistanceMatrix distances, Dispatcher dispatcher, DataPersistence dataPersistence)
 	{
 		this.setSpeed(speed);
 		this.setCapacity(DRONE_CAPACITY);
@@ -49,8 +59,12 @@ public class Drone extends Model implements Runnable, Serializable
 		this.comms = comms;
 		this.ingredients = ingredients;
 		this.orders = orders;
-		this.users = users;
+		this.customers = customers;
 		this.restaurant = restaurant;
+		this.forecast = forecast;
+		this.chargingStation = chargingStation;
+		this.distances = distances;
+		this.dispatcher = dispatcher;
 		this.dataPersistence = dataPersistence;
 	}
 
@@ -65,13 +79,17 @@ public class Drone extends Model implements Runnable, Serializable
 			this.setProgress(0.00);
 			setStatus("Idle");
 
+			// Read the signal count before looking for work, so that a signal sent while looking isn't missed.
+			long signals = dispatcher.getSignals();
+			boolean worked = false;
+
 			// If the restock ingredients setting is enabled.
 			if (stock.getRestockingIngredientsEnabled())
 			{
 				// Try to restock ingredients.
 			    try
 				{
-					restockIngredients();
+					worked = restockIngredients();
 				}
 				catch (ConcurrentModificationException ex)
 				{
@@ -86,16 +104,37 @@ public class Drone extends Model implements Runnable, Serializable
 			// If there are no ingredients to restock, then try to deliver orders.
 			try
 			{
-				deliverOrders();
+				worked = deliverOrders() || worked;
 			}
 			catch (ConcurrentModificationException ex)
 			{
 				// Do nothing since another thread is working that will fix this issue.
+				worked = true;
 			}
 			catch (NoSuchElementException ex)
 			{
 				ex.printStackTrace();
 			}
+
+			// If there was nothing to do, top the battery up if it couldn't reach where the orders are expected to come from in the next hour.
+			if (!worked && needsTopUp())
+			{
+				rechargeBattery();
+				worked = true;
+			}
+
+			// Otherwise wait for the dispatcher to be signalled by a new order, an order becoming ready or an ingredient running low.
+			if (!worked)
+			{
+				try
+				{
+					dispatcher.awaitSignal(signals, IDLE_TIMEOUT);
+				}
+				catch (InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
 		}
 	}
 
@@ -114,6 +153,11 @@ public class Drone extends Model implements Runnable, Serializable
 	public void setSpeed(Number speed) {
 		this.speed = speed;
 	}
+
+	// setRestaurant(Restaurant): Changes the restaurant the drone works from when the server's restaurant changes. Trips already under way finish as planned.
+	public void setRestaurant(Restaurant restaurant) {
+		this.restaurant = restaurant;
+	}
 	
 	@Override
 	public String getName() {
@@ -154,6 +198,10 @@ public class Drone extends Model implements Runnable, Serializable
 		return status;
 	}
 
+	public DroneTelemetry getTelemetry() {
+		return telemetry;
+	}
+
 	public void setStatus(String status)
 	{
 		notifyUpdate("status",this.status,status);
@@ -161,42 +209,26 @@ public class Drone extends Model implements Runnable, Serializable
 	}
 
 	// restockIngredients(): Method that loops through each ingredient and checks if it is below the restock threshold, and then go to collect some from a Supplier if so.
-	private void restockIngredients() throws ConcurrentModificationException
+	// Returns whether the drone went out to restock anything.
+	private boolean restockIngredients() throws ConcurrentModificationException
 	{
+		boolean restocked = false;
+
 		for (Ingredient ingredient : ingredients)
 		{
-            // Add the key if it's not already in the RESTOCKS_IN_PROGRESS map.
-		    if (!RESTOCKS_IN_PROGRESS.containsKey(ingredient))
-				RESTOCKS_IN_PROGRESS.put(ingredient, 0);
-
 		    // Stop the thread if it's been interrupted.
 			if (Thread.currentThread().isInterrupted())
-				return;
+				return restocked;
 
-			// While the ingredient can be restocked:
-			while (canRestockIngredient(ingredient))
+			// While the ingredient can be restocked, claim a restock and go and collect it.
+			while (claimRestock(ingredient))
 			{
-				// Add one to the RESTOCKS_IN_PROGRESS counter for this ingredient.
-				RESTOCKS_IN_PROGRESS.put(ingredient, RESTOCKS_IN_PROGRESS.get(ingredient).intValue() + 1);
-
-				// Notify the other threads that they can now carry on with their check to see if an ingredient can be restocked.
-			    synchronized (stock)
-				{
-					readyToCheck = true;
-					stock.notify();
-				}
-
-				// Restock the ingredient.
 				restockIngredient(ingredient);
-			}
-
-            // Notify the other threads that they can now carry on with their check to see if an ingredient can be restocked.
-			synchronized (stock)
-			{
-				readyToCheck = true;
-				stock.notify();
+				restocked = true;
 			}
 		}
+
+		return restocked;
 	}
 
 	// restockIngredients(Map<Ingredient, Number>, int, Postcode): Recursive version of the restockIngredients function that is used to go to multiple suppliers along the same trip.
@@ -204,78 +236,48 @@ public class Drone extends Model implements Runnable, Serializable
 	{
 		for (Ingredient ingredient : ingredients)
 		{
-            // Add the key if it's not already in the RESTOCKS_IN_PROGRESS map.
-		    if (!RESTOCKS_IN_PROGRESS.containsKey(ingredient))
-				RESTOCKS_IN_PROGRESS.put(ingredient, 0);
-
             // Stop the thread if it's been interrupted.
 			if (Thread.currentThread().isInterrupted())
 				 return null;
 
 			// If the drone is unable to carry one restock package with its remaining load, as determined by the restock amount, continue.
-			if ((getCapacity().intValue() - load) < ingredient.getRestockAmount().intValue())
+			if ((getCapacity().intValue() - load) < restockAmount(ingredient))
 				continue;
 
-            // While the ingredient can be restocked:
-			while (canRestockIngredient(ingredient))
-			{
-				// Add one to the RESTOCKS_IN_PROGRESS counter for this ingredient.
-				RESTOCKS_IN_PROGRESS.put(ingredient, RESTOCKS_IN_PROGRESS.get(ingredient).intValue() + 1);
-
-				// Notify the other threads that they can now carry on with their check to see if an ingredient can be restocked.
-			    synchronized (stock)
-				{
-					readyToCheck = true;
-					stock.notify();
-				}
+			// If the drone would not have enough battery to visit this supplier and then get back to the restaurant, continue.
+			Postcode supplier = ingredient.getSupplier().getPostcode();
+			if (!hasBatteryFor(calculateDistance(source, supplier) + calculateDistance(supplier, restaurant.getLocation())))
+				continue;
 
-                // Restock the ingredient and return the loadedIngredients map.
+            // If the ingredient can be restocked, restock it and return the loadedIngredients map.
+			if (claimRestock(ingredient))
 				return restockIngredient(ingredient, load, loadedIngredients, source);
-			}
-
-            // Notify the other threads that they can now carry on with their check to see if an ingredient can be restocked.
-			synchronized (stock)
-			{
-				readyToCheck = true;
-				stock.notify();
-			}
 		}
 
 		return loadedIngredients;
 	}
 
-	// canRestockIngredient(Ingredient): Method that determines if an ingredient can be restocked.
-	private boolean canRestockIngredient(Ingredient ingredient)
+	// claimRestock(Ingredient): Checks whether the ingredient needs restocking and, if so, counts this drone as restocking it, all in one step so that two drones
+	// can never both claim the last restock that was needed.
+	private boolean claimRestock(Ingredient ingredient)
 	{
-		// Synchronise this based on the stock object.
-	    synchronized (stock)
+		synchronized (RESTOCKS_IN_PROGRESS)
 		{
-			try
-			{
-				// Sleep for a random time just to ensure everything is place.
-				Random rand = new Random();
-
-				Thread.sleep(rand.nextInt(200));
-
-				// If the thread is not ready to check if a dish can be prepared, wait.
-				if (!readyToCheck)
-				{
-					stock.wait();
-				}
-			}
-			catch (InterruptedException ex)
-			{
-				Thread.currentThread().interrupt();
+			if (!canRestockIngredient(ingredient))
 				return false;
-			}
 
-            // Set the readyToCheck boolean variable to false whilst this thread is checking if this ingredient can be prepared.
-			readyToCheck = false;
+			// Add one to the RESTOCKS_IN_PROGRESS counter for this ingredient.
+			RESTOCKS_IN_PROGRESS.merge(ingredient, 1, (a, b) -> a.intValue() + b.intValue());
+			return true;
 		}
+	}
 
+	// canRestockIngredient(Ingredient): Method that determines if an ingredient can be restocked.
+	private boolean canRestockIngredient(Ingredient ingredient)
+	{
 		// If the stock level of an ingredient plus any ingredients that are already coming via other drones is higher than or equal to the restock threshold, or the thread has been interrupted, return false.
-		if (stock.getStock(ingredient).intValue() + (RESTOCKS_IN_PROGRESS.get(ingredient).intValue() * (calculateMaxLoad(ingredient) / ingredient.getWeight().intValue()))
-				>= ingredient.getRestockThreshold().intValue() || Thread.currentThread().isInterrupted())
+		if (stock.getAvailableStock(ingredient).intValue() + (RESTOCKS_IN_PROGRESS.getOrDefault(ingredient, 0).intValue() * (calculateMaxLoad(ingredient) / ingredient.getWeight().intValue()))
+				>= restockThreshold(ingredient) || Thread.currentThread().isInterrupted())
 		{
 			return false;
 		}
@@ -294,6 +296,10 @@ public class Drone extends Model implements Runnable, Serializable
             load = calculateOptimalLoad(ingredient);
         }
 
+		// Make sure there is enough battery for the round trip to the supplier before leaving the restaurant.
+		Postcode supplier = ingredient.getSupplier().getPostcode();
+		prepareForTrip(calculateDistance(restaurant.getLocation(), supplier) + calculateDistance(supplier, restaurant.getLocation()));
+
 		// Call the fly() method and put the returning map into a variable.
 		Map<Ingredient, Number> loadedIngredients = fly(ingredient, load);
 
@@ -304,10 +310,13 @@ public class Drone extends Model implements Runnable, Serializable
 			Ingredient i = (Ingredient)entry.getKey();
 			Number ingredientLoad = (Number)entry.getValue();
 
-			stock.setStock(i, stock.getStock(i).intValue() + (ingredientLoad.intValue() / i.getWeight().intValue()));
+			stock.addStock(i, ingredientLoad.intValue() / i.getWeight().intValue());
 
 			// Subtract one from the RESTOCKS_IN_PROGRESS counter for this ingredient.
-			RESTOCKS_IN_PROGRESS.put(i, RESTOCKS_IN_PROGRESS.get(i).intValue() - 1);
+			synchronized (RESTOCKS_IN_PROGRESS)
+			{
+				RESTOCKS_IN_PROGRESS.merge(i, -1, (a, b) -> a.intValue() + b.intValue());
+			}
 		}
 
 		// Tell the server to back itself up when the stock level has changed.
@@ -326,85 +335,100 @@ public class Drone extends Model implements Runnable, Serializable
 		return fly(ingredient, load, loadedIngredients, source);
 	}
 
-	// deliverOrders(): Method that checks to see if any order can be delivered.
-	private void deliverOrders() throws NoSuchElementException, ConcurrentModificationException
+	// deliverOrders(): Method that asks the dispatcher for the highest priority order that can be delivered, and delivers it. Returns whether the drone delivered or recharged.
+	private boolean deliverOrders() throws NoSuchElementException
 	{
-		Order order = null;
+		// Return if the thread has been interrupted.
+		if (Thread.currentThread().isInterrupted())
+			return false;
 
-		// Synchronise on the orders object.
-		synchronized (orders)
-		{
-			// For every order in the orders list:
-		    for (Order o : orders)
-			{
-				// Return if the thread has been interrupted.
-			    if (Thread.currentThread().isInterrupted())
-					return;
+		lowBattery = false;
 
-			    // If the order is complete, cancelled, already out for delivery, or not yet ready to go out for delivery, ignore it.
-				if (o.isComplete() || o.isCancelled() || o.isOutForDelivery() || !orderReady(o))
-					continue;
+		reservation = null;
+		Order order = dispatcher.nextOrder(this::canDeliver);
 
-				// Otherwise set the isOutForDelivery boolean to true and set it to the order object.
-				o.deliverOrder();
-				order = o;
-			}
+		// Give the dishes back if the order was accepted but cancelled before it could go out for delivery.
+		if (order == null && reservation != null)
+		{
+			stock.release(reservation);
+			reservation = null;
 		}
 
-		// If the order object is not null, then deliver the order.
+		// If the order object is not null, then deliver the order, otherwise charge up if an order was left due to a lack of battery.
 		if (order != null)
 			deliverOrder(order);
+		else if (lowBattery)
+			rechargeBattery();
+		else
+			return false;
+
+		return true;
 	}
 
-	// deliverOrder(Order): Function that simulates the delivery of the passed order.
-	private void deliverOrder(Order order) throws NoSuchElementException
+	// canDeliver(Order): Determines if the order is ready to go out for delivery, and that this drone has the battery to make the round trip.
+	private boolean canDeliver(Order order)
 	{
-		User user = findCustomer(order);
+		// Drop the order if its customer has been removed, since there is nowhere to deliver it to.
+		if (findCustomer(order) == null)
+		{
+			dispatcher.removeOrder(order);
+			return false;
+		}
 
-		// For every ordered dish, reduce the stock based on the quantity ordered.
-		for (Map.Entry entry : order.getOrderedDishes().entrySet())
+		// If the dishes aren't ready, have the stock signal the dispatcher as soon as they are.
+		if (!orderReady(order))
 		{
-			Dish dish = (Dish)entry.getKey();
-			Number quantity = (Number)entry.getValue();
+			stock.whenAvailable(order.getId(), order.getOrderedDishes(), dispatcher::signal);
+			return false;
+		}
 
-			stock.setStock(dish, stock.getStock(dish).intValue() - quantity.intValue());
+		// Leave the order for another drone if this one could not make the round trip on its current charge.
+		if (!hasBatteryFor(deliveryDistance(order)))
+		{
+			lowBattery = true;
+			return false;
 		}
 
-		// If the customer could be found, simulate the flying process.
-		if (user != null)
-			fly(order, user);
-		else
-			throw new NoSuchElementException("User for " + order.getName() + " order could not be found.");
+		// Reserve the dishes so that no other drone can take them while this one is loaded up.
+		reservation = stock.reserveDishes(order.getOrderedDishes());
+
+		return reservation != null;
 	}
 
-	// findCustomer(Order): Method that finds the customer of any given order.
-	private User findCustomer(Order order)
+	// deliveryDistance(Order): Returns the distance of the round trip from the restaurant to the customer of the order and back again.
+	private double deliveryDistance(Order order)
 	{
-		// Sleep for 100 ms just to ensure that the data is now on the server.
-	    try
-		{
-			Thread.sleep(100);
-		}
-		catch (InterruptedException ex)
+		User user = findCustomer(order);
+
+		if (user == null)
+			return 0.0;
+
+		return calculateDistance(restaurant.getLocation(), user.getPostcode()) + calculateDistance(user.getPostcode(), restaurant.getLocation());
+	}
+
+	// deliverOrder(Order): Function that simulates the delivery of the passed order.
+	private void deliverOrder(Order order) throws NoSuchElementException
+	{
+		User user = findCustomer(order);
+
+		// If the customer was removed since the order was accepted, give the dishes back rather than using them up.
+		if (user == null)
 		{
-			Thread.currentThread().interrupt();
+			stock.release(reservation);
+			reservation = null;
+			order.resetOrder();
+			throw new NoSuchElementException("User for " + order.getName() + " order could not be found.");
 		}
 
-	    // Synchronise on the users object.
-		synchronized (users)
-		{
-			// For every user, search every one of their orders and check to see if they made the order.
-		    for (User user : users)
-			{
-				for (Order o : user.getOrders())
-				{
-					if (o.getName().equals(order.getName()))
-						return user;
-				}
-			}
+		// Take the dishes reserved for the order out of the stock, and simulate the flying process.
+		stock.commit(reservation);
+		fly(order, user);
+	}
 
-			return null;
-		}
+	// findCustomer(Order): Method that finds the customer of any given order using the server's order to customer index.
+	private User findCustomer(Order order)
+	{
+		return customers.get(order.getId());
 	}
 
 	// fly(Ingredient, int): Function that initiates the flying process when restocking ingredients and simulates flying back to the restaurant.
@@ -457,7 +481,7 @@ public class Drone extends Model implements Runnable, Serializable
 	// fly(Order, User): Function that simulates the flying process for orders.
 	private void fly(Order order, User user)
 	{
-		currentOrder = order.getName();
+		setCurrentOrder(order.getId());
 
 		// Set up the details of the flight.
 		setStatus("Delivering order " + order.getName() + " to " + user.getName());
@@ -474,10 +498,11 @@ public class Drone extends Model implements Runnable, Serializable
 		// If the flight went off without issue, return to the restaurant and set the order to complete, sending this information to the client.
 		if (fly())
 		{
-			currentOrder = "";
+			setCurrentOrder("");
 
 			order.setStatus("Complete");
 			order.completeOrder();
+			dispatcher.orderDelivered(order);
 			setStatus("Returning to " + restaurant.getName());
 			setSource(user.getPostcode());
 			setDestination(restaurant.getLocation());
@@ -494,18 +519,52 @@ public class Drone extends Model implements Runnable, Serializable
 	// fly(): Method that starts the core flight simulation by calculating the distance of the flight and the speed of the drone.
 	private boolean fly()
 	{
-	    Postcode source = getSource();
-		Postcode destination = getDestination();
-
-		// Determine the distance by either getting the already calculated distance to the restaurant if the source or the destination is the restaurant, or by calculating the
-		// distance between the source and destination using the calculateDistance() method.
-		double distance = (source == restaurant.getLocation()) ? destination.getDistance().doubleValue() :
-				(destination == restaurant.getLocation()) ? source.getDistance().doubleValue() : source.calculateDistance(destination);
+		double distance = calculateDistance(getSource(), getDestination());
 		float speed = getSpeed().floatValue();
 
 		return fly(distance, speed);
 	}
 
+	// calculateDistance(Postcode, Postcode): Determine the distance between the source and destination by looking it up in the shared DistanceMatrix.
+	private double calculateDistance(Postcode source, Postcode destination)
+	{
+		return distances.getDistance(source, destination);
+	}
+
+	// batteryRequired(double): Returns the battery percentage used up by flying the passed distance, given the drone's speed and BATTERY_USAGE_RATE per second.
+	private double batteryRequired(double distance)
+	{
+		return Math.ceil(distance / getSpeed().doubleValue()) * BATTERY_USAGE_RATE;
+	}
+
+	// hasBatteryFor(double): Determines if the drone can fly the passed distance on its current charge. A fully charged drone can always set off, since
+	// a trip that is too long for a full battery can only be completed by recharging along the way.
+	private boolean hasBatteryFor(double distance)
+	{
+		return batteryRequired(distance) <= getBattery().doubleValue() || getBattery().doubleValue() >= 100.0;
+	}
+
+	// needsTopUp(): Determines if the drone's battery would not last a round trip out to the distance most of the orders in the next hour are expected to come from,
+	// going by where orders were placed from in that hour of the day before.
+	private boolean needsTopUp()
+	{
+		Postcode location = restaurant.getLocation();
+
+		if (location == null || getBattery().doubleValue() >= 100.0)
+			return false;
+
+		double reach = forecast.getHeatmap().getReach(location, DemandForecast.hourOfDay(System.currentTimeMillis() + HOUR), EXPECTED_DEMAND_SHARE);
+
+		return !hasBatteryFor(reach * 2);
+	}
+
+	// prepareForTrip(double): Recharges the battery before departure if the drone could not otherwise complete a trip of the passed distance.
+	private void prepareForTrip(double distance)
+	{
+		if (!hasBatteryFor(distance))
+			rechargeBattery();
+	}
+
 	// fly(double, speed): Core flight method which performs the flight simulation in seconds.
 	private boolean fly(double distance, float speed)
 	{
@@ -541,7 +600,7 @@ public class Drone extends Model implements Runnable, Serializable
 				if (currentOrder.equals(""))
 					break;
 
-				if (order.getName().equals(currentOrder) && order.isCancelled())
+				if (order.getId().equals(currentOrder) && order.isCancelled())
 				{
 					cancelOrder(currentDistance, speed);
 					return false;
@@ -571,6 +630,8 @@ public class Drone extends Model implements Runnable, Serializable
 			if (getBattery().doubleValue() > 0.0)
 				setBattery(getBattery().doubleValue() - BATTERY_USAGE_RATE);
 
+			recordTelemetry();
+
 			// Tell the server to back itself when the progress of the drone has changed.
 			dataPersistence.backupServer();
 		}
@@ -584,7 +645,7 @@ public class Drone extends Model implements Runnable, Serializable
 
 	private void cancelOrder(double distance, float speed)
 	{
-		currentOrder = "";
+		setCurrentOrder("");
 
 		setStatus("Order cancelled - returning to " + restaurant.getName());
 		setDestination(restaurant.getLocation());
@@ -592,22 +653,52 @@ public class Drone extends Model implements Runnable, Serializable
 		fly(distance, speed);
 	}
 
-	// recoverDrone(ServerComms, DataPersistence): Sets the ServerComms object and the DataPersistence object to the passed variables to send further backups when recovered.
-	public void recoverDrone(ServerComms comms, DataPersistence dataPersistence)
+	// recoverDrone(ServerComms, DemandForecast, ChargingStation, DistanceMatrix, Dispatcher, DataPersistence): Sets the ServerComms, DemandForecast, ChargingStation, DistanceMatrix,
+	// Dispatcher and DataPersistence objects to the passed variables to send further backups when recovered.
+	public void recoverDrone(ServerComms comms, DemandForecast forecast, ChargingStation chargingStation, DistanceMatrix distances, Dispatcher dispatcher, DataPersistence dataPersistence)
 	{
+		this.forecast = forecast;
 		this.comms = comms;
+		this.chargingStation = chargingStation;
+		this.distances = distances;
+		this.dispatcher = dispatcher;
 		this.dataPersistence = dataPersistence;
+		this.telemetry = new DroneTelemetry(TELEMETRY_SAMPLES);
+	}
+
+	// setCurrentOrder(String): Sets the order currently being delivered, so that the telemetry can report its position.
+	private void setCurrentOrder(String order)
+	{
+		currentOrder = order;
+		telemetry.setOrder(order);
+	}
+
+	// recordTelemetry(): Records the current position of the drone, interpolated between the source and the destination using the progress of the flight.
+	private void recordTelemetry()
+	{
+		Postcode from = getSource();
+		Postcode to = getDestination();
+
+		// Leave out flights to or from somewhere that couldn't be looked up, rather than unboxing a missing coordinate.
+		if (from == null || to == null || !from.isLocated() || !to.isLocated())
+			return;
+
+		double fraction = getProgress().doubleValue() / 100.0;
+		double latitude = from.getLatitude() + ((to.getLatitude() - from.getLatitude()) * fraction);
+		double longitude = from.getLongitude() + ((to.getLongitude() - from.getLongitude()) * fraction);
+
+		telemetry.record(System.currentTimeMillis(), latitude, longitude, getProgress().floatValue(), getBattery().floatValue());
 	}
 
 	// orderReady(Order): Method that checks if an order is ready to be sent out for delivery.
 	private boolean orderReady(Order order)
 	{
-		// For every ordered dish, check the stock levels to see if there is enough stock of that dish to satisfy the quantity ordered.
+		// For every ordered dish, check the unreserved stock levels to see if there is enough stock of that dish to satisfy the quantity ordered.
 	    for (Map.Entry entry : order.getOrderedDishes().entrySet())
 		{
 			Dish dish = (Dish)entry.getKey();
 			Number quantity = (Number)entry.getValue();
-			Number stockAmount = stock.getStock(dish);
+			Number stockAmount = stock.getAvailableStock(dish);
 
 			if (stockAmount.intValue() < quantity.intValue())
 				return false;
@@ -641,20 +732,36 @@ public class Drone extends Model implements Runnable, Serializable
 		setSource(restaurant.getLocation());
 	}
 
-	// rechargeBattery(): Function that simulates recharging the battery of the drone back at the restaurant.
+	// rechargeBattery(): Function that simulates recharging the battery of the drone back at the restaurant, queuing for a free charging bay first if they are all in use.
 	private void rechargeBattery()
 	{
+		setStatus("Waiting for a charging bay");
+
+		try
+		{
+			chargingStation.acquireBay();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			return;
+		}
+
 		setStatus("Recharging battery");
 
-		// Sleep for the time indicated by the RECHARGE_TIME long constant.
+		// Sleep for the portion of RECHARGE_TIME needed to top the battery back up to full.
 		try
 		{
-			Thread.sleep(RECHARGE_TIME);
+			Thread.sleep(Math.round(RECHARGE_TIME * ((100.0 - Math.max(getBattery().doubleValue(), 0.0)) / 100.0)));
 		}
 		catch (InterruptedException ex)
 		{
 			Thread.currentThread().interrupt();
 		}
+		finally
+		{
+			chargingStation.releaseBay();
+		}
 
 		// Set the battery to 100% charge.
 		setBattery(100.0);
@@ -665,8 +772,8 @@ public class Drone extends Model implements Runnable, Serializable
 	{
 		int capacity = getCapacity().intValue();
 		double weight = ingredient.getWeight().doubleValue();
-		int restockAmount = ingredient.getRestockAmount().intValue();
-		int restockThreshold = ingredient.getRestockThreshold().intValue();
+		int restockAmount = restockAmount(ingredient);
+		int restockThreshold = restockThreshold(ingredient);
 		int load = 0;
 
 		// While the load is below the capacity of the drone, or the restock threshold times the weight of the ingredient,
@@ -683,10 +790,23 @@ public class Drone extends Model implements Runnable, Serializable
     // load of the current drone collections of the specific ingredient, rounded to the nearest restock amount possible (at least 1 restock amount).
 	private int calculateOptimalLoad(Ingredient ingredient)
     {
-        int maxThresholdLoad = ingredient.getRestockThreshold().intValue() * ingredient.getWeight().intValue();
-        int incomingLoad = (RESTOCKS_IN_PROGRESS.get(ingredient).intValue() - 1) * calculateMaxLoad(ingredient);
-        int stockLoad = stock.getStock(ingredient).intValue() * ingredient.getWeight().intValue();
-        int optimalBulkAmount = Math.max((maxThresholdLoad - incomingLoad - stockLoad) / ingredient.getRestockAmount().intValue(), 1);
-        return Math.min(calculateMaxLoad(ingredient), optimalBulkAmount * ingredient.getRestockAmount().intValue());
+        int maxThresholdLoad = restockThreshold(ingredient) * ingredient.getWeight().intValue();
+        int incomingLoad = (RESTOCKS_IN_PROGRESS.getOrDefault(ingredient, 0).intValue() - 1) * calculateMaxLoad(ingredient);
+        int stockLoad = stock.getAvailableStock(ingredient).intValue() * ingredient.getWeight().intValue();
+        int optimalBulkAmount = Math.max((maxThresholdLoad - incomingLoad - stockLoad) / restockAmount(ingredient), 1);
+        return Math.min(calculateMaxLoad(ingredient), optimalBulkAmount * restockAmount(ingredient));
     }
-}
\ No newline at end of file
+
+	// restockThreshold(Ingredient): Returns the threshold below which the ingredient is restocked, raised by the DemandForecast ahead of busy hours and by how much was
+	// used recently.
+	private int restockThreshold(Ingredient ingredient)
+	{
+		return forecast.getThreshold(ingredient, stock);
+	}
+
+	// restockAmount(Ingredient): Returns the amount of the ingredient collected at a time, raised by the DemandForecast ahead of busy hours.
+	private int restockAmount(Ingredient ingredient)
+	{
+		return forecast.getBatchSize(ingredient);
+	}
+}
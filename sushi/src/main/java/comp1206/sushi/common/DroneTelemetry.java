@@ -0,0 +1,85 @@
+package comp1206.sushi.common;
+
+// DroneTelemetry class: Fixed-size ring buffer of the samples recorded by a single drone, held in primitive arrays so that recording never allocates.
+public class DroneTelemetry
+{
+    private final long[] times;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final float[] progress;
+    private final float[] battery;
+
+    private int head = 0;
+    private int size = 0;
+    private volatile String order = "";
+
+    public DroneTelemetry(int capacity)
+    {
+        times = new long[capacity];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        progress = new float[capacity];
+        battery = new float[capacity];
+    }
+
+    // record(long, double, double, float, float): Records a sample, overwriting the oldest sample once the buffer is full.
+    public synchronized void record(long time, double latitude, double longitude, float progress, float battery)
+    {
+        times[head] = time;
+        latitudes[head] = latitude;
+        longitudes[head] = longitude;
+        this.progress[head] = progress;
+        this.battery[head] = battery;
+
+        head = (head + 1) % times.length;
+        size = Math.min(size + 1, times.length);
+    }
+
+    // readLatest(int, double[], double[], float[]): Copies the latest position and progress into the passed arrays at the given index, returning false if nothing has been recorded yet.
+    public synchronized boolean readLatest(int index, double[] latitudes, double[] longitudes, float[] progress)
+    {
+        if (size == 0)
+            return false;
+
+        int latest = (head - 1 + times.length) % times.length;
+
+        latitudes[index] = this.latitudes[latest];
+        longitudes[index] = this.longitudes[latest];
+        progress[index] = this.progress[latest];
+
+        return true;
+    }
+
+    // copyHistory(long, long[], double[], double[], float[], float[]): Copies every sample recorded after the passed time, oldest first, into the passed arrays and returns the number copied.
+    public synchronized int copyHistory(long since, long[] times, double[] latitudes, double[] longitudes, float[] progress, float[] battery)
+    {
+        int copied = 0;
+        int start = (head - size + this.times.length) % this.times.length;
+
+        for (int i = 0; i < size && copied < times.length; i++)
+        {
+            int slot = (start + i) % this.times.length;
+
+            if (this.times[slot] <= since)
+                continue;
+
+            times[copied] = this.times[slot];
+            latitudes[copied] = this.latitudes[slot];
+            longitudes[copied] = this.longitudes[slot];
+            progress[copied] = this.progress[slot];
+            battery[copied] = this.battery[slot];
+            copied++;
+        }
+
+        return copied;
+    }
+
+    public synchronized int size() { return size; }
+
+    public int capacity() { return times.length; }
+
+    // setOrder(String): Sets the ID of the order currently being delivered (or an empty String if there is none).
+    public void setOrder(String order) { this.order = order; }
+
+    public String getOrder() { return order; }
+}
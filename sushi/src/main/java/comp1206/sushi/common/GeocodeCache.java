@@ -0,0 +1,253 @@
+package comp1206.sushi.common;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// GeocodeCache class: Cache of the coordinates of postcodes that had to be looked up online, so that they are only looked up once rather than every time a Postcode is
+// created. Recently used postcodes are kept in an in-memory LRU, and every lookup is appended to a file that is read back into it on startup.
+// Entries older than the time to live are looked up again, but still used if that fails.
+// The file is the one in the sushi.geocodecache system property (geocode.cache by default), and the time to live in days is in sushi.geocodecache.ttl.
+public class GeocodeCache
+{
+    private static final Logger logger = LogManager.getLogger("GeocodeCache");
+
+    public static final String FILE_PROPERTY = "sushi.geocodecache";
+    public static final String TTL_PROPERTY = "sushi.geocodecache.ttl";
+    private static final String DEFAULT_FILE = "geocode.cache";
+    private static final long DEFAULT_TTL_DAYS = 30;
+    private static final long DAY = 24 * 60 * 60 * 1000;
+    private static final int DEFAULT_CAPACITY = 10000;
+
+    private static volatile GeocodeCache defaultCache;
+
+    private final File file;
+    private final long timeToLive;
+    private final int capacity;
+    private final LinkedHashMap<String, CachedLocation> entries;
+    private BufferedWriter writer;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // CachedLocation class: The coordinates of a postcode along with when they were looked up.
+    private static class CachedLocation
+    {
+        private final double latitude;
+        private final double longitude;
+        private final long resolvedAt;
+
+        private CachedLocation(double latitude, double longitude, long resolvedAt)
+        {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+
+    // GeocodeCache(File, long, int): Creates a cache backed by the passed file (or only held in memory if it is null), holding up to the passed number of postcodes in memory.
+    public GeocodeCache(File file, long timeToLive, int capacity)
+    {
+        this.file = file;
+        this.timeToLive = timeToLive;
+        this.capacity = capacity;
+
+        this.entries = new LinkedHashMap<String, CachedLocation>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLocation> eldest)
+            {
+                if (size() <= GeocodeCache.this.capacity)
+                    return false;
+
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+
+        if (file != null)
+            load();
+    }
+
+    // getDefault(): Returns the cache backed by the default file, loading it the first time it is needed.
+    public static GeocodeCache getDefault()
+    {
+        if (defaultCache == null)
+        {
+            synchronized (GeocodeCache.class)
+            {
+                if (defaultCache == null)
+                {
+                    long ttl = Long.getLong(TTL_PROPERTY, DEFAULT_TTL_DAYS) * DAY;
+                    defaultCache = new GeocodeCache(new File(System.getProperty(FILE_PROPERTY, DEFAULT_FILE)), ttl, DEFAULT_CAPACITY);
+                }
+            }
+        }
+
+        return defaultCache;
+    }
+
+    // resolve(String, Function<String, double[]>): Returns the latitude and longitude of the postcode, calling the passed lookup (which returns null if it fails)
+    // only if the postcode isn't cached or has expired. Returns null if the postcode has never been looked up successfully.
+    public double[] resolve(String code, Function<String, double[]> lookup)
+    {
+        String key = normalise(code);
+        CachedLocation entry;
+
+        synchronized (this)
+        {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && System.currentTimeMillis() - entry.resolvedAt < timeToLive)
+        {
+            hits.incrementAndGet();
+            return new double[] { entry.latitude, entry.longitude };
+        }
+
+        if (entry == null)
+            misses.incrementAndGet();
+        else
+            refreshes.incrementAndGet();
+
+        // Look the postcode up outside the lock, so that other postcodes can be served from the cache in the meantime.
+        double[] latLong = lookup.apply(code);
+
+        if (latLong == null)
+        {
+            if (entry == null)
+                return null;
+
+            staleHits.incrementAndGet();
+            return new double[] { entry.latitude, entry.longitude };
+        }
+
+        put(key, new CachedLocation(latLong[0], latLong[1], System.currentTimeMillis()));
+        return latLong;
+    }
+
+    // invalidate(String): Forgets the cached coordinates of the postcode, so that it is looked up again next time.
+    public synchronized void invalidate(String code) { entries.remove(normalise(code)); }
+
+    public synchronized int size() { return entries.size(); }
+
+    public long getHits() { return hits.get(); }
+
+    public long getMisses() { return misses.get(); }
+
+    public long getRefreshes() { return refreshes.get(); }
+
+    public long getStaleHits() { return staleHits.get(); }
+
+    public long getEvictions() { return evictions.get(); }
+
+    // getHitRate(): Returns the share of lookups that were served from the cache without having to go online.
+    public double getHitRate()
+    {
+        long total = hits.get() + misses.get() + refreshes.get();
+        return (total == 0) ? 0.0 : hits.get() / (double)total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d postcodes cached, %d hits, %d misses, %d refreshes, %d stale, %d evicted (%.1f%% hit rate)",
+                size(), getHits(), getMisses(), getRefreshes(), getStaleHits(), getEvictions(), getHitRate() * 100);
+    }
+
+    // put(String, CachedLocation): Caches the entry in memory and appends it to the file.
+    private synchronized void put(String key, CachedLocation entry)
+    {
+        entries.put(key, entry);
+
+        if (writer == null)
+            return;
+
+        try
+        {
+            writer.write(key + "," + entry.latitude + "," + entry.longitude + "," + entry.resolvedAt);
+            writer.newLine();
+            writer.flush();
+        }
+        catch (IOException ex)
+        {
+            logger.error("Unable to write to the geocode cache, so it will only be kept in memory: " + ex.getMessage());
+            writer = null;
+        }
+    }
+
+    // load(): Reads the file back into memory, then rewrites it with only the latest entry of each postcode still held.
+    private void load()
+    {
+        int lines = 0;
+
+        if (file.isFile())
+        {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+            {
+                String line;
+
+                while ((line = reader.readLine()) != null)
+                {
+                    String[] fields = line.split(",");
+                    lines++;
+
+                    try
+                    {
+                        entries.put(fields[0], new CachedLocation(Double.parseDouble(fields[1]), Double.parseDouble(fields[2]), Long.parseLong(fields[3])));
+                    }
+                    catch (NumberFormatException | ArrayIndexOutOfBoundsException ex)
+                    {
+                        // Do nothing since the line was only partly written.
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                logger.error("Unable to read the geocode cache: " + ex.getMessage());
+            }
+        }
+
+        evictions.set(0);
+
+        try
+        {
+            // Only rewrite the file once it has built up twice as many lines as are worth keeping.
+            boolean compact = lines > entries.size() * 2;
+
+            writer = new BufferedWriter(new FileWriter(file, !compact));
+
+            if (compact)
+            {
+                for (Map.Entry<String, CachedLocation> entry : entries.entrySet())
+                {
+                    writer.write(entry.getKey() + "," + entry.getValue().latitude + "," + entry.getValue().longitude + "," + entry.getValue().resolvedAt);
+                    writer.newLine();
+                }
+
+                writer.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.error("Unable to open the geocode cache, so it will only be kept in memory: " + ex.getMessage());
+            writer = null;
+        }
+    }
+
+    // normalise(String): Returns the postcode in upper case without any spaces.
+    private static String normalise(String code) { return code.replace(" ", "").toUpperCase(); }
+}
@@ -0,0 +1,11 @@
+package comp1206.sushi.common;
+
+// Geocoder interface: Strategy used to find the latitude and longitude of a postcode when a Postcode is created.
+public interface Geocoder
+{
+    // getName(): Returns the name used to select the geocoder in the configuration file.
+    String getName();
+
+    // locate(String): Returns the latitude and longitude of the postcode, or null if it can't be found.
+    double[] locate(String code);
+}
@@ -0,0 +1,270 @@
+package comp1206.sushi.common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+// Geocoders class: The built in Geocoder strategies, and the one used to create every Postcode.
+// The geocoder is chosen with the sushi.geocoder system property or the GEOCODER line of a configuration file, by name - "offline", "online", "synthetic", "default",
+// "fixture:<file>" or "http:<url>" - or several names separated by commas to try each in turn.
+public class Geocoders
+{
+    private static final Logger logger = LogManager.getLogger("Geocoders");
+
+    public static final String PROPERTY = "sushi.geocoder";
+
+    // Set the sushi.postcodes.online system property to false to never look up postcodes missing from the PostcodeDatabase online in the default geocoder.
+    public static final String ONLINE_PROPERTY = "sushi.postcodes.online";
+
+    public static final String ONLINE_URL = "https://www.southampton.ac.uk/~ob1a12/postcode/postcode.php";
+
+    // How long an HTTP lookup waits to connect, and then for an answer, in milliseconds, so that an unreachable lookup can't hold up whoever is creating a postcode.
+    public static final int HTTP_TIMEOUT = 5000;
+
+    // The area synthetic postcodes are spread over, around Southampton.
+    private static final double SYNTHETIC_LATITUDE = 50.85;
+    private static final double SYNTHETIC_LONGITUDE = -1.55;
+    private static final double SYNTHETIC_SPAN = 0.2;
+
+    // OFFLINE: Look postcodes up in the default PostcodeDatabase.
+    public static final Geocoder OFFLINE = new Geocoder()
+    {
+        public String getName() { return "offline"; }
+
+        public double[] locate(String code) { return Geocoders.locate(PostcodeDatabase.getDefault(), code); }
+    };
+
+    // ONLINE: Look postcodes up with the university's online lookup, through the GeocodeCache.
+    public static final Geocoder ONLINE = new Geocoder()
+    {
+        private final Geocoder lookup = http(ONLINE_URL);
+
+        public String getName() { return "online"; }
+
+        public double[] locate(String code) { return GeocodeCache.getDefault().resolve(code, lookup::locate); }
+    };
+
+    // SYNTHETIC: Make up coordinates from a hash of the postcode, so that the same postcode is always in the same place without needing any data or network.
+    public static final Geocoder SYNTHETIC = new Geocoder()
+    {
+        public String getName() { return "synthetic"; }
+
+        public double[] locate(String code)
+        {
+            long key = PostcodeDatabase.pack(code);
+
+            if (key < 0)
+                return null;
+
+            long hash = mix(key);
+
+            // Use the top and bottom halves of the hash for the latitude and longitude, rounded to micro-degrees like real postcodes.
+            double latitude = SYNTHETIC_LATITUDE + (SYNTHETIC_SPAN * ((hash >>> 32) / (double)(1L << 32)));
+            double longitude = SYNTHETIC_LONGITUDE + (SYNTHETIC_SPAN * ((hash & 0xFFFFFFFFL) / (double)(1L << 32)));
+
+            return new double[] { Math.round(latitude * 1e6) / 1e6, Math.round(longitude * 1e6) / 1e6 };
+        }
+    };
+
+    // DEFAULT: Look postcodes up offline, only going online for those missing from the PostcodeDatabase (unless the sushi.postcodes.online property is false).
+    public static final Geocoder DEFAULT = new Geocoder()
+    {
+        public String getName() { return "default"; }
+
+        public double[] locate(String code)
+        {
+            double[] location = OFFLINE.locate(code);
+
+            if (location == null && Boolean.parseBoolean(System.getProperty(ONLINE_PROPERTY, "true")))
+                location = ONLINE.locate(code);
+
+            return location;
+        }
+    };
+
+    private static volatile Geocoder current;
+
+    private Geocoders() { }
+
+    // getDefault(): Returns the geocoder used to create every Postcode - the one in the sushi.geocoder property if there is one, otherwise DEFAULT.
+    public static Geocoder getDefault()
+    {
+        if (current == null)
+        {
+            synchronized (Geocoders.class)
+            {
+                if (current == null)
+                {
+                    String name = System.getProperty(PROPERTY);
+                    current = (name == null) ? DEFAULT : forName(name);
+                }
+            }
+        }
+
+        return current;
+    }
+
+    // setDefault(Geocoder): Sets the geocoder used to create every Postcode from now on.
+    public static void setDefault(Geocoder geocoder) { current = geocoder; }
+
+    // forName(String): Returns the geocoder described by the passed name, otherwise throwing a NoSuchElementException.
+    public static Geocoder forName(String name) throws NoSuchElementException
+    {
+        if (name.contains(","))
+        {
+            List<Geocoder> geocoders = new ArrayList<>();
+
+            for (String part : name.split(","))
+            {
+                geocoders.add(forName(part));
+            }
+
+            return chain(geocoders.toArray(new Geocoder[0]));
+        }
+
+        name = name.trim();
+
+        if (name.toLowerCase().startsWith("fixture:"))
+            return fixture(new File(name.substring("fixture:".length())));
+
+        if (name.toLowerCase().startsWith("http:") && !name.toLowerCase().startsWith("http://"))
+            return http(name.substring("http:".length()));
+
+        for (Geocoder geocoder : new Geocoder[] { OFFLINE, ONLINE, SYNTHETIC, DEFAULT })
+        {
+            if (geocoder.getName().equalsIgnoreCase(name))
+                return geocoder;
+        }
+
+        throw new NoSuchElementException("Cannot find geocoder called \"" + name + "\"");
+    }
+
+    // http(String): Returns a geocoder that looks postcodes up at the passed URL, which is expected to answer ?postcode=<code> with a JSON object holding "lat" and "long",
+    // as the university's lookup and the MockGeocodingServer in the tests both do.
+    public static Geocoder http(String url) { return http(url, HTTP_TIMEOUT); }
+
+    // http(String, int): Returns a geocoder that looks postcodes up at the passed URL, giving up on a lookup if it can't connect or isn't answered within the timeout.
+    public static Geocoder http(String url, int timeout)
+    {
+        return new Geocoder()
+        {
+            public String getName() { return "http:" + url; }
+
+            public double[] locate(String code)
+            {
+                try
+                {
+                    URLConnection connection = new URL(url + "?postcode=" + code.replace(" ", "")).openConnection();
+                    connection.setConnectTimeout(timeout);
+                    connection.setReadTimeout(timeout);
+
+                    try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream())))
+                    {
+                        JSONObject jsonPostcode = new JSONObject(in.readLine());
+
+                        // Round to the nearest micro-degree, as in the PostcodeDatabase.
+                        return new double[] { Math.round(jsonPostcode.getDouble("lat") * 1e6) / 1e6, Math.round(jsonPostcode.getDouble("long") * 1e6) / 1e6 };
+                    }
+                }
+                catch (SocketTimeoutException ex)
+                {
+                    logger.error("Timed out looking up postcode \"" + code + "\" at " + url + " after " + timeout + "ms.");
+                    return null;
+                }
+                catch (Exception ex)
+                {
+                    logger.error("Unable to look up postcode \"" + code + "\": " + ex.getMessage() + " This likely means that the postcode is invalid.");
+                    return null;
+                }
+            }
+        };
+    }
+
+    // fixture(File): Returns a geocoder that looks postcodes up in a PostcodeDatabase loaded from the passed file, which is empty if the file can't be read.
+    public static Geocoder fixture(File file)
+    {
+        PostcodeDatabase database;
+
+        try (FileInputStream input = new FileInputStream(file))
+        {
+            database = PostcodeDatabase.load(input);
+        }
+        catch (IOException ex)
+        {
+            logger.error("Unable to load the postcode fixture " + file + ": " + ex.getMessage());
+            database = PostcodeDatabase.empty();
+        }
+
+        PostcodeDatabase fixture = database;
+
+        return new Geocoder()
+        {
+            public String getName() { return "fixture:" + file.getPath(); }
+
+            public double[] locate(String code) { return Geocoders.locate(fixture, code); }
+        };
+    }
+
+    // chain(Geocoder...): Returns a geocoder that tries each of the passed geocoders in turn until one of them finds the postcode.
+    public static Geocoder chain(Geocoder... geocoders)
+    {
+        return new Geocoder()
+        {
+            public String getName()
+            {
+                List<String> names = new ArrayList<>();
+
+                for (Geocoder geocoder : geocoders)
+                {
+                    names.add(geocoder.getName());
+                }
+
+                return String.join(",", names);
+            }
+
+            public double[] locate(String code)
+            {
+                for (Geocoder geocoder : geocoders)
+                {
+                    double[] location = geocoder.locate(code);
+
+                    if (location != null)
+                        return location;
+                }
+
+                return null;
+            }
+        };
+    }
+
+    // locate(PostcodeDatabase, String): Returns the coordinates of the postcode in the database, or null if it isn't there.
+    private static double[] locate(PostcodeDatabase database, String code)
+    {
+        int index = database.indexOf(code);
+
+        if (index < 0)
+            return null;
+
+        return new double[] { database.getLatitude(index), database.getLongitude(index) };
+    }
+
+    // mix(long): Scrambles the bits of the passed value (the SplitMix64 finaliser), so that similar postcodes end up far apart.
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,40 @@
+package comp1206.sushi.common;
+
+// Haversine class: Great circle distance kernel over primitive coordinates. Points are passed as their latitude and longitude in radians along with the cosine of their
+// latitude, which are worked out once per point, so a distance costs two sines and a square root and nothing is allocated. The batch version runs over parallel arrays
+// in a single tight loop.
+public final class Haversine
+{
+    public static final double EARTH_RADIUS = 6371000.0;
+
+    private Haversine() { }
+
+    // distance(double, double, double, double, double, double): Returns the distance in metres between the two points, given as latitude (radians), cosine of latitude
+    // and longitude (radians).
+    public static double distance(double lat1, double cosLat1, double lon1, double lat2, double cosLat2, double lon2)
+    {
+        double sinLat = Math.sin((lat2 - lat1) * 0.5);
+        double sinLon = Math.sin((lon2 - lon1) * 0.5);
+        double a = (sinLat * sinLat) + (cosLat1 * cosLat2 * sinLon * sinLon);
+
+        // Equivalent to 2 * atan2(sqrt(a), sqrt(1 - a)), but cheaper.
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(a, 1.0)));
+    }
+
+    // distances(double, double, double, double[], double[], double[], double[], int): Writes the distance in metres from the point to each of the first count points in
+    // the arrays into the output array.
+    public static void distances(double lat, double cosLat, double lon, double[] lats, double[] cosLats, double[] lons, double[] output, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            double sinLat = Math.sin((lats[i] - lat) * 0.5);
+            double sinLon = Math.sin((lons[i] - lon) * 0.5);
+            double a = (sinLat * sinLat) + (cosLat * cosLats[i] * sinLon * sinLon);
+
+            output[i] = 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(a, 1.0)));
+        }
+    }
+
+    // round(double): Rounds a distance to the nearest centimetre, as distances are shown.
+    public static double round(double distance) { return Math.round(distance * 100) / 100.0; }
+}
@@ -0,0 +1,366 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+
+// Kitchen class: Schedules the preparation of dishes - whenever a dish falls below its restock threshold (raised by the DemandForecast ahead of busy hours), PrepJobs are put on
+// a shared queue that idle staff block on.
+// Dishes that pending orders are waiting on are planned first by the PrepPlanner, and each job reserves its ingredients in the Stock when it is queued, so staff
+// can prepare dishes in parallel without ever overselling an ingredient. Each job goes to the quickest idle member of staff, taking their fatigue into account.
+// With batch cooking enabled, several batches of the same dish are combined into one job, which takes a setup time plus a time per batch.
+// In make-to-order mode, accepting an order reviews the kitchen straight away, and jobs for orders are handed out oldest order first, ahead of threshold restocking.
+// Nothing is queued while there are no staff to take the jobs, and the last member of staff leaving releases the ingredients of any jobs still queued.
+public class Kitchen implements Runnable, StockListener
+{
+    private static final long REVIEW_INTERVAL = 30000;
+    private static final double JOB_SIZE_SMOOTHING = 0.1;
+    private static final long RESTOCK_PRIORITY = Long.MAX_VALUE;
+
+    private final Stock stock;
+    private final List<Dish> dishes;
+    private final DemandForecast forecast;
+    private final List<Order> orders;
+    private final PrepPlanner planner;
+    private final ShiftScheduler scheduler = new ShiftScheduler();
+    private final Set<Staff> idle = new HashSet<>();
+    private double dishesPerJob = 1.0;
+    private double batchesPerJob = 1.0;
+    private volatile int maxBatches = 1;
+    private volatile long batchSetupTime = 0;
+    private volatile long batchTime = 0;
+    private volatile boolean makeToOrder = false;
+    private final BlockingQueue<PrepJob> jobs = new PriorityBlockingQueue<>();
+    private final Map<Dish, Integer> inProgress = new HashMap<>();
+    private boolean reviewRequested = false;
+
+    public Kitchen(Stock stock, List<Dish> dishes, List<Order> orders, DemandForecast forecast)
+    {
+        this.stock = stock;
+        this.dishes = dishes;
+        this.forecast = forecast;
+        this.orders = orders;
+        this.planner = new PrepPlanner(stock, dishes, forecast);
+    }
+
+    // run(): Reviews the stock whenever a review is requested, which stock events do as well as the server, and once every REVIEW_INTERVAL in case the forecast has moved.
+    public void run()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            synchronized (this)
+            {
+                try
+                {
+                    long deadline = System.currentTimeMillis() + REVIEW_INTERVAL;
+                    long remaining = REVIEW_INTERVAL;
+
+                    // Staff also wait on the kitchen, so keep waiting until the interval is up or a review is actually requested.
+                    while (!reviewRequested && remaining > 0)
+                    {
+                        wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                reviewRequested = false;
+            }
+
+            try
+            {
+                review();
+            }
+            catch (ConcurrentModificationException ex)
+            {
+                // Do nothing since the dishes are being changed - they will be reviewed again on the next pass.
+            }
+        }
+    }
+
+    // stockChanged(StockEvent): Requests a review when more of an ingredient becomes available, or a dish drops below its threshold.
+    public void stockChanged(StockEvent event)
+    {
+        boolean ingredientArrived = event.isIngredient() && event.getAvailable() > event.getPrevious();
+        boolean dishRunningLow = event.isDish() && event.getAvailable() < event.getPrevious() && event.getAvailable() < forecast.getThreshold((Dish)event.getItem());
+
+        if (ingredientArrived || dishRunningLow)
+            requestReview();
+    }
+
+    // orderChanged(Order): Called when an order is accepted or has dishes added to it. In make-to-order mode the kitchen is reviewed straight away, so that jobs for any
+    // dishes the order is short of are queued before the call returns.
+    public void orderChanged(Order order)
+    {
+        if (!makeToOrder)
+        {
+            requestReview();
+            return;
+        }
+
+        try
+        {
+            review();
+        }
+        catch (ConcurrentModificationException ex)
+        {
+            // The dishes or orders are being changed, so leave it to the kitchen thread to try again.
+            requestReview();
+        }
+    }
+
+    // setMakeToOrder(boolean): Sets whether dishes are prepared for orders as soon as they are accepted, oldest order first.
+    public void setMakeToOrder(boolean makeToOrder)
+    {
+        this.makeToOrder = makeToOrder;
+        requestReview();
+    }
+
+    public boolean isMakeToOrder() { return makeToOrder; }
+
+    // requestReview(): Wakes up the kitchen to review the stock levels straight away.
+    public synchronized void requestReview()
+    {
+        reviewRequested = true;
+        notifyAll();
+    }
+
+    // review(): Queues the batches the PrepPlanner says the pending orders need, then checks every dish, queuing a PrepJob for each batch needed to bring it back up to
+    // its forecast threshold that there are enough ingredients for.
+    public synchronized void review() throws ConcurrentModificationException
+    {
+        if (!stock.getRestockingDishesEnabled())
+            return;
+
+        // Don't hold on to ingredients the drones could be delivering if there is nobody to prepare the dishes.
+        if (scheduler.getRoster().isEmpty())
+        {
+            releaseJobs();
+            return;
+        }
+
+        // Wake the idle staff once the jobs are queued, even if the dishes or orders were changed part way through.
+        try
+        {
+            queueJobs();
+        }
+        finally
+        {
+            if (!jobs.isEmpty())
+                notifyAll();
+        }
+    }
+
+    // queueJobs(): Reserves the ingredients for and queues every batch the review decides to prepare.
+    private void queueJobs() throws ConcurrentModificationException
+    {
+        // If the drones have taken ingredients since the plan was made, the order will be planned for again on the next review.
+        for (PrepPlanner.Batch batch : planner.plan(new ArrayList<>(orders), inProgress, makeToOrder))
+        {
+            queueBatches(batch.getDish(), batch.getBatchSize(), batch.getBatches(), makeToOrder ? batch.getPlacedAt() : RESTOCK_PRIORITY);
+        }
+
+        for (Dish dish : new ArrayList<>(dishes))
+        {
+            int amount = forecast.getBatchSize(dish);
+            int missing = forecast.getThreshold(dish) - (stock.getStock(dish).intValue() + inProgress.getOrDefault(dish, 0));
+
+            // Queue enough batches to bring the stock of the dish plus the dishes being prepared back up to the threshold.
+            if (amount > 0 && missing > 0)
+                queueBatches(dish, amount, (int)Math.ceil(missing / (double)amount), RESTOCK_PRIORITY);
+        }
+    }
+
+    // queueBatches(Dish, int, int, long): Queues the passed number of batches of the dish with the passed priority, combining them into jobs of several batches when
+    // batch cooking, for as many as there are ingredients for.
+    private void queueBatches(Dish dish, int batchSize, int batches, long priority)
+    {
+        int perJob = batchesPerJob(batches);
+
+        while (batches > 0)
+        {
+            int count = Math.min(perJob, batches);
+            Stock.Reservation reservation = stock.reserveIngredients(dish.getRecipe(), batchSize * count);
+
+            // Cook fewer batches at once if there aren't the ingredients for all of them.
+            while (reservation == null && --count > 0)
+            {
+                reservation = stock.reserveIngredients(dish.getRecipe(), batchSize * count);
+            }
+
+            if (reservation == null)
+                return;
+
+            inProgress.merge(dish, batchSize * count, Integer::sum);
+            jobs.add(new PrepJob(dish, batchSize, count, reservation, priority));
+            batches -= count;
+        }
+    }
+
+    // batchesPerJob(int): Returns how many batches to combine into each job - enough to share the passed batches between the staff who are working, up to the maximum.
+    private int batchesPerJob(int batches)
+    {
+        if (maxBatches <= 1)
+            return 1;
+
+        int working = Math.max(scheduler.getRoster().size() - scheduler.getStaffOnBreak(), 1);
+        return Math.max(Math.min(maxBatches, (int)Math.ceil(batches / (double)working)), 1);
+    }
+
+    // setBatchCooking(int, long, long): Allows up to the passed number of batches to be cooked in one job, taking the setup time plus the time per batch (in milliseconds).
+    // Batch cooking is disabled if the maximum is 1.
+    public void setBatchCooking(int maxBatches, long setupTime, long batchTime)
+    {
+        this.maxBatches = Math.max(maxBatches, 1);
+        this.batchSetupTime = setupTime;
+        this.batchTime = batchTime;
+    }
+
+    public int getMaxBatches() { return maxBatches; }
+
+    // getBatchPrepTime(int): Returns how long a job of the passed number of batches takes when batch cooking, before the speed of the staff is taken into account.
+    public long getBatchPrepTime(int batches)
+    {
+        return batchSetupTime + (batchTime * batches);
+    }
+
+    // takeJob(Staff): Blocks until there is a PrepJob in the queue and the passed member of staff is the quickest one waiting, then returns it.
+    public synchronized PrepJob takeJob(Staff staff) throws InterruptedException
+    {
+        idle.add(staff);
+
+        try
+        {
+            while (jobs.isEmpty() || quickestIdle() != staff)
+            {
+                wait();
+            }
+
+            return jobs.poll();
+        }
+        finally
+        {
+            // Let the next quickest member of staff check for a job.
+            idle.remove(staff);
+            notifyAll();
+        }
+    }
+
+    // completeJob(PrepJob): Uses up the reserved ingredients and adds the prepared dishes to the stock.
+    public void completeJob(PrepJob job)
+    {
+        stock.commit(job.getReservation());
+        stock.addStock(job.getDish(), job.getAmount());
+
+        synchronized (this)
+        {
+            dishesPerJob = (JOB_SIZE_SMOOTHING * job.getAmount()) + ((1 - JOB_SIZE_SMOOTHING) * dishesPerJob);
+            batchesPerJob = (JOB_SIZE_SMOOTHING * job.getBatches()) + ((1 - JOB_SIZE_SMOOTHING) * batchesPerJob);
+        }
+
+        finishJob(job);
+    }
+
+    // abandonJob(PrepJob): Releases the ingredients of a job that was not finished.
+    public void abandonJob(PrepJob job)
+    {
+        stock.release(job.getReservation());
+
+        finishJob(job);
+    }
+
+    // clockIn(Staff): Adds the member of staff to the roster, reviewing the stock in case there was nobody to queue jobs for before.
+    public void clockIn(Staff staff)
+    {
+        scheduler.clockIn(staff);
+        requestReview();
+    }
+
+    // clockOut(Staff): Removes the member of staff from the roster, reviewing the stock so that the queued jobs are released if they were the last one.
+    public void clockOut(Staff staff)
+    {
+        scheduler.clockOut(staff);
+        requestReview();
+    }
+
+    // releaseJobs(): Drops every queued job, releasing its ingredients and no longer counting its dishes as in progress.
+    private synchronized void releaseJobs()
+    {
+        List<PrepJob> queued = new ArrayList<>();
+        jobs.drainTo(queued);
+
+        for (PrepJob job : queued)
+        {
+            stock.release(job.getReservation());
+            inProgress.computeIfPresent(job.getDish(), (dish, preparing) -> (preparing > job.getAmount()) ? preparing - job.getAmount() : null);
+        }
+    }
+
+    // clear(): Drops every queued job, used when the server data is cleared.
+    public synchronized void clear()
+    {
+        jobs.forEach(job -> stock.release(job.getReservation()));
+        jobs.clear();
+        inProgress.clear();
+    }
+
+    public int getQueuedJobs() { return jobs.size(); }
+
+    public ShiftScheduler getScheduler() { return scheduler; }
+
+    // getProjectedCapacity(int): Returns the number of dishes the kitchen is expected to be able to prepare in each of the passed number of hours from now.
+    public double[] getProjectedCapacity(int hours)
+    {
+        double[] capacity = scheduler.projectJobs(hours);
+        double dishesPerJob;
+        double batchesPerJob;
+
+        synchronized (this)
+        {
+            dishesPerJob = this.dishesPerJob;
+            batchesPerJob = this.batchesPerJob;
+        }
+
+        // The staff are projected doing single batch jobs, so scale by how much longer the average job takes when batch cooking.
+        double averagePrepTime = Staff.getAveragePrepTime();
+        double jobTime = (batchesPerJob > 1.0) ? batchSetupTime + (batchTime * batchesPerJob) : averagePrepTime;
+
+        for (int i = 0; i < capacity.length; i++)
+        {
+            capacity[i] *= dishesPerJob * (averagePrepTime / jobTime);
+        }
+
+        return capacity;
+    }
+
+    // quickestIdle(): Returns the idle member of staff who would currently prepare a dish the quickest.
+    private Staff quickestIdle()
+    {
+        Staff quickest = null;
+
+        for (Staff staff : idle)
+        {
+            if (quickest == null || staff.getEffectiveSpeed() > quickest.getEffectiveSpeed())
+                quickest = staff;
+        }
+
+        return quickest;
+    }
+
+    // finishJob(PrepJob): Stops counting the job as in progress and reviews the stock again.
+    private synchronized void finishJob(PrepJob job)
+    {
+        inProgress.computeIfPresent(job.getDish(), (dish, preparing) -> Math.max(preparing - job.getAmount(), 0));
+        requestReview();
+    }
+}
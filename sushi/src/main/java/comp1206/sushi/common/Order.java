@@ -6,22 +6,29 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.UUID;
 
 import comp1206.sushi.common.Order;
 
 public class Order extends Model implements Serializable {
 
 	private String name;
+	private final String id;
 	private String status;
 	private Map<Dish, Number> orderedDishes = new HashMap<>();
 	private boolean isComplete = false;
 	private boolean isCancelled = false;
 	private boolean isOutForDelivery = false;
+	private long placedAt;
+	private long deadline;
 	
 	public Order() {
 		DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/YYYY HH:mm:ss");  
 		LocalDateTime now = LocalDateTime.now();  
 		this.name = dtf.format(now);
+		this.id = UUID.randomUUID().toString();
+		this.placedAt = System.currentTimeMillis();
+		this.deadline = placedAt;
 	}
 
 	public Number getDistance() {
@@ -33,6 +40,9 @@ public class Order extends Model implements Serializable {
 		return this.name;
 	}
 
+	// getId(): Returns the ID that identifies the order between the server and the clients, since two orders placed in the same second share a name.
+	public String getId() { return this.id; }
+
 	public String getStatus() {
 		return status;
 	}
@@ -69,4 +79,10 @@ public class Order extends Model implements Serializable {
 	public void resetOrder() { isOutForDelivery = false; }
 
 	public boolean isOutForDelivery() { return isOutForDelivery; }
+
+	public long getPlacedAt() { return placedAt; }
+
+	public long getDeadline() { return deadline; }
+
+	public void setDeadline(long deadline) { this.deadline = deadline; }
 }
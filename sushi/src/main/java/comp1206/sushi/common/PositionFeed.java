@@ -0,0 +1,80 @@
+package comp1206.sushi.common;
+
+import java.io.Serializable;
+import java.util.Set;
+
+// PositionFeed class: Compact batch of the latest positions of orders out for delivery, sent from the server to the clients tracking those orders.
+public class PositionFeed implements Serializable
+{
+    private static final long serialVersionUID = 2698917580782127267L;
+
+    private final long timestamp;
+    private final String[] orders;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final float[] progress;
+
+    public PositionFeed(long timestamp, String[] orders, double[] latitudes, double[] longitudes, float[] progress)
+    {
+        this.timestamp = timestamp;
+        this.orders = orders;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.progress = progress;
+    }
+
+    // filter(Set<String>): Returns a new PositionFeed only containing the positions of the passed orders.
+    public PositionFeed filter(Set<String> tracked)
+    {
+        int count = 0;
+
+        for (String order : orders)
+        {
+            if (tracked.contains(order))
+                count++;
+        }
+
+        String[] orders = new String[count];
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        float[] progress = new float[count];
+
+        for (int i = 0, j = 0; i < this.orders.length; i++)
+        {
+            if (!tracked.contains(this.orders[i]))
+                continue;
+
+            orders[j] = this.orders[i];
+            latitudes[j] = this.latitudes[i];
+            longitudes[j] = this.longitudes[i];
+            progress[j] = this.progress[i];
+            j++;
+        }
+
+        return new PositionFeed(timestamp, orders, latitudes, longitudes, progress);
+    }
+
+    // indexOf(String): Returns the index of the passed order in the feed, or -1 if it is not in the feed.
+    public int indexOf(String order)
+    {
+        for (int i = 0; i < orders.length; i++)
+        {
+            if (orders[i].equals(order))
+                return i;
+        }
+
+        return -1;
+    }
+
+    public int size() { return orders.length; }
+
+    public long getTimestamp() { return timestamp; }
+
+    public String getOrder(int index) { return orders[index]; }
+
+    public double getLatitude(int index) { return latitudes[index]; }
+
+    public double getLongitude(int index) { return longitudes[index]; }
+
+    public float getProgress(int index) { return progress[index]; }
+}
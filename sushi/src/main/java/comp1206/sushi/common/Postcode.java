@@ -1,32 +1,51 @@
 package comp1206.sushi.common;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.json.*;
-
-import javax.swing.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 public class Postcode extends Model implements Serializable {
 
+	private static final Logger logger = LogManager.getLogger("Postcode");
+
 	private String name;
-	private Map<String, Double> latLong;
+	private transient Map<String, Double> latLong;
 	private Number distance;
 
+	// Postcodes are compared by the ID the PostcodeRegistry gives their code, which is only the same within one process, so it is worked out again when deserialised.
+	private transient int id;
+
+	// The Geocoder the postcode was last looked up with, or null if it was deserialised, so that the PostcodeRegistry can look it up again once the geocoder changes.
+	private transient Geocoder geocoder;
+
+	// The coordinates are also held as primitives, along with the radians and cosine of the latitude that the Haversine kernel needs, so that working out a distance
+	// doesn't unbox anything. Only the primitive coordinates are serialised, and the latLong map is built from them again when a postcode is deserialised.
+	private transient boolean located;
+	private transient double latitude;
+	private transient double longitude;
+	private transient double latRadians;
+	private transient double lonRadians;
+	private transient double cosLatitude;
+
 	public Postcode(String code) {
 		this.name = code;
-		calculateLatLong();
+		this.id = PostcodeRegistry.getDefault().getId(code);
+		this.latLong = new HashMap<>();
+		calculateLatLong(Geocoders.getDefault());
 		this.distance = Integer.valueOf(0);
 	}
 
 	public Postcode(String code, Restaurant restaurant) {
 		this.name = code;
-		calculateLatLong();
+		this.id = PostcodeRegistry.getDefault().getId(code);
+		this.latLong = new HashMap<>();
+		calculateLatLong(Geocoders.getDefault());
 		this.distance = calculateDistance(restaurant.getLocation());
 	}
 
@@ -35,66 +54,155 @@ public class Postcode extends Model implements Serializable {
 		return this.name;
 	}
 
+	// setName(String): Postcodes are compared and hashed by their code, so renaming one in place would corrupt every map it is in - intern the new code instead.
+	@Override
 	public void setName(String name) {
-		this.name = name;
+		throw new UnsupportedOperationException("Unable to rename postcode \"" + this.name + "\" - intern \"" + name + "\" with the PostcodeRegistry instead.");
+	}
+
+	// getId(): Returns the ID of the postcode's code in this process, shared by every Postcode with the same code.
+	public int getId() {
+		return this.id;
 	}
 
 	public Number getDistance() {
 		return this.distance;
 	}
 
+	// updateDistance(Restaurant): Sets the distance of the postcode to the passed restaurant.
+	public void updateDistance(Restaurant restaurant) {
+		this.distance = calculateDistance(restaurant.getLocation());
+	}
+
 	public Map<String,Double> getLatLong() {
 		return this.latLong;
 	}
 
-	public double calculateDistance(Postcode destination)
-	{
-		// *******************************************************************************************************************************
-		// * Title: Adapted lat/long distance calculator method
-		// * Author: David George
-		// * Date: 28/05/2013
-		// * Availability: https://stackoverflow.com/questions/3694380/calculating-distance-between-two-points-using-latitude-longitude/
-		// ******************************************************************************************************************************/
-		final int R = 6371; // Radius of the earth
+	// isLocated(): Returns whether the coordinates of the postcode were found.
+	public boolean isLocated() {
+		return this.located;
+	}
 
-		double lat1 = destination.latLong.get("lat");
-		double lon1 = destination.latLong.get("long");
+	public double getLatitude() {
+		return this.latitude;
+	}
 
-		double lat2 = latLong.get("lat");
-		double lon2 = latLong.get("long");
+	public double getLongitude() {
+		return this.longitude;
+	}
 
-		double latDistance = Math.toRadians(lat2 - lat1);
-		double lonDistance = Math.toRadians(lon2 - lon1);
-		double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-				+ Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-				* Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-		double distance = R * c * 1000; // convert to meters
+	public double getLatRadians() {
+		return this.latRadians;
+	}
 
-		distance = Math.pow(distance, 2);
+	public double getLonRadians() {
+		return this.lonRadians;
+	}
 
-		return Double.parseDouble(String.format("%.2f", Math.sqrt(distance)));
+	public double getCosLatitude() {
+		return this.cosLatitude;
 	}
 
-	private void calculateLatLong()
+	// calculateDistance(Postcode): Returns the distance in metres to the destination, to the nearest centimetre.
+	public double calculateDistance(Postcode destination)
 	{
-		this.latLong = new HashMap<>();
+		if (!located || !destination.located)
+			throw new IllegalStateException("Unable to calculate the distance from \"" + name + "\" to \"" + destination.name + "\" as one of them could not be looked up.");
 
-		try
-		{
-			URL requestURL = new URL("https://www.southampton.ac.uk/~ob1a12/postcode/postcode.php?postcode=" + name.replace(" ", ""));
-			URLConnection connection = requestURL.openConnection();
-			BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+		return Haversine.round(Haversine.distance(destination.latRadians, destination.cosLatitude, destination.lonRadians, latRadians, cosLatitude, lonRadians));
+	}
+
+	// relocate(Geocoder): Looks the postcode up again with the passed geocoder if it couldn't be looked up before, or was looked up with a different geocoder.
+	// Postcodes that were deserialised with a location keep it, since it came from the other side of the connection or a backup.
+	synchronized void relocate(Geocoder geocoder)
+	{
+		if (located && (this.geocoder == null || this.geocoder == geocoder))
+			return;
+
+		calculateLatLong(geocoder);
+	}
+
+	// calculateLatLong(Geocoder): Looks the postcode up with the passed Geocoder - by default the offline PostcodeDatabase, falling back to the online lookup.
+	private void calculateLatLong(Geocoder geocoder)
+	{
+		this.geocoder = geocoder;
 
-			JSONObject jsonPostcode = new JSONObject(in.readLine());
+		double[] coordinates = geocoder.locate(name);
 
-			latLong.put("lat", Double.parseDouble(String.format("%.6f", Double.parseDouble(jsonPostcode.get("lat").toString()))));
-			latLong.put("long", Double.parseDouble(String.format("%.6f", Double.parseDouble(jsonPostcode.get("long").toString()))));
+		if (coordinates != null)
+		{
+			setLocation(coordinates[0], coordinates[1]);
 		}
-		catch (Exception ex)
+		else
 		{
-			JOptionPane.showMessageDialog(new JDialog(), "Error: " + ex.getMessage() + "\r\nThis likely means that the entered postcode is invalid. Please ensure that your input is correct and try again.", "Input Error", JOptionPane.ERROR_MESSAGE);
-			return;
+			logger.warn("Unable to find the location of postcode \"" + name + "\".");
+
+			latLong.clear();
+			located = false;
 		}
 	}
+
+	// setLocation(double, double): Sets the coordinates of the postcode, working out the values the Haversine kernel needs.
+	private void setLocation(double latitude, double longitude)
+	{
+		latLong.put("lat", latitude);
+		latLong.put("long", longitude);
+
+		this.located = true;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.latRadians = Math.toRadians(latitude);
+		this.lonRadians = Math.toRadians(longitude);
+		this.cosLatitude = Math.cos(latRadians);
+	}
+
+	// update(Postcode): Takes the distance of the passed postcode with the same code, and its location if this one couldn't be looked up.
+	void update(Postcode postcode)
+	{
+		this.distance = postcode.distance;
+
+		if (!located && postcode.located)
+			setLocation(postcode.latitude, postcode.longitude);
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		return (object instanceof Postcode) && ((Postcode)object).id == this.id;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.id;
+	}
+
+	// writeObject(ObjectOutputStream): Writes the postcode with its coordinates as primitives rather than the latLong map, which keeps every message carrying one small.
+	private void writeObject(ObjectOutputStream output) throws IOException
+	{
+		output.defaultWriteObject();
+		output.writeBoolean(located);
+		output.writeDouble(latitude);
+		output.writeDouble(longitude);
+	}
+
+	// readObject(ObjectInputStream): Restores the postcode, building the latLong map again from its primitive coordinates.
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException
+	{
+		input.defaultReadObject();
+
+		this.latLong = new HashMap<>();
+		this.id = PostcodeRegistry.getDefault().getId(name);
+
+		boolean located = input.readBoolean();
+		double latitude = input.readDouble();
+		double longitude = input.readDouble();
+
+		if (located)
+			setLocation(latitude, longitude);
+	}
+
+	// readResolve(): Swaps the deserialised postcode for the canonical one with the same code, so that there is only ever one of each postcode in a process.
+	private Object readResolve()
+	{
+		return PostcodeRegistry.getDefault().intern(this);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+package comp1206.sushi.common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// PostcodeDatabase class: Offline postcode geocoder, loaded once from a CSV file of "postcode,lat,long" lines (or "id,postcode,lat,long", as in the freely available UK
+// postcode lists). Each postcode is packed into a long, and the keys are held sorted alongside the coordinates in micro-degrees, so a lookup is a binary search over
+// primitive arrays that never touches the network or allocates anything.
+// The file is read from the path in the sushi.postcodes system property, or else postcodes.csv in the working directory or on the classpath.
+public class PostcodeDatabase
+{
+    private static final Logger logger = LogManager.getLogger("PostcodeDatabase");
+
+    public static final String FILE_PROPERTY = "sushi.postcodes";
+    private static final String DEFAULT_FILE = "postcodes.csv";
+
+    private static final int MAX_LENGTH = 7;
+    private static final int RADIX = 37;
+    private static final int ROW_BITS = 26;
+    private static final double MICRO_DEGREES = 1000000.0;
+
+    private static volatile PostcodeDatabase defaultDatabase;
+
+    private final long[] keys;
+    private final int[] latitudes;
+    private final int[] longitudes;
+
+    private PostcodeDatabase(long[] keys, int[] latitudes, int[] longitudes)
+    {
+        this.keys = keys;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    // getDefault(): Returns the database loaded from the default file, loading it the first time it is needed, or an empty database if there is no file.
+    public static PostcodeDatabase getDefault()
+    {
+        if (defaultDatabase == null)
+        {
+            synchronized (PostcodeDatabase.class)
+            {
+                if (defaultDatabase == null)
+                    defaultDatabase = loadDefault();
+            }
+        }
+
+        return defaultDatabase;
+    }
+
+    // empty(): Returns a database without any postcodes in it.
+    public static PostcodeDatabase empty() { return new PostcodeDatabase(new long[0], new int[0], new int[0]); }
+
+    // load(InputStream): Reads a database from the passed CSV stream, skipping any header or lines that are not a postcode and its coordinates.
+    public static PostcodeDatabase load(InputStream input) throws IOException
+    {
+        long[] keys = new long[1024];
+        int[] latitudes = new int[1024];
+        int[] longitudes = new int[1024];
+        int size = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split(",");
+
+                if (fields.length < 3)
+                    continue;
+
+                // The freely available lists have an ID column before the postcode.
+                int column = (fields.length >= 4) ? fields.length - 3 : 0;
+                long key = pack(fields[column]);
+
+                if (key < 0)
+                    continue;
+
+                try
+                {
+                    int latitude = (int)Math.round(Double.parseDouble(fields[column + 1].trim()) * MICRO_DEGREES);
+                    int longitude = (int)Math.round(Double.parseDouble(fields[column + 2].trim()) * MICRO_DEGREES);
+
+                    if (size == keys.length)
+                    {
+                        keys = Arrays.copyOf(keys, size * 2);
+                        latitudes = Arrays.copyOf(latitudes, size * 2);
+                        longitudes = Arrays.copyOf(longitudes, size * 2);
+                    }
+
+                    keys[size] = key;
+                    latitudes[size] = latitude;
+                    longitudes[size] = longitude;
+                    size++;
+                }
+                catch (NumberFormatException ex)
+                {
+                    // Do nothing since the line is a header, or a postcode without coordinates.
+                }
+            }
+        }
+
+        if (size >= (1 << ROW_BITS))
+            throw new IOException("Postcode file has more than " + (1 << ROW_BITS) + " entries.");
+
+        return sort(keys, latitudes, longitudes, size);
+    }
+
+    // indexOf(String): Returns the index of the passed postcode in the database, or -1 if it isn't there.
+    public int indexOf(String code)
+    {
+        long key = pack(code);
+
+        if (key < 0)
+            return -1;
+
+        int index = Arrays.binarySearch(keys, key);
+        return (index >= 0) ? index : -1;
+    }
+
+    public double getLatitude(int index) { return latitudes[index] / MICRO_DEGREES; }
+
+    public double getLongitude(int index) { return longitudes[index] / MICRO_DEGREES; }
+
+    public int size() { return keys.length; }
+
+    // pack(String): Packs a postcode, ignoring case and spaces, into a long of base 37 digits, or returns -1 if it isn't made up of up to 7 letters and digits.
+    public static long pack(String code)
+    {
+        long key = 0;
+        int length = 0;
+
+        for (int i = 0; i < code.length(); i++)
+        {
+            char c = Character.toUpperCase(code.charAt(i));
+            int digit;
+
+            if (c >= '0' && c <= '9')
+                digit = 1 + (c - '0');
+            else if (c >= 'A' && c <= 'Z')
+                digit = 11 + (c - 'A');
+            else if (c == ' ' || c == '"')
+                continue;
+            else
+                return -1;
+
+            if (++length > MAX_LENGTH)
+                return -1;
+
+            key = (key * RADIX) + digit;
+        }
+
+        if (length == 0)
+            return -1;
+
+        // Pad short postcodes on the right so that every key has the same number of digits.
+        for (; length < MAX_LENGTH; length++)
+        {
+            key *= RADIX;
+        }
+
+        return key;
+    }
+
+    // sort(long[], int[], int[], int): Sorts the loaded entries by key, keeping the last entry of any postcode listed more than once.
+    // The row of each entry is packed beneath its key so that a single primitive sort orders everything.
+    private static PostcodeDatabase sort(long[] keys, int[] latitudes, int[] longitudes, int size)
+    {
+        long[] order = new long[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            order[i] = (keys[i] << ROW_BITS) | i;
+        }
+
+        Arrays.sort(order);
+
+        long[] sortedKeys = new long[size];
+        int[] sortedLatitudes = new int[size];
+        int[] sortedLongitudes = new int[size];
+        int count = 0;
+
+        for (long entry : order)
+        {
+            long key = entry >>> ROW_BITS;
+            int row = (int)(entry & ((1 << ROW_BITS) - 1));
+
+            if (count == 0 || sortedKeys[count - 1] != key)
+                count++;
+
+            sortedKeys[count - 1] = key;
+            sortedLatitudes[count - 1] = latitudes[row];
+            sortedLongitudes[count - 1] = longitudes[row];
+        }
+
+        return new PostcodeDatabase(Arrays.copyOf(sortedKeys, count), Arrays.copyOf(sortedLatitudes, count), Arrays.copyOf(sortedLongitudes, count));
+    }
+
+    // loadDefault(): Loads the database from the configured file, falling back to the working directory and then the classpath.
+    private static PostcodeDatabase loadDefault()
+    {
+        long start = System.currentTimeMillis();
+        File file = new File(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+
+        try (InputStream input = file.isFile() ? new FileInputStream(file) : PostcodeDatabase.class.getResourceAsStream("/" + DEFAULT_FILE))
+        {
+            if (input == null)
+            {
+                logger.info("No postcode file found.");
+                return empty();
+            }
+
+            PostcodeDatabase database = load(input);
+            logger.info("Loaded " + database.size() + " postcodes in " + (System.currentTimeMillis() - start) + "ms.");
+            return database;
+        }
+        catch (IOException ex)
+        {
+            logger.error("Unable to load the postcode file: " + ex.getMessage());
+            return empty();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package comp1206.sushi.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// PostcodeRegistry class: Keeps a single canonical Postcode for every code seen by the server or client, along with an integer ID that postcodes are compared by.
+// Codes are normalised first, so "so171bj" and "SO17 1BJ" are the same postcode and are only looked up once for each geocoder. A canonical postcode that couldn't be
+// looked up, or was looked up with a different geocoder to the current one, is looked up again the next time it is interned. Postcodes received from the other side of
+// a connection, or recovered from a backup, are swapped for the canonical one when they are deserialised.
+public class PostcodeRegistry
+{
+    private static final PostcodeRegistry defaultRegistry = new PostcodeRegistry();
+
+    private static final int INWARD_LENGTH = 3;
+    private static final int MIN_LENGTH = 5;
+    private static final int MAX_LENGTH = 7;
+
+    // An outward code of one or two letters, a digit and an optional letter or digit, then an inward code of a digit and two letters.
+    private static final Pattern FORMAT = Pattern.compile("[A-Z]{1,2}[0-9][A-Z0-9]? [0-9][A-Z]{2}");
+
+    private final Map<String, Postcode> postcodes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    // getDefault(): Returns the registry shared by everything in this process.
+    public static PostcodeRegistry getDefault() { return defaultRegistry; }
+
+    // normalise(String): Returns the code in upper case without any extra spaces, with a single space before the last three characters if it looks like a full UK postcode.
+    public static String normalise(String code)
+    {
+        StringBuilder builder = new StringBuilder(code.length() + 1);
+
+        for (int i = 0; i < code.length(); i++)
+        {
+            char c = code.charAt(i);
+
+            if (!Character.isWhitespace(c))
+                builder.append(Character.toUpperCase(c));
+        }
+
+        int length = builder.length();
+
+        if (length >= MIN_LENGTH && length <= MAX_LENGTH)
+            builder.insert(length - INWARD_LENGTH, ' ');
+
+        return builder.toString();
+    }
+
+    // isValid(String): Returns whether the passed code, once normalised, is in the format of a full UK postcode. Valid codes may still not exist.
+    public static boolean isValid(String code)
+    {
+        return code != null && FORMAT.matcher(normalise(code)).matches();
+    }
+
+    // getId(String): Returns the ID of the passed code, giving it the next ID if it hasn't been seen before.
+    public int getId(String code)
+    {
+        return ids.computeIfAbsent(normalise(code), c -> nextId.getAndIncrement());
+    }
+
+    // intern(String): Returns the canonical Postcode for the passed code, looking it up if it hasn't been seen before, it couldn't be looked up last time, or the
+    // geocoder has changed since.
+    public Postcode intern(String code)
+    {
+        String key = normalise(code);
+        Postcode postcode = postcodes.get(key);
+
+        if (postcode != null)
+        {
+            postcode.relocate(Geocoders.getDefault());
+            return postcode;
+        }
+
+        // Look the postcode up outside of the map so that other postcodes can be interned in the meantime; if two threads race for the same code the first one wins.
+        Postcode created = new Postcode(key);
+        postcode = postcodes.putIfAbsent(key, created);
+
+        return (postcode != null) ? postcode : created;
+    }
+
+    // intern(Postcode): Returns the canonical Postcode for the passed one, which becomes canonical itself if its code hasn't been seen before. Otherwise the canonical
+    // postcode takes the distance of the passed one, which is newer, and its location if the canonical one couldn't be looked up.
+    public Postcode intern(Postcode postcode)
+    {
+        Postcode canonical = postcodes.putIfAbsent(normalise(postcode.getName()), postcode);
+
+        if (canonical == null || canonical == postcode)
+            return postcode;
+
+        canonical.update(postcode);
+        return canonical;
+    }
+
+    // get(String): Returns the canonical Postcode for the passed code, or null if it hasn't been seen.
+    public Postcode get(String code) { return postcodes.get(normalise(code)); }
+
+    public int size() { return postcodes.size(); }
+}
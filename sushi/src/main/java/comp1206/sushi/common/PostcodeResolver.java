@@ -0,0 +1,35 @@
+package comp1206.sushi.common;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// PostcodeResolver class: Looks up many postcodes at once on a bounded pool of threads, so that loading a configuration waits for the slowest lookup rather than every
+// lookup in turn. Postcodes are interned with the PostcodeRegistry, so a postcode is only looked up once however many times it is resolved.
+public class PostcodeResolver
+{
+    private static final int THREADS = 8;
+
+    private static final ExecutorService pool = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "Postcode Resolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, CompletableFuture<Postcode>> resolving = new ConcurrentHashMap<>();
+
+    // resolve(String): Returns a future of the Postcode with the passed code, starting to look it up if it hasn't been already.
+    public CompletableFuture<Postcode> resolve(String code)
+    {
+        return resolving.computeIfAbsent(code, c -> CompletableFuture.supplyAsync(() -> PostcodeRegistry.getDefault().intern(c), pool));
+    }
+
+    // get(String): Returns the canonical Postcode with the passed code, waiting for it to be looked up if it is still in progress.
+    public Postcode get(String code)
+    {
+        CompletableFuture<Postcode> postcode = resolving.remove(code);
+        return (postcode != null) ? postcode.join() : PostcodeRegistry.getDefault().intern(code);
+    }
+}
@@ -0,0 +1,45 @@
+package comp1206.sushi.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// PrepJob class: One or more batches of a dish for a member of staff to prepare in one go, along with the reservation holding their ingredients.
+// Jobs are ordered by their priority (the time the order they are for was placed, in make-to-order mode) and then by when they were created.
+public class PrepJob implements Comparable<PrepJob>
+{
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Dish dish;
+    private final int batchSize;
+    private final int batches;
+    private final Stock.Reservation reservation;
+    private final long priority;
+    private final long sequence = SEQUENCE.getAndIncrement();
+
+    public PrepJob(Dish dish, int batchSize, int batches, Stock.Reservation reservation, long priority)
+    {
+        this.dish = dish;
+        this.batchSize = batchSize;
+        this.batches = batches;
+        this.reservation = reservation;
+        this.priority = priority;
+    }
+
+    public Dish getDish() { return dish; }
+
+    public Stock.Reservation getReservation() { return reservation; }
+
+    // getAmount(): Returns the number of dishes the job produces.
+    public int getAmount() { return batchSize * batches; }
+
+    public int getBatchSize() { return batchSize; }
+
+    public int getBatches() { return batches; }
+
+    public long getPriority() { return priority; }
+
+    public int compareTo(PrepJob job)
+    {
+        int compare = Long.compare(priority, job.priority);
+        return (compare != 0) ? compare : Long.compare(sequence, job.sequence);
+    }
+}
@@ -0,0 +1,216 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// PrepPlanner class: Decides which dishes to prepare next so that as many pending orders as possible become deliverable with the ingredients in stock.
+// It is a greedy knapsack: orders are taken cheapest first (by the ingredients needed to make up their missing dishes), and an order is only planned for
+// if every missing dish can be made, so ingredients are never spent on an order that still couldn't go out.
+// In make-to-order mode, orders are taken oldest first instead, and whatever can be made for an order is planned even if not all of it can, so that a large order
+// is never held up indefinitely by smaller ones.
+public class PrepPlanner
+{
+    private final Stock stock;
+    private final List<Dish> dishes;
+    private final DemandForecast forecast;
+
+    public PrepPlanner(Stock stock, List<Dish> dishes, DemandForecast forecast)
+    {
+        this.stock = stock;
+        this.dishes = dishes;
+        this.forecast = forecast;
+    }
+
+    // Batch class: A number of batches of a dish that the plan needs to be prepared.
+    public static class Batch
+    {
+        private final Dish dish;
+        private final int batchSize;
+        private final int batches;
+        private final long placedAt;
+
+        private Batch(Dish dish, int batchSize, int batches, long placedAt)
+        {
+            this.dish = dish;
+            this.batchSize = batchSize;
+            this.batches = batches;
+            this.placedAt = placedAt;
+        }
+
+        public Dish getDish() { return dish; }
+
+        public int getBatchSize() { return batchSize; }
+
+        public int getBatches() { return batches; }
+
+        public int getAmount() { return batchSize * batches; }
+
+        // getPlacedAt(): Returns when the order the batches are for was placed.
+        public long getPlacedAt() { return placedAt; }
+    }
+
+    // Candidate class: A pending order along with the ingredients it would need when the plan started.
+    private static class Candidate
+    {
+        private final Order order;
+        private final double cost;
+
+        private Candidate(Order order, double cost)
+        {
+            this.order = order;
+            this.cost = cost;
+        }
+    }
+
+    // plan(List<Order>, Map<Dish, Integer>, boolean): Returns the batches to prepare for the passed pending orders, given the number of each dish already being prepared,
+    // planning oldest order first (and for part of an order) if make to order is true.
+    public List<Batch> plan(List<Order> orders, Map<Dish, Integer> preparing, boolean makeToOrder)
+    {
+        Map<String, Dish> menu = new HashMap<>();
+        Map<String, Integer> dishPool = new HashMap<>();
+        Map<String, Integer> ingredientPool = new HashMap<>();
+        Map<String, Integer> batchSizes = new HashMap<>();
+
+        // Every dish that is unreserved or on its way counts towards the orders. The batch sizes are read once so that the forecast can't change them part way through.
+        for (Dish dish : dishes)
+        {
+            menu.put(dish.getName(), dish);
+            batchSizes.put(dish.getName(), forecast.getBatchSize(dish));
+            dishPool.put(dish.getName(), stock.getAvailableStock(dish).intValue() + preparing.getOrDefault(dish, 0));
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+
+        for (Order order : orders)
+        {
+            if (order.isComplete() || order.isCancelled() || order.isOutForDelivery() || order.getOrderedDishes().isEmpty())
+                continue;
+
+            Map<Dish, Integer> batches = shortfall(order, menu, batchSizes, dishPool);
+
+            if (batches != null)
+                candidates.add(new Candidate(order, cost(batches)));
+        }
+
+        if (makeToOrder)
+            candidates.sort(Comparator.comparingLong(c -> c.order.getPlacedAt()));
+        else
+            candidates.sort(Comparator.<Candidate>comparingDouble(c -> c.cost).thenComparingLong(c -> c.order.getPlacedAt()));
+
+        List<Batch> plan = new ArrayList<>();
+
+        for (Candidate candidate : candidates)
+        {
+            // Work the batches out again, since the orders planned before this one may have used up dishes it was counting on.
+            Map<Dish, Integer> batches = shortfall(candidate.order, menu, batchSizes, dishPool);
+            long placedAt = candidate.order.getPlacedAt();
+
+            if (batches == null)
+                continue;
+
+            if (makeToOrder)
+            {
+                // Plan as many batches of each missing dish as there are ingredients for, and let the order claim its dishes either way so that younger orders can't take them.
+                for (Map.Entry<Dish, Integer> entry : batches.entrySet())
+                {
+                    Dish dish = entry.getKey();
+                    int batchSize = batchSizes.get(dish.getName());
+
+                    for (int count = entry.getValue() / batchSize; count > 0; count--)
+                    {
+                        if (takeIngredients(Collections.singletonMap(dish, batchSize * count), ingredientPool))
+                        {
+                            plan.add(new Batch(dish, batchSize, count, placedAt));
+                            dishPool.merge(dish.getName(), batchSize * count, Integer::sum);
+                            break;
+                        }
+                    }
+                }
+            }
+            else
+            {
+                if (!takeIngredients(batches, ingredientPool))
+                    continue;
+
+                batches.forEach((dish, amount) -> {
+                    int batchSize = batchSizes.get(dish.getName());
+                    plan.add(new Batch(dish, batchSize, amount / batchSize, placedAt));
+                    dishPool.merge(dish.getName(), amount, Integer::sum);
+                });
+            }
+
+            candidate.order.getOrderedDishes().forEach((dish, quantity) -> dishPool.merge(dish.getName(), -quantity.intValue(), Integer::sum));
+        }
+
+        return plan;
+    }
+
+    // shortfall(Order, Map<String, Dish>, Map<String, Integer>, Map<String, Integer>): Returns the number of each dish to prepare, in whole batches, to be able to deliver
+    // the order, or null if the order contains a dish that is no longer on the menu or cannot be prepared.
+    private Map<Dish, Integer> shortfall(Order order, Map<String, Dish> menu, Map<String, Integer> batchSizes, Map<String, Integer> dishPool)
+    {
+        Map<Dish, Integer> batches = new HashMap<>();
+
+        for (Map.Entry<Dish, Number> entry : order.getOrderedDishes().entrySet())
+        {
+            Dish dish = menu.get(entry.getKey().getName());
+
+            if (dish == null)
+                return null;
+
+            int missing = entry.getValue().intValue() - dishPool.getOrDefault(dish.getName(), 0);
+
+            if (missing <= 0)
+                continue;
+
+            int batchSize = batchSizes.get(dish.getName());
+
+            if (batchSize <= 0)
+                return null;
+
+            batches.put(dish, batchSize * (int)Math.ceil(missing / (double)batchSize));
+        }
+
+        return batches;
+    }
+
+    // cost(Map<Dish, Integer>): Returns the total amount of ingredients needed to prepare the passed batches.
+    private double cost(Map<Dish, Integer> batches)
+    {
+        double cost = 0.0;
+
+        for (Map.Entry<Dish, Integer> entry : batches.entrySet())
+        {
+            for (Number quantity : entry.getKey().getRecipe().values())
+            {
+                cost += quantity.doubleValue() * entry.getValue();
+            }
+        }
+
+        return cost;
+    }
+
+    // takeIngredients(Map<Dish, Integer>, Map<String, Integer>): Takes the ingredients for the passed batches out of the pool, returning false without taking anything unless
+    // all of them are there.
+    private boolean takeIngredients(Map<Dish, Integer> batches, Map<String, Integer> ingredientPool)
+    {
+        Map<Ingredient, Integer> needed = new HashMap<>();
+
+        batches.forEach((dish, amount) -> dish.getRecipe().forEach((ingredient, quantity) -> needed.merge(ingredient, quantity.intValue() * amount, Integer::sum)));
+
+        for (Map.Entry<Ingredient, Integer> entry : needed.entrySet())
+        {
+            int available = ingredientPool.computeIfAbsent(entry.getKey().getName(), name -> stock.getAvailableStock(entry.getKey()).intValue());
+
+            if (available < entry.getValue())
+                return false;
+        }
+
+        needed.forEach((ingredient, quantity) -> ingredientPool.merge(ingredient.getName(), -quantity, Integer::sum));
+        return true;
+    }
+}
@@ -0,0 +1,126 @@
+package comp1206.sushi.common;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+// ServiceArea class: Splits the area around the restaurant into rings of a fixed width, with the time each class of drone speed takes to fly out to the far edge of every
+// ring worked out up front, so that quoting a delivery time only takes one distance and a table lookup. Postcodes beyond the service radius are out of range, unless the
+// radius is 0, in which case every postcode is served.
+// The area is built by the server whenever the restaurant, the drones, the service radius or the travel time model change, and is sent to the clients so they can quote at
+// checkout. It carries the distance the travel time model gives from the restaurant to every postcode the server knew of at the time, so that quotes follow the same
+// routes the drones fly; postcodes added since are quoted from the straight line rings instead.
+public class ServiceArea implements Serializable
+{
+    private static final long serialVersionUID = -679579400980436241L;
+
+    public static final double DEFAULT_RING_WIDTH = 1000.0;
+
+    // The number of rings to work out travel times for when the service radius is unlimited; rings beyond these are worked out when quoted.
+    private static final int UNLIMITED_RINGS = 64;
+
+    private final boolean located;
+    private final double latRadians;
+    private final double cosLatitude;
+    private final double lonRadians;
+    private final double radius;
+    private final double ringWidth;
+    private final double[] speeds;
+    private final long handlingTime;
+    private final int rings;
+    private final long[][] travelTimes;
+    private final Map<String, Double> routeDistances;
+
+    // ServiceArea(Postcode, double, double, double[], long): Creates the service area around the restaurant postcode, with rings of the passed width (in metres) out to
+    // the radius, for drones of each of the passed speeds, quoting the handling time (in milliseconds) on top of the flight.
+    public ServiceArea(Postcode restaurant, double radius, double ringWidth, double[] speeds, long handlingTime)
+    {
+        this(restaurant, radius, ringWidth, speeds, handlingTime, Collections.emptyMap());
+    }
+
+    // ServiceArea(Postcode, double, double, double[], long, Map<String, Double>): Creates the service area as above, quoting the postcodes in the passed map from the
+    // distance (in metres) the travel time model gives from the restaurant to each of them.
+    public ServiceArea(Postcode restaurant, double radius, double ringWidth, double[] speeds, long handlingTime, Map<String, Double> routeDistances)
+    {
+        this.routeDistances = routeDistances;
+        this.located = restaurant.isLocated();
+        this.latRadians = restaurant.getLatRadians();
+        this.cosLatitude = restaurant.getCosLatitude();
+        this.lonRadians = restaurant.getLonRadians();
+        this.radius = Math.max(radius, 0.0);
+        this.ringWidth = (ringWidth > 0) ? ringWidth : DEFAULT_RING_WIDTH;
+        this.speeds = Arrays.stream(speeds).filter(speed -> speed > 0).distinct().sorted().toArray();
+        this.handlingTime = handlingTime;
+
+        this.rings = (this.radius > 0) ? (int)Math.ceil(this.radius / this.ringWidth) : UNLIMITED_RINGS;
+        this.travelTimes = new long[this.speeds.length][rings];
+
+        for (int speed = 0; speed < this.speeds.length; speed++)
+        {
+            for (int ring = 0; ring < rings; ring++)
+            {
+                travelTimes[speed][ring] = travelTime(ring, this.speeds[speed]);
+            }
+        }
+    }
+
+    // getZone(Postcode): Returns the ring the postcode lies in, counting out from 0 at the restaurant, or -1 if it is out of range or it (or the restaurant) could not be
+    // looked up.
+    public int getZone(Postcode postcode)
+    {
+        if (!located || !postcode.isLocated())
+            return -1;
+
+        double distance = Haversine.distance(latRadians, cosLatitude, lonRadians, postcode.getLatRadians(), postcode.getCosLatitude(), postcode.getLonRadians());
+
+        if (radius > 0 && distance > radius)
+            return -1;
+
+        // A postcode right on the service radius belongs to the outermost ring.
+        return (radius > 0) ? Math.min((int)(distance / ringWidth), rings - 1) : (int)(distance / ringWidth);
+    }
+
+    // covers(Postcode): Returns whether the postcode is within the service radius.
+    public boolean covers(Postcode postcode) { return getZone(postcode) >= 0; }
+
+    // getTravelTime(int, int): Returns the number of seconds a drone of the passed speed class (slowest first) takes to fly out to the far edge of the ring.
+    public long getTravelTime(int zone, int speedClass)
+    {
+        if (zone < rings)
+            return travelTimes[speedClass][zone];
+
+        return travelTime(zone, speeds[speedClass]);
+    }
+
+    // getQuote(Postcode): Returns the number of milliseconds a delivery to the postcode is quoted to take - the handling time plus the flight of the slowest drone, so that
+    // the quote holds whichever drone takes the order - or -1 if the postcode is out of range or there are no drones.
+    public long getQuote(Postcode postcode)
+    {
+        int zone = getZone(postcode);
+
+        if (zone < 0 || speeds.length == 0)
+            return -1;
+
+        Double route = routeDistances.get(postcode.getName());
+
+        if (route != null)
+            return handlingTime + ((long)Math.ceil(route / speeds[0]) * 1000);
+
+        return handlingTime + (getTravelTime(zone, 0) * 1000);
+    }
+
+    public double getRadius() { return radius; }
+
+    public double getRingWidth() { return ringWidth; }
+
+    // getSpeedClasses(): Returns the distinct drone speeds the travel times were worked out for, slowest first.
+    public double[] getSpeedClasses() { return speeds.clone(); }
+
+    // travelTime(int, double): Returns the number of seconds it takes to fly out to the far edge of the ring at the passed speed.
+    private long travelTime(int ring, double speed)
+    {
+        double edge = (radius > 0) ? Math.min((ring + 1) * ringWidth, radius) : (ring + 1) * ringWidth;
+        return (long)Math.ceil(edge / speed);
+    }
+}
@@ -0,0 +1,83 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// ShiftScheduler class: Keeps track of the staff working in the kitchen and staggers their breaks - only a few staff may be on a break at once, and the most tired
+// member of staff is let off early, so staff hired together don't all end up recharging at the same time.
+public class ShiftScheduler
+{
+    private static final double EARLY_BREAK_FATIGUE = 50.0;
+    private static final int STAFF_PER_BREAK = 3;
+
+    private final Set<Staff> roster = new LinkedHashSet<>();
+    private final Set<Staff> onBreak = new HashSet<>();
+
+    // clockIn(Staff): Adds the member of staff to the roster.
+    public synchronized void clockIn(Staff staff) { roster.add(staff); }
+
+    // clockOut(Staff): Removes the member of staff from the roster.
+    public synchronized void clockOut(Staff staff)
+    {
+        roster.remove(staff);
+        onBreak.remove(staff);
+    }
+
+    // startBreak(Staff): Returns whether the member of staff should take a break now, counting them as on a break if so.
+    // A break is always taken at full fatigue, but an early break is only given to the most tired member of staff still working, and only while there is a free break slot.
+    public synchronized boolean startBreak(Staff staff)
+    {
+        double fatigue = staff.getFatigue().doubleValue();
+
+        if (fatigue < 100.0 && (fatigue < EARLY_BREAK_FATIGUE || onBreak.size() >= getMaxBreaks() || mostTired() != staff))
+            return false;
+
+        onBreak.add(staff);
+        return true;
+    }
+
+    // endBreak(Staff): Counts the member of staff as working again.
+    public synchronized void endBreak(Staff staff) { onBreak.remove(staff); }
+
+    // getMaxBreaks(): Returns the number of staff allowed on an early break at once (at least 1).
+    public synchronized int getMaxBreaks() { return Math.max(roster.size() / STAFF_PER_BREAK, 1); }
+
+    public synchronized int getStaffOnBreak() { return onBreak.size(); }
+
+    public synchronized List<Staff> getRoster() { return new ArrayList<>(roster); }
+
+    // projectJobs(int): Returns the number of jobs the staff on the roster are expected to finish in each of the passed number of hours from now.
+    public double[] projectJobs(int hours)
+    {
+        double[] jobs = new double[Math.max(hours, 0)];
+
+        for (Staff staff : getRoster())
+        {
+            double[] projected = staff.projectJobs(hours);
+
+            for (int i = 0; i < jobs.length; i++)
+            {
+                jobs[i] += projected[i];
+            }
+        }
+
+        return jobs;
+    }
+
+    // mostTired(): Returns the member of staff with the highest fatigue who is not already on a break.
+    private Staff mostTired()
+    {
+        Staff mostTired = null;
+
+        for (Staff staff : roster)
+        {
+            if (!onBreak.contains(staff) && (mostTired == null || staff.getFatigue().doubleValue() > mostTired.getFatigue().doubleValue()))
+                mostTired = staff;
+        }
+
+        return mostTired;
+    }
+}
@@ -0,0 +1,306 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.StampedLock;
+
+// SpatialIndex class: Uniform grid over the latitude and longitude of every known postcode, kept up to date as postcodes are added and removed, so that the nearest postcodes
+// to a point and the postcodes within a radius of it can be found by only looking at the grid cells close by rather than every postcode.
+public class SpatialIndex
+{
+    private static final double METRES_PER_DEGREE = Math.toRadians(1) * Haversine.EARTH_RADIUS;
+    private static final double DEFAULT_CELL_SIZE = 0.01;
+
+    private final StampedLock lock = new StampedLock();
+    private final double cellSize;
+    private final Map<Long, List<Postcode>> cells = new HashMap<>();
+    private final Map<Postcode, Long> located = new IdentityHashMap<>();
+
+    public SpatialIndex() { this(DEFAULT_CELL_SIZE); }
+
+    // SpatialIndex(double): Creates an index whose cells are the passed number of degrees across.
+    public SpatialIndex(double cellSize)
+    {
+        this.cellSize = cellSize;
+    }
+
+    // addPostcode(Postcode): Adds the passed postcode to the cell it lies in, unless it is already indexed or could not be looked up.
+    public void addPostcode(Postcode postcode)
+    {
+        if (!hasLocation(postcode))
+            return;
+
+        long stamp = lock.writeLock();
+
+        try
+        {
+            if (located.containsKey(postcode))
+                return;
+
+            long cell = cellOf(latitude(postcode), longitude(postcode));
+
+            cells.computeIfAbsent(cell, c -> new ArrayList<>()).add(postcode);
+            located.put(postcode, cell);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // removePostcode(Postcode): Removes the passed postcode from the index.
+    public void removePostcode(Postcode postcode)
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            Long cell = located.remove(postcode);
+
+            if (cell == null)
+                return;
+
+            List<Postcode> postcodes = cells.get(cell);
+            postcodes.remove(postcode);
+
+            if (postcodes.isEmpty())
+                cells.remove(cell);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // clear(): Removes every postcode from the index.
+    public void clear()
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            cells.clear();
+            located.clear();
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size()
+    {
+        long stamp = lock.readLock();
+
+        try
+        {
+            return located.size();
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // getNearest(Postcode, int): Returns up to the passed number of indexed postcodes closest to the passed postcode (excluding itself), nearest first.
+    // The grid is searched in rings of cells outwards from the postcode, stopping once no cell in the next ring could hold anything closer than the furthest found.
+    public List<Postcode> getNearest(Postcode origin, int count)
+    {
+        List<Postcode> nearest = new ArrayList<>();
+
+        if (count <= 0 || !hasLocation(origin))
+            return nearest;
+
+        double latitude = latitude(origin);
+        int row = row(latitude);
+        int column = column(longitude(origin));
+
+        // Furthest found first, so that it can be dropped when something closer turns up.
+        PriorityQueue<Neighbour> found = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+
+        long stamp = lock.readLock();
+
+        try
+        {
+            int examined = 0;
+
+            for (int ring = 0; examined < located.size(); ring++)
+            {
+                // Every cell in this ring and beyond is at least this far from the origin.
+                if (found.size() == count && found.peek().distance < ringDistance(latitude, ring))
+                    break;
+
+                if (ring == 0)
+                {
+                    examined += examine(origin, row, column, count, found);
+                    continue;
+                }
+
+                // Only visit the cells on the edge of the ring - the top and bottom rows in full, then the rest of the left and right columns.
+                for (int c = column - ring; c <= column + ring; c++)
+                {
+                    examined += examine(origin, row - ring, c, count, found);
+                    examined += examine(origin, row + ring, c, count, found);
+                }
+
+                for (int r = row - ring + 1; r < row + ring; r++)
+                {
+                    examined += examine(origin, r, column - ring, count, found);
+                    examined += examine(origin, r, column + ring, count, found);
+                }
+            }
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        while (!found.isEmpty())
+        {
+            nearest.add(0, found.poll().postcode);
+        }
+
+        return nearest;
+    }
+
+    // getWithin(Postcode, double): Returns every indexed postcode within the passed number of metres of the passed postcode, including itself if it is indexed.
+    public List<Postcode> getWithin(Postcode origin, double radius)
+    {
+        List<Postcode> within = new ArrayList<>();
+
+        if (!hasLocation(origin))
+            return within;
+
+        long stamp = lock.readLock();
+
+        try
+        {
+            within(origin, radius, within);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        return within;
+    }
+
+    // Neighbour class: A postcode found by a nearest neighbour search, along with its distance from the origin.
+    private static class Neighbour
+    {
+        private final Postcode postcode;
+        private final double distance;
+
+        private Neighbour(Postcode postcode, double distance)
+        {
+            this.postcode = postcode;
+            this.distance = distance;
+        }
+    }
+
+    // examine(Postcode, int, int, int, PriorityQueue<Neighbour>): Offers every postcode in the cell to the nearest found so far, keeping the closest count of them, and
+    // returns the number of postcodes in the cell.
+    private int examine(Postcode origin, int row, int column, int count, PriorityQueue<Neighbour> found)
+    {
+        List<Postcode> postcodes = cells.get(key(row, column));
+
+        if (postcodes == null)
+            return 0;
+
+        for (Postcode postcode : postcodes)
+        {
+            if (postcode == origin)
+                continue;
+
+            double distance = distance(origin, postcode);
+
+            if (found.size() < count)
+                found.add(new Neighbour(postcode, distance));
+            else if (distance < found.peek().distance)
+            {
+                found.poll();
+                found.add(new Neighbour(postcode, distance));
+            }
+        }
+
+        return postcodes.size();
+    }
+
+    // within(Postcode, double, List<Postcode>): Adds every indexed postcode within the radius of the origin to the list, only looking in the cells the radius overlaps.
+    private void within(Postcode origin, double radius, List<Postcode> within)
+    {
+        double latitude = latitude(origin);
+        double longitude = longitude(origin);
+        double latitudeSpan = radius / METRES_PER_DEGREE;
+        double longitudeSpan = radius / (METRES_PER_DEGREE * Math.max(Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + latitudeSpan, 90.0))), 1e-6));
+
+        int minRow = row(latitude - latitudeSpan);
+        int maxRow = row(latitude + latitudeSpan);
+        int minColumn = column(longitude - longitudeSpan);
+        int maxColumn = column(longitude + longitudeSpan);
+
+        // Fall back to checking every postcode when the radius covers more cells than there are postcodes.
+        if (((long)(maxRow - minRow + 1) * (maxColumn - minColumn + 1)) > located.size())
+        {
+            for (Postcode postcode : located.keySet())
+            {
+                if (distance(origin, postcode) <= radius)
+                    within.add(postcode);
+            }
+
+            return;
+        }
+
+        for (int r = minRow; r <= maxRow; r++)
+        {
+            for (int c = minColumn; c <= maxColumn; c++)
+            {
+                List<Postcode> postcodes = cells.get(key(r, c));
+
+                if (postcodes == null)
+                    continue;
+
+                for (Postcode postcode : postcodes)
+                {
+                    if (distance(origin, postcode) <= radius)
+                        within.add(postcode);
+                }
+            }
+        }
+    }
+
+    // ringDistance(double, int): Returns the shortest distance from a point to any cell the passed number of rings away, which is narrowest east to west.
+    private double ringDistance(double latitude, int ring)
+    {
+        double degrees = (ring - 1) * cellSize;
+
+        if (degrees <= 0)
+            return 0.0;
+
+        return degrees * METRES_PER_DEGREE * Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + degrees, 90.0)));
+    }
+
+    private long cellOf(double latitude, double longitude) { return key(row(latitude), column(longitude)); }
+
+    private int row(double latitude) { return (int)Math.floor(latitude / cellSize); }
+
+    private int column(double longitude) { return (int)Math.floor(longitude / cellSize); }
+
+    private static long key(int row, int column) { return ((long)row << 32) | (column & 0xFFFFFFFFL); }
+
+    private static boolean hasLocation(Postcode postcode) { return postcode.isLocated(); }
+
+    private static double latitude(Postcode postcode) { return postcode.getLatitude(); }
+
+    private static double longitude(Postcode postcode) { return postcode.getLongitude(); }
+
+    // distance(Postcode, Postcode): Returns the great circle distance in metres between the two postcodes, without rounding it.
+    private static double distance(Postcode origin, Postcode postcode)
+    {
+        return Haversine.distance(origin.getLatRadians(), origin.getCosLatitude(), origin.getLonRadians(), postcode.getLatRadians(), postcode.getCosLatitude(), postcode.getLonRadians());
+    }
+}
@@ -3,60 +3,64 @@ package comp1206.sushi.common;
 import comp1206.sushi.server.DataPersistence;
 
 import java.io.Serializable;
-import java.util.*;
+import java.util.Random;
 
 public class Staff extends Model implements Runnable, Serializable
 {
 	private String name;
 	private String status;
 	private Number fatigue;
-	private final Stock stock;
-	private final List<Dish> dishes;
-	private transient volatile static boolean readyToCheck = true;
+	private Number prepSpeed;
+	private transient volatile long breakUntil = 0;
+	private transient Kitchen kitchen;
 	private transient DataPersistence dataPersistence;
 
 	private static final int UPPER_PREP_TIME = 60;
 	private static final int LOWER_PREP_TIME = 20;
 	private static final double FATIGUE_RATE = 1;
 	private static final long RECHARGE_TIME = 60000;
-
-    private transient static final Map<Dish, Number> RESTOCKS_IN_PROGRESS = new HashMap<>();
+	private static final double LOWER_PREP_SPEED = 0.8;
+	private static final double UPPER_PREP_SPEED = 1.25;
+	private static final double FATIGUE_SLOWDOWN = 0.25;
+	private static final long PROJECTION_STEP = 10000;
+	private static final long HOUR = 60 * 60 * 1000;
 	
-	public Staff(String name, Stock stock, List<Dish> dishes, DataPersistence dataPersistence)
+	public Staff(String name, Kitchen kitchen, DataPersistence dataPersistence)
 	{
 		this.setName(name);
 		this.setFatigue(0.0);
-		this.stock = stock;
-		this.dishes = dishes;
+		this.setPrepSpeed(LOWER_PREP_SPEED + (new Random().nextDouble() * (UPPER_PREP_SPEED - LOWER_PREP_SPEED)));
+		this.kitchen = kitchen;
 		this.dataPersistence = dataPersistence;
 	}
 
 	// run(): Primary method called by the Thread when started.
 	public void run()
 	{
-		// Stop the thread if it's been interrupted.
-		while (!Thread.currentThread().isInterrupted())
-		{
-			setStatus("Idle");
+		kitchen.clockIn(this);
 
-			// If the restock dishes setting is enabled:
-			if (stock.getRestockingDishesEnabled())
+		try
+		{
+			// Stop the thread if it's been interrupted.
+			while (!Thread.currentThread().isInterrupted())
 			{
-				// Try to restock dishes.
+				setStatus("Idle");
+
+				// Wait for the kitchen to hand this member of staff a job, and then prepare the dish.
 				try
 				{
-					restockDishes();
+					prepareDish(kitchen.takeJob(this));
 				}
-				catch (ConcurrentModificationException ex)
+				catch (InterruptedException ex)
 				{
-					// Do nothing since another thread is working that will fix this issue.
-				}
-				catch (NoSuchElementException ex)
-				{
-					ex.printStackTrace();
+					Thread.currentThread().interrupt();
 				}
 			}
 		}
+		finally
+		{
+			kitchen.clockOut(this);
+		}
 	}
 
 	public String getName()
@@ -79,163 +83,89 @@ public class Staff extends Model implements Runnable, Serializable
 		this.fatigue = fatigue;
 	}
 
-	public String getStatus()
+	public Number getPrepSpeed()
 	{
-		return status;
+		return prepSpeed;
 	}
 
-	public void setStatus(String status)
+	public void setPrepSpeed(Number prepSpeed)
 	{
-		notifyUpdate("status",this.status,status);
-		this.status = status;
+		this.prepSpeed = prepSpeed;
 	}
 
-	// restockDishes(): Function that loops through each dish and checks if it can be prepared, and then prepares it if it can.
-	private void restockDishes() throws ConcurrentModificationException
+	// getEffectiveSpeed(): Returns the prep speed of the staff member, slowed down by their current fatigue.
+	public double getEffectiveSpeed()
 	{
-		for (Dish dish : dishes)
-		{
-			// Add the key if it's not already in the RESTOCKS_IN_PROGRESS map.
-			if (!RESTOCKS_IN_PROGRESS.containsKey(dish))
-				RESTOCKS_IN_PROGRESS.put(dish, 0);
-
-			// Stop the thread if it's been interrupted.
-			if (Thread.currentThread().isInterrupted())
-				return;
-
-			// While the dish can be prepared:
-			while (canPrepareDish(dish))
-			{
-				// Add one to the RESTOCKS_IN_PROGRESS counter for this dish.
-				RESTOCKS_IN_PROGRESS.put(dish, RESTOCKS_IN_PROGRESS.get(dish).intValue() + 1);
-
-				// Notify the other threads that they can now carry on with their check to see if a dish can be prepared.
-				synchronized (stock)
-				{
-					readyToCheck = true;
-					stock.notify();
-				}
-
-				// Restock the dish.
-				restockDish(dish);
-			}
-
-			// Notify the other threads that they can now carry on with their check to see if a dish can be prepared.
-			synchronized (stock)
-			{
-				readyToCheck = true;
-				stock.notify();
-			}
-		}
+		return effectiveSpeed(getFatigue().doubleValue());
 	}
 
-	// canPrepareDish(Dish): Method that checks if the dish can be prepared at this current time by the Staff member.
-	private boolean canPrepareDish(Dish dish)
+	// isOnBreak(): Returns whether the staff member is currently taking a break.
+	public boolean isOnBreak()
 	{
-		// Synchronise this based on the stock object.
-		synchronized (stock)
-		{
-			try
-			{
-				// Sleep for a random time just to ensure everything is place.
-				Random rand = new Random();
-
-				Thread.sleep(rand.nextInt(100));
-
-				// If the thread is not ready to check if a dish can be prepared, wait.
-				if (!readyToCheck)
-				{
-					stock.wait();
-				}
-			}
-			catch (InterruptedException ex)
-			{
-				Thread.currentThread().interrupt();
-				return false;
-			}
-
-			// Set the readyToCheck boolean variable to false whilst this thread is checking if this dish can be prepared.
-			readyToCheck = false;
-
-			// If the stock level of a dish plus any dishes in preparation is high enough or equal to the restock threshold, or the thread has been interrupted, return false.
-			if ((stock.getStock(dish).intValue() + (RESTOCKS_IN_PROGRESS.get(dish).intValue() * dish.getRestockAmount().intValue()) >= dish.getRestockThreshold().intValue()) ||
-					Thread.currentThread().isInterrupted())
-			{
-				return false;
-			}
-
-			// For each ingredient in the recipe:
-			for (Map.Entry entry : dish.getRecipe().entrySet())
-			{
-				Ingredient ingredient = (Ingredient) entry.getKey();
-				Number quantity = (Number) entry.getValue();
+		return breakUntil > System.currentTimeMillis();
+	}
 
-				// If the stock level of an ingredient is below the number of ingredients required for a dish, times the restock amount, multiplied by
-				// the number of restocks of this dish in progress plus one for the restock that would occur if this returned true, then return false.
-				if (stock.getStock(ingredient).intValue() < (quantity.intValue() * dish.getRestockAmount().intValue()) * (RESTOCKS_IN_PROGRESS.get(dish).intValue() + 1))
-				{
-					return false;
-				}
-			}
+	public String getStatus()
+	{
+		return status;
+	}
 
-			// Otherwise the dish can be prepared, so return true.
-			return true;
-		}
+	public void setStatus(String status)
+	{
+		notifyUpdate("status",this.status,status);
+		this.status = status;
 	}
 
-	// restockDish(Dish): Function that restocks the dish by the restock amount.
-	private void restockDish(Dish dish)
+	// prepareDish(PrepJob): Function that prepares the dish of the passed job, whose ingredients have already been taken from the stock by the kitchen.
+	private void prepareDish(PrepJob job)
 	{
+		Dish dish = job.getDish();
+
 		// Set the status to preparing this dish.
-		setStatus("Preparing " + dish.getName());
+		setStatus("Preparing " + dish.getName() + ((job.getBatches() > 1) ? " (" + job.getBatches() + " batches)" : ""));
 
-		// Generate a random preparation time between the upper and lower bounds (in milliseconds).
+		// Generate a random preparation time between the upper and lower bounds (in milliseconds), or use the kitchen's batch cooking time for a job of several batches,
+		// adjusted for how quick the staff member currently is.
 		Random rand = new Random();
-		int prepTime = (rand.nextInt(UPPER_PREP_TIME - LOWER_PREP_TIME + 1) + LOWER_PREP_TIME) * 1000;
+		long baseTime = (job.getBatches() > 1) ? kitchen.getBatchPrepTime(job.getBatches()) : (rand.nextInt(UPPER_PREP_TIME - LOWER_PREP_TIME + 1) + LOWER_PREP_TIME) * 1000;
+		int prepTime = (int)Math.round(baseTime / getEffectiveSpeed());
 
-		// Sleep for the randomly generated preparation time.
+		// Sleep for the randomly generated preparation time, giving the ingredients back to the kitchen if interrupted.
 		try
 		{
 			Thread.sleep(prepTime);
 		}
 		catch (InterruptedException ex)
 		{
+			kitchen.abandonJob(job);
 			Thread.currentThread().interrupt();
 			return;
 		}
 
-		// For each ingredient in the dish's recipe:
-		for (Map.Entry entry : dish.getRecipe().entrySet())
-		{
-			Ingredient ingredient = (Ingredient)entry.getKey();
-			Number quantity = (Number)entry.getValue();
-
-			// Set the stock of the ingredient to the current stock minus the number of that ingredient required for the dish times the amount of dishes that are created.
-			stock.setStock(ingredient, stock.getStock(ingredient).intValue() - (quantity.intValue() * dish.getRestockAmount().intValue()));
-		}
-
-		// Set the stock of the dish to the current stock plus the restock amount.
-		stock.setStock(dish, stock.getStock(dish).intValue() + dish.getRestockAmount().intValue());
+		// Add the prepared dishes to the stock.
+		kitchen.completeJob(job);
 
 		// Tell the server to back itself up when the stock level has changed.
 		dataPersistence.backupServer();
 
-		// Subtract one from the RESTOCKS_IN_PROGRESS counter for this dish.
-		RESTOCKS_IN_PROGRESS.put(dish, RESTOCKS_IN_PROGRESS.get(dish).intValue() - 1);
-
 		// Calculate the fatigue that the staff member has gained, and then set the fatigue to this value (or 100 if above 100).
 		double fatigue = getFatigue().doubleValue() + (FATIGUE_RATE * (prepTime / 1000.0));
 		setFatigue((fatigue >= 100) ? 100.0 : fatigue);
 
-		// If the fatigue is above or equal to 100, call the recharge method.
-		if (getFatigue().doubleValue() >= 100.0)
+		// Take a break if the shift scheduler says so - always at 100 fatigue, and earlier if this staff member is the most tired and no one else is on a break.
+		if (kitchen.getScheduler().startBreak(this))
 			recharge();
 	}
 
-	// recoverStaff(DataPersistence): Sets the DataPersistence object to the passed variable to send further backups when recovered.
-	public void recoverStaff(DataPersistence dataPersistence)
+	// recoverStaff(Kitchen, DataPersistence): Sets the Kitchen and DataPersistence objects to the passed variables to take jobs and send further backups when recovered.
+	public void recoverStaff(Kitchen kitchen, DataPersistence dataPersistence)
 	{
+		this.kitchen = kitchen;
 		this.dataPersistence = dataPersistence;
+
+		// Staff backed up before they had a prep speed work at the normal speed.
+		if (prepSpeed == null)
+			setPrepSpeed(1.0);
 	}
 
 	// recharge(): Method that simulates a staff member taking a break.
@@ -243,17 +173,73 @@ public class Staff extends Model implements Runnable, Serializable
 	{
 		setStatus("Taking a break to recharge");
 
-		// Recharge for the time indicated by the RECHARGE_TIME constant.
+		// Recharge for the RECHARGE_TIME scaled by the fatigue, so an early break is a shorter one.
+		long breakTime = breakTime(getFatigue().doubleValue());
+		breakUntil = System.currentTimeMillis() + breakTime;
+
 		try
 		{
-			Thread.sleep(RECHARGE_TIME);
+			Thread.sleep(breakTime);
 		}
 		catch (InterruptedException ex)
 		{
 			Thread.currentThread().interrupt();
 		}
+		finally
+		{
+			breakUntil = 0;
+			kitchen.getScheduler().endBreak(this);
+		}
 
 		// Reset the fatigue levels back to 0.
 		setFatigue(0.0);
 	}
+
+	// projectJobs(int): Simulates the staff member working and taking breaks from now on, returning the number of jobs expected to be finished in each of the passed number of hours.
+	public double[] projectJobs(int hours)
+	{
+		double[] jobs = new double[Math.max(hours, 0)];
+		double averagePrepTime = getAveragePrepTime();
+		double fatigue = getFatigue().doubleValue();
+		long breakLeft = Math.max(breakUntil - System.currentTimeMillis(), 0);
+
+		for (long time = 0; time < jobs.length * HOUR; time += PROJECTION_STEP)
+		{
+			if (breakLeft > 0)
+			{
+				breakLeft -= PROJECTION_STEP;
+
+				if (breakLeft <= 0)
+					fatigue = 0.0;
+
+				continue;
+			}
+
+			jobs[(int)(time / HOUR)] += PROJECTION_STEP / (averagePrepTime / effectiveSpeed(fatigue));
+			fatigue += FATIGUE_RATE * (PROJECTION_STEP / 1000.0);
+
+			if (fatigue >= 100.0)
+				breakLeft = breakTime(100.0);
+		}
+
+		return jobs;
+	}
+
+	// getAveragePrepTime(): Returns the average time (in milliseconds) a single batch takes to prepare at normal speed.
+	public static double getAveragePrepTime()
+	{
+		return ((UPPER_PREP_TIME + LOWER_PREP_TIME) / 2.0) * 1000;
+	}
+
+	// effectiveSpeed(double): Returns the prep speed of the staff member at the passed fatigue, which slows them down by up to FATIGUE_SLOWDOWN.
+	private double effectiveSpeed(double fatigue)
+	{
+		return getPrepSpeed().doubleValue() * (1 - (FATIGUE_SLOWDOWN * (Math.min(fatigue, 100.0) / 100.0)));
+	}
+
+	// breakTime(double): Returns how long a break taken at the passed fatigue lasts (in milliseconds).
+	private static long breakTime(double fatigue)
+	{
+		return Math.round(RECHARGE_TIME * (Math.min(fatigue, 100.0) / 100.0));
+	}
 }
\ No newline at end of file
@@ -2,100 +2,342 @@ package comp1206.sushi.common;
 
 import comp1206.sushi.server.ServerInterface;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 // Stock class: Stores all information about the stock of dishes and ingredients.
+// Every dish and ingredient is given a dense integer ID, and its stock level and reserved amount are packed into a single long in a chunked AtomicLongArray,
+// so reads never lock and every update is a single compare-and-set. Only adding, removing or renaming a dish or ingredient takes a lock.
+// Every change to the available stock is published as a StockEvent on a separate event thread, so listeners never run inside an update, and every change to a stock level
+// is recorded in the StockHistory.
 public class Stock implements Serializable
 {
-    private Map<Dish, Number> dishStock = new HashMap<>();
-    private Map<Ingredient, Number> ingredientStock = new HashMap<>();
+    private static final Logger logger = LogManager.getLogger("Stock");
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final Map<String, Integer> dishIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ingredientIds = new ConcurrentHashMap<>();
+    private volatile Model[] items = new Model[0];
+
+    // The ID of every item by the object itself, so an item renamed since it was added is found without searching. Dishes and ingredients are compared by identity, so
+    // this is rebuilt from the items after a recovery.
+    private transient Map<Model, Integer> slots = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+    private int nextId = 0;
+
+    // The history is backed up separately from the rest of the stock, as it is too big to write out on every change.
+    private transient volatile StockHistory history = new StockHistory();
 
-    private boolean restockIngredients = true;
-    private boolean restockDishes = true;
+    // Registering and removing items locks on a private object rather than the Stock itself, which drones still use as a monitor. An empty array is Serializable.
+    private final Object[] registryLock = new Object[0];
+
+    private volatile boolean restockIngredients = true;
+    private volatile boolean restockDishes = true;
+
+    private transient List<StockListener> listeners;
+    private transient Map<Integer, List<Subscription>> subscriptions;
+    private transient Map<Object, Watch> watches;
+    private transient Map<Integer, Set<Object>> dishWatches;
+    private transient ExecutorService events;
+
+    public Stock()
+    {
+        initialiseEvents();
+    }
 
     // getStock(Dish): Returns the stock of a particular dish.
-    public synchronized Number getStock(Dish dish)
+    public Number getStock(Dish dish)
+    {
+        int id = idOf(dishIds, dish);
+        return (id < 0) ? 0 : level(read(id));
+    }
+
+    // setStock(Dish, Number): Sets the stock of a particular dish.
+    public void setStock(Dish dish, Number stock)
+    {
+        setLevel(register(dishIds, dish, true), stock.intValue());
+    }
+
+    // removeDish(Dish): Removes a dish should it exist in the stock, otherwise returns an UnableToDeleteException.
+    public void removeDish(Dish dish) throws ServerInterface.UnableToDeleteException
     {
-        if (dishStock.get(dish) == null)
+        if (!unregister(dishIds, dish))
+            throw new ServerInterface.UnableToDeleteException("Dish \"" + dish.getName() + "\" could not be removed from the stock as it does not exist.");
+    }
+
+    // getStock(Ingredient): Returns the stock of a particular ingredient.
+    public Number getStock(Ingredient ingredient)
+    {
+        int id = idOf(ingredientIds, ingredient);
+        return (id < 0) ? 0 : level(read(id));
+    }
+
+    // setStock(Ingredient, Number): Sets the stock of a particular ingredient.
+    public void setStock(Ingredient ingredient, Number stock)
+    {
+        setLevel(register(ingredientIds, ingredient, true), stock.intValue());
+    }
+
+    // removeIngredient(Ingredient): Removes an ingredient should it exist in the stock, otherwise returns an UnableToDeleteException.
+    public void removeIngredient(Ingredient ingredient) throws ServerInterface.UnableToDeleteException
+    {
+        if (!unregister(ingredientIds, ingredient))
+            throw new ServerInterface.UnableToDeleteException("Ingredient \"" + ingredient.getName() + "\" could not be removed from the stock as it does not exist.");
+    }
+
+    // addStock(Dish, int): Adds the passed amount (which may be negative) to the stock of a particular dish.
+    public void addStock(Dish dish, int amount)
+    {
+        update(register(dishIds, dish, false), amount, 0);
+    }
+
+    // addStock(Ingredient, int): Adds the passed amount (which may be negative) to the stock of a particular ingredient.
+    public void addStock(Ingredient ingredient, int amount)
+    {
+        update(register(ingredientIds, ingredient, false), amount, 0);
+    }
+
+    // getAvailableStock(Dish): Returns the stock of a particular dish that has not been reserved.
+    public Number getAvailableStock(Dish dish)
+    {
+        int id = idOf(dishIds, dish);
+        return (id < 0) ? 0 : available(read(id));
+    }
+
+    // getAvailableStock(Ingredient): Returns the stock of a particular ingredient that has not been reserved.
+    public Number getAvailableStock(Ingredient ingredient)
+    {
+        int id = idOf(ingredientIds, ingredient);
+        return (id < 0) ? 0 : available(read(id));
+    }
+
+    // reserveIngredients(Map<Ingredient, Number>, int): Reserves the ingredients of the passed recipe, multiplied by the passed amount, returning null without reserving anything
+    // unless all of them are available.
+    public Reservation reserveIngredients(Map<Ingredient, Number> recipe, int amount)
+    {
+        int[] ids = new int[recipe.size()];
+        int[] quantities = new int[recipe.size()];
+        int i = 0;
+
+        for (Map.Entry<Ingredient, Number> entry : recipe.entrySet())
         {
-            for (Map.Entry entry : dishStock.entrySet())
-            {
-                Dish d = (Dish)entry.getKey();
+            ids[i] = idOf(ingredientIds, entry.getKey());
+            quantities[i++] = entry.getValue().intValue() * amount;
+        }
 
-                if (d.getName().equals(dish.getName()))
-                {
-                    dish = d;
-                    break;
-                }
-            }
+        return reserve(ids, quantities);
+    }
+
+    // reserveDishes(Map<Dish, Number>): Reserves the passed quantities of dishes, returning null without reserving anything unless all of them are available.
+    public Reservation reserveDishes(Map<Dish, Number> dishes)
+    {
+        int[] ids = new int[dishes.size()];
+        int[] quantities = new int[dishes.size()];
+        int i = 0;
+
+        for (Map.Entry<Dish, Number> entry : dishes.entrySet())
+        {
+            ids[i] = idOf(dishIds, entry.getKey());
+            quantities[i++] = entry.getValue().intValue();
         }
 
-        return (dish == null) ? 0 : dishStock.get(dish).intValue();
+        return reserve(ids, quantities);
     }
 
-    // setStock(Dish, Number): Sets the stock of a particular dish.
-    public synchronized void setStock(Dish dish, Number stock)
+    // commit(Reservation): Takes everything held by the reservation out of the stock.
+    public void commit(Reservation reservation)
     {
-        // Remove any objects found with the same name.
-        dishStock.entrySet().removeIf(e -> e.getKey().getName().equals(dish.getName()));
+        if (!reservation.close())
+            return;
 
-        dishStock.put(dish, stock);
+        for (int i = 0; i < reservation.ids.length; i++)
+        {
+            if (reservation.quantities[i] > 0)
+                update(reservation.ids[i], -reservation.quantities[i], -reservation.quantities[i]);
+        }
     }
 
-    // removeDish(Dish): Removes a dish should it exist in the dishStock Map, otherwise returns an UnableToDeleteException.
-    public synchronized void removeDish(Dish dish) throws ServerInterface.UnableToDeleteException
+    // release(Reservation): Makes everything held by the reservation available again without changing the stock.
+    public void release(Reservation reservation)
     {
-        if (!dishStock.containsKey(dish))
-            throw new ServerInterface.UnableToDeleteException("Dish \"" + "\" could not be removed from the stock as it does not exist.");
-        else
-            dishStock.remove(dish);
+        if (!reservation.close())
+            return;
+
+        for (int i = 0; i < reservation.ids.length; i++)
+        {
+            if (reservation.quantities[i] > 0)
+                update(reservation.ids[i], 0, -reservation.quantities[i]);
+        }
     }
 
-    // getStock(Ingredient): Returns the stock of a particular ingredient.
-    public synchronized Number getStock(Ingredient ingredient)
+    // clearReservations(): Drops every reservation, used when recovering the server since the jobs holding them no longer exist.
+    public void clearReservations()
     {
-        if (ingredientStock.get(ingredient) == null)
+        for (AtomicLongArray chunk : chunks)
         {
-            for (Map.Entry entry : ingredientStock.entrySet())
+            for (int i = 0; i < chunk.length(); i++)
             {
-                Ingredient i = (Ingredient)entry.getKey();
+                long word;
 
-                if (i.getName().equals(ingredient.getName()))
+                do
                 {
-                    ingredient = i;
-                    break;
+                    word = chunk.get(i);
                 }
+                while (!chunk.compareAndSet(i, word, pack(level(word), 0)));
             }
         }
+    }
+
+    // Reservation class: Dishes and ingredients set aside by reserveDishes() or reserveIngredients(), which must then either be committed or released.
+    public static class Reservation
+    {
+        private final int[] ids;
+        private final int[] quantities;
+        private final AtomicBoolean open = new AtomicBoolean(true);
 
-        return (ingredient == null) ? 0 : ingredientStock.get(ingredient).intValue();
+        private Reservation(int[] ids, int[] quantities)
+        {
+            this.ids = ids;
+            this.quantities = quantities;
+        }
+
+        // close(): Closes the reservation, returning false if it had already been committed or released.
+        private boolean close()
+        {
+            return open.compareAndSet(true, false);
+        }
     }
 
-    // setStock(Ingredient, Number): Sets the stock of a particular ingredient.
-    public synchronized void setStock(Ingredient ingredient, Number stock)
+    // getUsage(Ingredient, long, long): Returns the amount of the ingredient taken out of the stock between the two times.
+    public int getUsage(Ingredient ingredient, long from, long to)
+    {
+        int id = idOf(ingredientIds, ingredient);
+        return (id < 0) ? 0 : history.getUsage(id, from, to);
+    }
+
+    // getSeries(Dish, long, long, long[], int[], int[]): Fills the passed arrays with the dish's stock changes a minute at a time for graphing, returning the number of minutes filled in.
+    public int getSeries(Dish dish, long from, long to, long[] times, int[] deltas, int[] used)
+    {
+        int id = idOf(dishIds, dish);
+        return (id < 0) ? 0 : history.getSeries(id, from, to, times, deltas, used);
+    }
+
+    // getSeries(Ingredient, long, long, long[], int[], int[]): Fills the passed arrays with the ingredient's stock changes a minute at a time for graphing, returning the number of minutes filled in.
+    public int getSeries(Ingredient ingredient, long from, long to, long[] times, int[] deltas, int[] used)
+    {
+        int id = idOf(ingredientIds, ingredient);
+        return (id < 0) ? 0 : history.getSeries(id, from, to, times, deltas, used);
+    }
+
+    public StockHistory getHistory() { return history; }
+
+    // setHistory(StockHistory): Replaces the history with one recovered from a backup.
+    public void setHistory(StockHistory history) { this.history = history; }
+
+    // addListener(StockListener): Registers the listener to be told about every change to the available stock.
+    public void addListener(StockListener listener) { listeners.add(listener); }
+
+    // removeListener(StockListener): Stops the listener from being told about changes to the stock.
+    public void removeListener(StockListener listener) { listeners.remove(listener); }
+
+    // subscribe(Dish, IntSupplier, StockListener): Tells the listener whenever the available stock of the dish crosses the threshold, in either direction.
+    // The threshold is read each time the stock changes, so it can move (with the DemandForecast, for example).
+    public void subscribe(Dish dish, IntSupplier threshold, StockListener listener)
+    {
+        subscribe(register(dishIds, dish, false), threshold, listener);
+    }
+
+    // subscribe(Ingredient, IntSupplier, StockListener): Tells the listener whenever the available stock of the ingredient crosses the threshold, in either direction.
+    public void subscribe(Ingredient ingredient, IntSupplier threshold, StockListener listener)
+    {
+        subscribe(register(ingredientIds, ingredient, false), threshold, listener);
+    }
+
+    // whenAvailable(Object, Map<Dish, Number>, Runnable): Runs the callback once on the event thread as soon as every dish is available in the passed quantity, which may be
+    // straight away. Watching again with a key that is still being watched does nothing, so callers can ask on every pass without piling up watches.
+    public void whenAvailable(Object key, Map<Dish, Number> dishes, Runnable callback)
+    {
+        int[] ids = new int[dishes.size()];
+        int[] quantities = new int[dishes.size()];
+        int i = 0;
+
+        for (Map.Entry<Dish, Number> entry : dishes.entrySet())
+        {
+            ids[i] = register(dishIds, entry.getKey(), false);
+            quantities[i++] = entry.getValue().intValue();
+        }
+
+        if (watches.putIfAbsent(key, new Watch(ids, quantities, callback)) != null)
+            return;
+
+        // Index the watch by each of its dishes, so that a change to one dish only checks the watches waiting on it.
+        for (int id : ids)
+        {
+            dishWatches.computeIfAbsent(id, d -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+
+        events.execute(() -> checkWatch(key));
+    }
+
+    // cancelWatch(Object): Stops watching the dishes watched with the passed key.
+    public void cancelWatch(Object key)
+    {
+        Watch watch = watches.remove(key);
+
+        if (watch != null)
+            unindex(key, watch);
+    }
+
+    // Subscription class: A listener that is only told when the stock of an item crosses its threshold.
+    private static class Subscription
     {
-        // Remove any objects found with the same name.
-        ingredientStock.entrySet().removeIf(e -> e.getKey().getName().equals(ingredient.getName()));
+        private final IntSupplier threshold;
+        private final StockListener listener;
 
-        ingredientStock.put(ingredient, stock);
+        private Subscription(IntSupplier threshold, StockListener listener)
+        {
+            this.threshold = threshold;
+            this.listener = listener;
+        }
     }
 
-    // removeDish(Ingredient): Removes an ingredient should it exist in the ingredientStock Map, otherwise returns an UnableToDeleteException.
-    public synchronized void removeIngredient(Ingredient ingredient) throws ServerInterface.UnableToDeleteException
+    // Watch class: The IDs and quantities of the dishes that a callback is waiting on.
+    private static class Watch
     {
-        if (!ingredientStock.containsKey(ingredient))
-            throw new ServerInterface.UnableToDeleteException("Ingredient \"" + "\" could not be removed from the stock as it does not exist.");
-        else
-            ingredientStock.remove(ingredient);
+        private final int[] ids;
+        private final int[] quantities;
+        private final Runnable callback;
+
+        private Watch(int[] ids, int[] quantities, Runnable callback)
+        {
+            this.ids = ids;
+            this.quantities = quantities;
+            this.callback = callback;
+        }
     }
 
-    // getDishStockLevels(): Returns the dishStock Map.
-    public Map<Dish, Number> getDishStockLevels() { return dishStock; }
+    // getDishStockLevels(): Returns an immutable snapshot of the stock of every dish.
+    public Map<Dish, Number> getDishStockLevels() { return snapshot(dishIds); }
 
-    // getIngredientStockLevels(): Returns the ingredientStock Map.
-    public Map<Ingredient, Number> getIngredientStockLevels() { return ingredientStock; }
+    // getIngredientStockLevels(): Returns an immutable snapshot of the stock of every ingredient.
+    public Map<Ingredient, Number> getIngredientStockLevels() { return snapshot(ingredientIds); }
 
     // setRestockingIngredientsEnabled(boolean): Sets the restockIngredients, which determines whether ingredients are to be restocked, to the value of the passed boolean.
     public void setRestockingIngredientsEnabled(boolean enabled) { restockIngredients = enabled; }
@@ -108,4 +350,333 @@ public class Stock implements Serializable
 
     // getRestockingDishesEnabled(): Gets the restockDishes boolean, which determines if dishes should be restocked by staff.
     public boolean getRestockingDishesEnabled() { return restockDishes; }
+
+    // reserve(int[], int[]): Reserves each quantity against the matching ID in turn, rolling back the ones already reserved and returning null if any of them is unavailable.
+    // Another reservation may briefly see the partial reservation and fail, but the stock can never be over-reserved.
+    private Reservation reserve(int[] ids, int[] quantities)
+    {
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (quantities[i] > 0 && (ids[i] < 0 || !tryReserve(ids[i], quantities[i])))
+            {
+                for (int j = 0; j < i; j++)
+                {
+                    if (quantities[j] > 0)
+                        update(ids[j], 0, -quantities[j]);
+                }
+
+                return null;
+            }
+        }
+
+        return new Reservation(ids, quantities);
+    }
+
+    // tryReserve(int, int): Reserves the quantity against the ID if that much is available, returning whether it was reserved.
+    private boolean tryReserve(int id, int quantity)
+    {
+        AtomicLongArray chunk = chunks[id >>> CHUNK_BITS];
+        int index = id & (CHUNK_SIZE - 1);
+        long word;
+
+        do
+        {
+            word = chunk.get(index);
+
+            if (available(word) < quantity)
+                return false;
+        }
+        while (!chunk.compareAndSet(index, word, pack(level(word), reserved(word) + quantity)));
+
+        changed(id, available(word), available(word) - quantity);
+        return true;
+    }
+
+    // update(int, int, int): Adds the passed deltas to the stock level and the reserved amount of the ID in a single compare-and-set, throwing an IllegalStateException if
+    // more would be released than is reserved. Updates to an item that has been removed are dropped, as its reservations were dropped with it.
+    private void update(int id, int levelDelta, int reservedDelta) throws IllegalStateException
+    {
+        AtomicLongArray chunk = chunks[id >>> CHUNK_BITS];
+        int index = id & (CHUNK_SIZE - 1);
+        long word;
+        long updated;
+
+        do
+        {
+            Model item = items[id];
+            word = chunk.get(index);
+
+            if (item == null)
+                return;
+
+            if (reserved(word) + reservedDelta < 0)
+                throw new IllegalStateException("Unable to release " + -reservedDelta + " of \"" + item.getName() + "\" as only " + reserved(word) + " is reserved.");
+
+            updated = pack(level(word) + levelDelta, reserved(word) + reservedDelta);
+        }
+        while (!chunk.compareAndSet(index, word, updated));
+
+        history.record(id, levelDelta);
+        changed(id, available(word), available(updated));
+    }
+
+    // setLevel(int, int): Sets the stock level of the ID, keeping its reserved amount.
+    private void setLevel(int id, int level)
+    {
+        AtomicLongArray chunk = chunks[id >>> CHUNK_BITS];
+        int index = id & (CHUNK_SIZE - 1);
+        long word;
+
+        do
+        {
+            word = chunk.get(index);
+        }
+        while (!chunk.compareAndSet(index, word, pack(level, reserved(word))));
+
+        history.record(id, level - level(word));
+        changed(id, available(word), level - reserved(word));
+    }
+
+    // read(int): Returns the packed stock level and reserved amount of the ID.
+    private long read(int id)
+    {
+        return chunks[id >>> CHUNK_BITS].get(id & (CHUNK_SIZE - 1));
+    }
+
+    // idOf(Map<String, Integer>, Model): Returns the ID of the item, or -1 if it is not in the stock.
+    private int idOf(Map<String, Integer> ids, Model item)
+    {
+        Integer id = ids.get(item.getName());
+
+        // The item may have been renamed since it was added, so fall back to the ID of the same object. Items that aren't in the stock are turned away without locking.
+        if (id == null)
+        {
+            id = slots.get(item);
+
+            if (id != null)
+                id = rekey(ids, item, id);
+        }
+
+        return (id == null) ? -1 : id;
+    }
+
+    // rekey(Map<String, Integer>, Model, int): Moves the ID of the passed object from its old name to its current name, returning null if it has been removed since.
+    private Integer rekey(Map<String, Integer> ids, Model item, int id)
+    {
+        synchronized (registryLock)
+        {
+            if (items[id] != item)
+                return ids.get(item.getName());
+
+            // Renames are rare, so the old name is found by its ID rather than being kept for every item.
+            ids.values().removeIf(existing -> existing == id);
+            ids.put(item.getName(), id);
+
+            return id;
+        }
+    }
+
+    // register(Map<String, Integer>, Model, boolean): Returns the ID of the item, giving it the next ID (and growing the storage if needed) if it is not already in the stock.
+    // If replace is true then the passed object becomes the one returned in the stock level snapshots.
+    private int register(Map<String, Integer> ids, Model item, boolean replace)
+    {
+        int existing = idOf(ids, item);
+
+        if (existing >= 0 && !replace)
+            return existing;
+
+        synchronized (registryLock)
+        {
+            Integer id = ids.get(item.getName());
+
+            if (id == null)
+            {
+                id = nextId++;
+
+                // Add another chunk if the new ID doesn't fit. The existing chunks are shared rather than copied so that no concurrent update is lost.
+                if ((id >>> CHUNK_BITS) >= chunks.length)
+                {
+                    AtomicLongArray[] grown = new AtomicLongArray[chunks.length + 1];
+                    System.arraycopy(chunks, 0, grown, 0, chunks.length);
+                    grown[chunks.length] = new AtomicLongArray(CHUNK_SIZE);
+
+                    Model[] grownItems = new Model[grown.length * CHUNK_SIZE];
+                    System.arraycopy(items, 0, grownItems, 0, items.length);
+
+                    items = grownItems;
+                    chunks = grown;
+                }
+
+                ids.put(item.getName(), id);
+            }
+
+            if (items[id] != null && items[id] != item)
+                slots.remove(items[id]);
+
+            items[id] = item;
+            slots.put(item, id);
+            return id;
+        }
+    }
+
+    // unregister(Map<String, Integer>, Model): Removes the item from the stock, returning false if it was not in the stock.
+    private boolean unregister(Map<String, Integer> ids, Model item)
+    {
+        synchronized (registryLock)
+        {
+            int id = idOf(ids, item);
+
+            if (id < 0)
+                return false;
+
+            // The ID is not reused, so any reservation still holding it can never affect another item.
+            ids.remove(item.getName());
+            subscriptions.remove(id);
+            history.forget(id);
+            slots.remove(items[id]);
+            items[id] = null;
+            chunks[id >>> CHUNK_BITS].set(id & (CHUNK_SIZE - 1), 0);
+
+            return true;
+        }
+    }
+
+    // snapshot(Map<String, Integer>): Builds an immutable Map of each item to its stock level.
+    @SuppressWarnings("unchecked")
+    private <T extends Model> Map<T, Number> snapshot(Map<String, Integer> ids)
+    {
+        Model[] items = this.items;
+        Map<T, Number> levels = new HashMap<>();
+
+        for (Integer id : ids.values())
+        {
+            if (id < items.length && items[id] != null)
+                levels.put((T)items[id], level(read(id)));
+        }
+
+        return Collections.unmodifiableMap(levels);
+    }
+
+    // subscribe(int, IntSupplier, StockListener): Adds a threshold subscription to the ID.
+    private void subscribe(int id, IntSupplier threshold, StockListener listener)
+    {
+        subscriptions.computeIfAbsent(id, i -> new CopyOnWriteArrayList<>()).add(new Subscription(threshold, listener));
+    }
+
+    // changed(int, int, int): Publishes a change in the available stock of the ID on the event thread, if anything is listening.
+    private void changed(int id, int previous, int available)
+    {
+        if (previous == available || (listeners.isEmpty() && subscriptions.isEmpty() && watches.isEmpty()))
+            return;
+
+        Model item = items[id];
+
+        if (item != null)
+            events.execute(() -> publish(id, new StockEvent(item, previous, available)));
+    }
+
+    // publish(int, StockEvent): Passes the event to every listener, every subscription it crosses the threshold of and, if more of a dish is available, checks the watches.
+    private void publish(int id, StockEvent event)
+    {
+        for (StockListener listener : listeners)
+        {
+            deliver(listener, event);
+        }
+
+        for (Subscription subscription : subscriptions.getOrDefault(id, Collections.emptyList()))
+        {
+            int threshold = subscription.threshold.getAsInt();
+
+            if (event.crossedBelow(threshold) || event.crossedAbove(threshold))
+                deliver(subscription.listener, event);
+        }
+
+        if (event.isDish() && event.getAvailable() > event.getPrevious())
+            dishWatches.getOrDefault(id, Collections.emptySet()).forEach(this::checkWatch);
+    }
+
+    // deliver(StockListener, StockEvent): Passes the event to the listener, making sure a faulty listener can't stop the event thread.
+    private void deliver(StockListener listener, StockEvent event)
+    {
+        try
+        {
+            listener.stockChanged(event);
+        }
+        catch (RuntimeException ex)
+        {
+            logger.error("Stock listener failed to handle a change to \"" + event.getItem().getName() + "\"", ex);
+        }
+    }
+
+    // checkWatch(Object): Runs and removes the watch with the passed key if all of its dishes are available.
+    private void checkWatch(Object key)
+    {
+        Watch watch = watches.get(key);
+
+        if (watch == null)
+            return;
+
+        for (int i = 0; i < watch.ids.length; i++)
+        {
+            if (items[watch.ids[i]] == null || available(read(watch.ids[i])) < watch.quantities[i])
+                return;
+        }
+
+        if (watches.remove(key, watch))
+        {
+            unindex(key, watch);
+            watch.callback.run();
+        }
+    }
+
+    // unindex(Object, Watch): Removes the key of a watch that has run or been cancelled from the index of each of its dishes.
+    private void unindex(Object key, Watch watch)
+    {
+        for (int id : watch.ids)
+        {
+            dishWatches.computeIfPresent(id, (d, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    // initialiseEvents(): Sets up the listeners and the event thread, which are not backed up with the stock.
+    private void initialiseEvents()
+    {
+        listeners = new CopyOnWriteArrayList<>();
+        subscriptions = new ConcurrentHashMap<>();
+        watches = new ConcurrentHashMap<>();
+        dishWatches = new ConcurrentHashMap<>();
+        events = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Stock events");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // readObject(ObjectInputStream): Restores the stock from a backup, indexing its items again, setting up its events and starting an empty history until one is recovered.
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException
+    {
+        input.defaultReadObject();
+        slots = new ConcurrentHashMap<>();
+
+        for (int id = 0; id < items.length; id++)
+        {
+            if (items[id] != null)
+                slots.put(items[id], id);
+        }
+
+        history = new StockHistory();
+        initialiseEvents();
+    }
+
+    // pack(int, int): Packs the reserved amount into the high 32 bits and the stock level into the low 32 bits of a long.
+    private static long pack(int level, int reserved) { return ((long)reserved << 32) | (level & 0xFFFFFFFFL); }
+
+    private static int level(long word) { return (int)word; }
+
+    private static int reserved(long word) { return (int)(word >>> 32); }
+
+    private static int available(long word) { return level(word) - reserved(word); }
 }
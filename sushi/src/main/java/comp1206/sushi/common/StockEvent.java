@@ -0,0 +1,32 @@
+package comp1206.sushi.common;
+
+// StockEvent class: A change in the available (unreserved) stock of a single dish or ingredient.
+public class StockEvent
+{
+    private final Model item;
+    private final int previous;
+    private final int available;
+
+    public StockEvent(Model item, int previous, int available)
+    {
+        this.item = item;
+        this.previous = previous;
+        this.available = available;
+    }
+
+    public Model getItem() { return item; }
+
+    public boolean isDish() { return item instanceof Dish; }
+
+    public boolean isIngredient() { return item instanceof Ingredient; }
+
+    public int getPrevious() { return previous; }
+
+    public int getAvailable() { return available; }
+
+    // crossedBelow(int): Returns whether the available stock has just dropped below the passed threshold.
+    public boolean crossedBelow(int threshold) { return previous >= threshold && available < threshold; }
+
+    // crossedAbove(int): Returns whether the available stock has just risen to or above the passed threshold.
+    public boolean crossedAbove(int threshold) { return previous < threshold && available >= threshold; }
+}
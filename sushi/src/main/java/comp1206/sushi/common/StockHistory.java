@@ -0,0 +1,278 @@
+package comp1206.sushi.common;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+// StockHistory class: Records every change to a stock level as a (timestamp, item ID, delta) sample in chunked primitive arrays, along with a per-minute rollup of each item
+// (net change and amount used), written once the minute is over, that is kept for much longer than the raw samples. Both are rings of fixed size chunks
+// which are recycled once full, so recording a sample never allocates anything once the history is warmed up.
+public class StockHistory implements Serializable
+{
+    private static final long serialVersionUID = 2093494441305256360L;
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final int RAW_CHUNKS = 32;
+    private static final int ROLLUP_CHUNKS = 16;
+    private static final long ROLLUP_INTERVAL = 60 * 1000;
+
+    private static final int DELTA = 0;
+    private static final int USED = 1;
+
+    private final Ring raw = new Ring(RAW_CHUNKS, 1);
+    private final Ring rollups = new Ring(ROLLUP_CHUNKS, 2);
+
+    // The rollup bucket currently being filled for each item ID.
+    private long[] openBucket = new long[0];
+    private int[] openDelta = new int[0];
+    private int[] openUsed = new int[0];
+
+    // Ring class: A ring of chunks holding a timestamp, an item ID and a fixed number of int values per sample.
+    private static class Ring implements Serializable
+    {
+        private static final long serialVersionUID = -1617955715822796091L;
+
+        private final long[][] times;
+        private final int[][] ids;
+        private final int[][] values;
+        private final int width;
+        private long count = 0;
+
+        private Ring(int chunks, int width)
+        {
+            this.times = new long[chunks][];
+            this.ids = new int[chunks][];
+            this.values = new int[chunks][];
+            this.width = width;
+        }
+
+        // append(long, int): Adds a sample, returning the offset of its values within the newest chunk.
+        private int append(long time, int id)
+        {
+            int chunk = (int)((count / CHUNK_SIZE) % times.length);
+            int offset = (int)(count % CHUNK_SIZE);
+
+            // Chunks are only allocated the first time round the ring, and are overwritten after that.
+            if (times[chunk] == null)
+            {
+                times[chunk] = new long[CHUNK_SIZE];
+                ids[chunk] = new int[CHUNK_SIZE];
+                values[chunk] = new int[CHUNK_SIZE * width];
+            }
+
+            times[chunk][offset] = time;
+            ids[chunk][offset] = id;
+            count++;
+
+            return offset * width;
+        }
+
+        // oldest(): Returns the index of the oldest sample still held, given that a chunk is dropped as soon as the ring wraps onto it.
+        private long oldest() { return Math.max(0, ((count / CHUNK_SIZE) - (times.length - 1)) * CHUNK_SIZE); }
+
+        private int chunk(long index) { return (int)((index / CHUNK_SIZE) % times.length); }
+
+        private int offset(long index) { return (int)(index % CHUNK_SIZE); }
+
+        private long time(long index) { return times[chunk(index)][offset(index)]; }
+
+        private int id(long index) { return ids[chunk(index)][offset(index)]; }
+
+        private int value(long index, int column) { return values[chunk(index)][(offset(index) * width) + column]; }
+    }
+
+    // record(int, int): Records a change of delta to the stock of the item ID.
+    public synchronized void record(int id, int delta)
+    {
+        if (delta == 0)
+            return;
+
+        long now = System.currentTimeMillis();
+
+        int offset = raw.append(now, id);
+        raw.values[raw.chunk(raw.count - 1)][offset + DELTA] = delta;
+
+        if (id >= openBucket.length)
+            growBuckets(id + 1);
+
+        long bucket = now - (now % ROLLUP_INTERVAL);
+
+        // Close the item's bucket when a change arrives in a later minute.
+        if (openBucket[id] != bucket)
+        {
+            flush(id);
+            openBucket[id] = bucket;
+        }
+
+        openDelta[id] += delta;
+        openUsed[id] += Math.max(-delta, 0);
+    }
+
+    // getUsage(int, long, long): Returns the total amount of the item ID taken out of the stock between the two times, using the minute rollups for any time older than the raw samples.
+    // Once the oldest raw samples have been dropped, the raw samples are only counted from the first whole minute they cover, since the minute they start part way through
+    // is already in the rollups (or in the item's open bucket, if it has not changed since).
+    public synchronized int getUsage(int id, long from, long to)
+    {
+        int used = 0;
+        long oldest = raw.oldest();
+        long cutoff = rawCutoff();
+
+        for (long index = raw.count - 1; index >= oldest && raw.time(index) >= Math.max(from, cutoff); index--)
+        {
+            if (raw.id(index) == id && raw.time(index) <= to && raw.value(index, DELTA) < 0)
+                used -= raw.value(index, DELTA);
+        }
+
+        if (from < cutoff)
+        {
+            long end = Math.min(to, cutoff);
+
+            for (long index = rollups.count - 1; index >= rollups.oldest(); index--)
+            {
+                long bucket = rollups.time(index);
+
+                if (rollups.id(index) == id && bucket >= from && bucket < end)
+                    used += rollups.value(index, USED);
+            }
+
+            if (id < openBucket.length && openBucket[id] != 0 && openBucket[id] >= from && openBucket[id] < end)
+                used += openUsed[id];
+        }
+
+        return used;
+    }
+
+    // getSeries(int, long, long, long[], int[], int[]): Fills the passed arrays with the start time, net change and amount used of each minute between the two times
+    // in which the stock of the item ID changed, oldest first, and returns the number of minutes filled in. Stops early if the arrays are full.
+    public synchronized int getSeries(int id, long from, long to, long[] times, int[] deltas, int[] used)
+    {
+        int capacity = Math.min(times.length, Math.min(deltas.length, used.length));
+        int size = 0;
+        long cutoff = rawCutoff();
+
+        // Minutes older than the raw samples come from the rollups, and from the item's open bucket if it hasn't changed since.
+        if (from < cutoff)
+        {
+            long end = Math.min(to, cutoff - 1);
+
+            for (long index = rollups.oldest(); index < rollups.count && size < capacity; index++)
+            {
+                long bucket = rollups.time(index);
+
+                if (rollups.id(index) == id && bucket >= from && bucket <= end)
+                {
+                    times[size] = bucket;
+                    deltas[size] = rollups.value(index, DELTA);
+                    used[size] = rollups.value(index, USED);
+                    size++;
+                }
+            }
+
+            if (size < capacity && id < openBucket.length && openBucket[id] != 0 && openBucket[id] >= from && openBucket[id] <= end)
+            {
+                times[size] = openBucket[id];
+                deltas[size] = openDelta[id];
+                used[size] = openUsed[id];
+                size++;
+            }
+        }
+
+        // Find the first raw sample in range, then add the rest up a minute at a time.
+        long start = Math.max(from, cutoff);
+        long first = raw.count;
+
+        while (first > raw.oldest() && raw.time(first - 1) >= start)
+        {
+            first--;
+        }
+
+        for (long index = first; index < raw.count && raw.time(index) <= to; index++)
+        {
+            if (raw.id(index) != id)
+                continue;
+
+            long time = raw.time(index);
+            long bucket = time - Math.floorMod(time, ROLLUP_INTERVAL);
+            int delta = raw.value(index, DELTA);
+
+            if (size == 0 || times[size - 1] != bucket)
+            {
+                if (size == capacity)
+                    break;
+
+                times[size] = bucket;
+                deltas[size] = 0;
+                used[size] = 0;
+                size++;
+            }
+
+            deltas[size - 1] += delta;
+            used[size - 1] += Math.max(-delta, 0);
+        }
+
+        return size;
+    }
+
+    // getSampleCount(): Returns the number of changes recorded since the history was created, including those no longer held.
+    public synchronized long getSampleCount() { return raw.count; }
+
+    // getOldestSample(): Returns the time of the oldest raw sample still held, or 0 if there are none.
+    public synchronized long getOldestSample() { return (raw.count > raw.oldest()) ? raw.time(raw.oldest()) : 0; }
+
+    // forget(int): Drops the open rollup bucket of an item ID that has been removed from the stock.
+    public synchronized void forget(int id)
+    {
+        if (id < openBucket.length)
+        {
+            flush(id);
+            openBucket[id] = 0;
+        }
+    }
+
+    // rawCutoff(): Returns the start of the first whole minute covered by the raw samples once the oldest have been dropped, before which the rollups are used instead.
+    private long rawCutoff()
+    {
+        long oldest = raw.oldest();
+
+        if (oldest == 0)
+            return Long.MIN_VALUE;
+
+        long rawStart = raw.time(oldest);
+        long cutoff = rawStart - Math.floorMod(rawStart, ROLLUP_INTERVAL);
+
+        return (cutoff < rawStart) ? cutoff + ROLLUP_INTERVAL : cutoff;
+    }
+
+    // flush(int): Moves the open bucket of the item ID into the rollups, if it has anything in it.
+    private void flush(int id)
+    {
+        if (openBucket[id] == 0)
+            return;
+
+        int offset = rollups.append(openBucket[id], id);
+        int[] values = rollups.values[rollups.chunk(rollups.count - 1)];
+
+        values[offset + DELTA] = openDelta[id];
+        values[offset + USED] = openUsed[id];
+
+        openDelta[id] = 0;
+        openUsed[id] = 0;
+    }
+
+    // growBuckets(int): Makes room for the open buckets of item IDs up to the passed size.
+    private void growBuckets(int size)
+    {
+        int capacity = Math.max(size, openBucket.length * 2);
+
+        openBucket = Arrays.copyOf(openBucket, capacity);
+        openDelta = Arrays.copyOf(openDelta, capacity);
+        openUsed = Arrays.copyOf(openUsed, capacity);
+    }
+
+    // writeObject(ObjectOutputStream): Backs up the history while holding its lock, so that a change recorded part way through is never half written.
+    private synchronized void writeObject(ObjectOutputStream output) throws IOException
+    {
+        output.defaultWriteObject();
+    }
+}
@@ -0,0 +1,7 @@
+package comp1206.sushi.common;
+
+// StockListener interface: Implemented by anything that reacts to changes in the Stock. Events are delivered on the Stock's own event thread.
+public interface StockListener
+{
+    void stockChanged(StockEvent event);
+}
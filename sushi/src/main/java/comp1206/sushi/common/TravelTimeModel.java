@@ -0,0 +1,14 @@
+package comp1206.sushi.common;
+
+// TravelTimeModel interface: Strategy used to work out how far a drone effectively has to fly between two points, which the DistanceMatrix stores for every pair of
+// postcodes so that drones, the dispatcher and the other planners all see the same costs.
+// Costs are in metres of flying in still air, so a drone takes the cost divided by its speed in seconds, and they may be different in each direction.
+public interface TravelTimeModel
+{
+    // getName(): Returns the name used to select the model in the configuration file.
+    String getName();
+
+    // getCost(double, double, double, double, double, double): Returns the cost of the best route between the two points, given as the latitude in radians, the
+    // cosine of the latitude and the longitude in radians of each, as held by Postcode.
+    double getCost(double fromLat, double fromCos, double fromLon, double toLat, double toCos, double toLon);
+}
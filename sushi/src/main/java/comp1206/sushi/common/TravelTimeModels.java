@@ -0,0 +1,95 @@
+package comp1206.sushi.common;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+
+// TravelTimeModels class: The built in TravelTimeModel strategies.
+// The model is chosen with the TRAVELMODEL line of a configuration file, by name - "straight", "wind:<speed>:<bearing>" or "corridors:<file>".
+public class TravelTimeModels
+{
+    // The airspeed wind is worked out against, since the costs are shared by drones of every speed.
+    public static final double REFERENCE_SPEED = 20.0;
+
+    // The slowest a drone is assumed to make headway into the wind, as a fraction of its airspeed.
+    private static final double MIN_GROUND_SPEED = 0.1;
+
+    // STRAIGHT_LINE: Fly straight from one point to the other in still air.
+    public static final TravelTimeModel STRAIGHT_LINE = new TravelTimeModel()
+    {
+        public String getName() { return "straight"; }
+
+        public double getCost(double fromLat, double fromCos, double fromLon, double toLat, double toCos, double toLon)
+        {
+            return Haversine.distance(fromLat, fromCos, fromLon, toLat, toCos, toLon);
+        }
+    };
+
+    private TravelTimeModels() { }
+
+    // forName(String): Returns the model described by the passed name, otherwise throwing a NoSuchElementException.
+    public static TravelTimeModel forName(String name) throws NoSuchElementException
+    {
+        name = name.trim();
+
+        if (name.equalsIgnoreCase(STRAIGHT_LINE.getName()))
+            return STRAIGHT_LINE;
+
+        if (name.toLowerCase().startsWith("corridors:"))
+            return CorridorModel.load(new File(name.substring("corridors:".length())));
+
+        if (name.toLowerCase().startsWith("wind:"))
+        {
+            String[] parameters = name.split(":");
+
+            try
+            {
+                if (parameters.length == 3)
+                    return wind(Double.parseDouble(parameters[1]), Double.parseDouble(parameters[2]));
+            }
+            catch (NumberFormatException ex)
+            {
+                // Do nothing since the name is reported as not found below.
+            }
+        }
+
+        throw new NoSuchElementException("Cannot find travel time model called \"" + name + "\"");
+    }
+
+    // wind(double, double): Returns a model that flies straight in a steady wind of the passed speed (in metres per second) blowing from the passed bearing (in degrees),
+    // so that legs into the wind cost more than the distance and legs with it cost less.
+    public static TravelTimeModel wind(double speed, double bearing)
+    {
+        double from = Math.toRadians(bearing);
+
+        return new TravelTimeModel()
+        {
+            public String getName() { return "wind:" + speed + ":" + bearing; }
+
+            public double getCost(double fromLat, double fromCos, double fromLon, double toLat, double toCos, double toLon)
+            {
+                double distance = Haversine.distance(fromLat, fromCos, fromLon, toLat, toCos, toLon);
+
+                if (distance == 0.0)
+                    return 0.0;
+
+                // Split the wind into the part along the track, which speeds the drone up or slows it down, and the part across it, which the drone has to turn into.
+                double angle = bearing(fromLat, fromCos, fromLon, toLat, toCos, toLon) - from;
+                double along = -speed * Math.cos(angle);
+                double across = speed * Math.sin(angle);
+                double groundSpeed = Math.sqrt(Math.max((REFERENCE_SPEED * REFERENCE_SPEED) - (across * across), 0.0)) + along;
+
+                return distance * REFERENCE_SPEED / Math.max(groundSpeed, REFERENCE_SPEED * MIN_GROUND_SPEED);
+            }
+        };
+    }
+
+    // bearing(double, double, double, double, double, double): Returns the initial bearing in radians (clockwise from north) of the track from one point to the other.
+    static double bearing(double fromLat, double fromCos, double fromLon, double toLat, double toCos, double toLon)
+    {
+        double deltaLon = toLon - fromLon;
+        double y = Math.sin(deltaLon) * toCos;
+        double x = (fromCos * Math.sin(toLat)) - (Math.sin(fromLat) * toCos * Math.cos(deltaLon));
+
+        return Math.atan2(y, x);
+    }
+}
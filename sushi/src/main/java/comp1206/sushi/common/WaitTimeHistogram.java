@@ -0,0 +1,76 @@
+package comp1206.sushi.common;
+
+// WaitTimeHistogram class: Log-linear histogram of wait times in milliseconds - each power of two is split into SUB_BUCKETS linear buckets, giving percentiles
+// to within 25% using a fixed amount of memory.
+public class WaitTimeHistogram
+{
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long count = 0;
+    private long total = 0;
+    private long max = 0;
+
+    // record(long): Records a single wait time.
+    public synchronized void record(long millis)
+    {
+        millis = Math.max(millis, 0);
+
+        counts[bucketOf(millis)]++;
+        count++;
+        total += millis;
+        max = Math.max(max, millis);
+    }
+
+    // getPercentile(double): Returns the upper bound of the bucket holding the passed percentile (0-100), or 0 if nothing has been recorded.
+    public synchronized long getPercentile(double percentile)
+    {
+        if (count == 0)
+            return 0;
+
+        long rank = (long)Math.ceil((percentile / 100.0) * count);
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+
+            if (seen >= Math.max(rank, 1))
+                return Math.min(upperBoundOf(i), max);
+        }
+
+        return max;
+    }
+
+    public synchronized long getCount() { return count; }
+
+    public synchronized long getMax() { return max; }
+
+    public synchronized double getMean() { return (count == 0) ? 0.0 : (double)total / count; }
+
+    // bucketOf(long): Returns the bucket a value belongs in.
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)((value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+
+        return ((magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + sub;
+    }
+
+    // upperBoundOf(int): Returns the largest value that belongs in a bucket.
+    private static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int magnitude = (bucket / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (magnitude - SUB_BUCKET_BITS);
+
+        return (1L << magnitude) + ((sub + 1) * width) - 1;
+    }
+}
@@ -3,6 +3,8 @@ package comp1206.sushi.server;
 import comp1206.sushi.common.*;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 // Configuration class: Handles the configuration file, which can be used to load a server configuration.
@@ -10,6 +12,7 @@ public class Configuration
 {
     private final File configFile;
     private final Server server;
+    private final PostcodeResolver resolver = new PostcodeResolver();
 
     public Configuration(String filename, Server server)
     {
@@ -26,8 +29,11 @@ public class Configuration
     }
 
     // parseConfigFile(): Parses each line of the configuration file using a passed BufferedReader, calling the addModel() method when appropriate.
+    // Every postcode is looked up up front in parallel, so that each line only waits for the postcode it needs.
     private void parseConfigFile(BufferedReader reader)
     {
+        List<String[]> lines = new ArrayList<>();
+
         try
         {
             while (reader.ready())
@@ -37,18 +43,18 @@ public class Configuration
                 if (!line.equals(""))
                 {
                     String[] object = line.split(":");
-                    String[] parameters = new String[object.length - 1];
-
-                    System.arraycopy(object, 1, parameters, 0, object.length - 1);
 
-                    try
+                    // The geocoder has to be chosen before any of the postcodes after it start being looked up.
+                    if (object[0].equalsIgnoreCase("GEOCODER") && object.length > 1)
                     {
-                        addModel(object[0], parameters);
-                    }
-                    catch (NoSuchElementException ex)
-                    {
-                        ex.printStackTrace();
+                        setGeocoder(line.substring(line.indexOf(':') + 1));
+                        continue;
                     }
+
+                    if (object[0].equalsIgnoreCase("POSTCODE") && object.length > 1)
+                        resolver.resolve(object[1]);
+
+                    lines.add(object);
                 }
             }
         }
@@ -56,6 +62,22 @@ public class Configuration
         {
             ex.getStackTrace();
         }
+
+        for (String[] object : lines)
+        {
+            String[] parameters = new String[object.length - 1];
+
+            System.arraycopy(object, 1, parameters, 0, object.length - 1);
+
+            try
+            {
+                addModel(object[0], parameters);
+            }
+            catch (NoSuchElementException | IllegalArgumentException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
     }
 
     // addModel(): Creates a new object of the appropriate model and adds it to the server.
@@ -72,6 +94,34 @@ public class Configuration
                 server.addDrone(Integer.parseInt(parameters[0]));
                 break;
 
+            case "CHARGERS":
+                server.setChargingBays(Integer.parseInt(parameters[0]));
+                break;
+
+            case "BATCH":
+                server.setBatchCooking(Integer.parseInt(parameters[0]), Long.parseLong(parameters[1]) * 1000, Long.parseLong(parameters[2]) * 1000);
+                break;
+
+            case "DISPATCH":
+                server.setDispatchPolicy(parameters[0]);
+                break;
+
+            case "SLA":
+                server.setDeliverySla(Long.parseLong(parameters[0]) * 60 * 1000);
+                break;
+
+            case "TRAVELMODEL":
+                server.setTravelTimeModel(String.join(":", parameters));
+                break;
+
+            case "SERVICEAREA":
+                server.setServiceArea(Double.parseDouble(parameters[0]), (parameters.length > 1) ? Double.parseDouble(parameters[1]) : ServiceArea.DEFAULT_RING_WIDTH);
+                break;
+
+            case "MAKETOORDER":
+                server.setMakeToOrder(Boolean.parseBoolean(parameters[0]));
+                break;
+
             case "INGREDIENT":
                 server.addIngredient(parameters[0], parameters[1], getSupplier(parameters[2]), Integer.parseInt(parameters[3]), Integer.parseInt(parameters[4]), Double.parseDouble(parameters[5]));
                 break;
@@ -83,7 +133,7 @@ public class Configuration
                 break;
 
             case "POSTCODE":
-                server.addPostcode(parameters[0]);
+                server.addPostcode(resolver.get(parameters[0]));
                 break;
 
             case "RESTAURANT":
@@ -108,6 +158,19 @@ public class Configuration
         }
     }
 
+    // setGeocoder(): Supplementary method that sets the Geocoder used to look up postcodes from the passed name.
+    private void setGeocoder(String name)
+    {
+        try
+        {
+            Geocoders.setDefault(Geocoders.forName(name));
+        }
+        catch (NoSuchElementException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
     // addIngredientsToDish(): Supplementary method that adds ingredients to a particular dish.
     private void addIngredientsToDish(Dish dish, String ingredients)
     {
@@ -151,11 +214,10 @@ public class Configuration
     // getPostcode(): Supplementary method that returns the Postcode object associated to the passed String name from the server.
     private Postcode getPostcode(String name) throws NoSuchElementException
     {
-        for (Postcode postcode : server.getPostcodes())
-        {
-            if (postcode.getName().equals(name))
-                return postcode;
-        }
+        Postcode postcode = server.getPostcode(name);
+
+        if (postcode != null)
+            return postcode;
 
         throw new NoSuchElementException("Cannot find Postcode object called \"" + name + "\"");
     }
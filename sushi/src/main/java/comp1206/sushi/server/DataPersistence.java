@@ -1,31 +1,68 @@
 package comp1206.sushi.server;
 
+import comp1206.sushi.common.DemandForecast;
+import comp1206.sushi.common.Stock;
+import comp1206.sushi.common.StockHistory;
+
 import java.io.*;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 // DataPersistence class: Auxiliary class that frequently makes a backup of the Server object to a file.
+// The stock history and demand forecast grow to several megabytes, so they are left out of the Server backup and written to a file of their own at most once every
+// HISTORY_INTERVAL instead. Losing a few minutes of either only makes the forecasts slightly less accurate.
 public class DataPersistence
 {
+    private static final Logger logger = LogManager.getLogger("DataPersistence");
+    private static final long HISTORY_INTERVAL = 5 * 60 * 1000;
+
     private final Server server;
     private final File file;
+    private final File historyFile;
+    private long lastHistoryBackup;
 
-    public DataPersistence(String filePath, Server server)
+    public DataPersistence(String filePath, String historyFilePath, Server server)
     {
         this.server = server;
 
         file = new File(filePath);
+        historyFile = new File(historyFilePath);
+        lastHistoryBackup = System.currentTimeMillis();
     }
 
-    // backupServer(): Method that backs up the Server object by writing to it a file.
+    // backupServer(): Method that backs up the Server object by writing to it a file, along with the stock history and demand forecast if they are due.
     public synchronized void backupServer()
     {
-        try
+        try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(file, false)))
         {
-            ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(file, false));
             output.writeObject(server);
         }
         catch (IOException ex)
         {
-            ex.printStackTrace();
+            logger.error("Unable to back up the server: " + ex.getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (now - lastHistoryBackup >= HISTORY_INTERVAL)
+        {
+            lastHistoryBackup = now;
+            backupHistory();
+        }
+    }
+
+    // backupHistory(): Method that backs up the stock history and demand forecast of the server to their own file.
+    public synchronized void backupHistory()
+    {
+        try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(historyFile, false)))
+        {
+            output.writeObject(server.getStock().getHistory());
+            output.writeObject(server.getForecast());
+        }
+        catch (IOException ex)
+        {
+            logger.error("Unable to back up the stock history and demand forecast: " + ex.getMessage());
         }
     }
 
@@ -35,20 +72,38 @@ public class DataPersistence
         if (!file.exists())
             return null;
 
-        try
+        try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(file)))
         {
-            ObjectInputStream input = new ObjectInputStream(new FileInputStream(file));
             return (Server)input.readObject();
         }
-        catch (ClassNotFoundException ex)
+        catch (ClassNotFoundException | IOException ex)
         {
-            ex.printStackTrace();
+            logger.error("Unable to recover the server: " + ex.getMessage());
         }
-        catch (IOException ex)
+
+        return null;
+    }
+
+    // recoverHistory(Stock): Method that reads the stock history and demand forecast back from their file, giving the history to the passed stock and returning the
+    // forecast, or null if they have never been backed up.
+    public DemandForecast recoverHistory(Stock stock)
+    {
+        if (!historyFile.exists())
+            return null;
+
+        try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(historyFile)))
+        {
+            StockHistory history = (StockHistory)input.readObject();
+            DemandForecast forecast = (DemandForecast)input.readObject();
+
+            stock.setHistory(history);
+            return forecast;
+        }
+        catch (ClassNotFoundException | IOException | ClassCastException ex)
         {
-            ex.printStackTrace();
+            logger.error("Unable to recover the stock history and demand forecast: " + ex.getMessage());
         }
 
         return null;
     }
-}
\ No newline at end of file
+}
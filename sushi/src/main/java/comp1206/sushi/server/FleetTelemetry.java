@@ -0,0 +1,96 @@
+package comp1206.sushi.server;
+
+import comp1206.sushi.common.Drone;
+import comp1206.sushi.common.DroneTelemetry;
+import comp1206.sushi.common.PositionFeed;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// FleetTelemetry class: Keeps track of the telemetry of every drone, and regularly publishes a batched feed of the positions of the orders out for delivery.
+public class FleetTelemetry extends Thread
+{
+    private static final long PUBLISH_INTERVAL = 1000;
+
+    private final List<Drone> drones = new CopyOnWriteArrayList<>();
+    private final ServerComms comms;
+
+    public FleetTelemetry(ServerComms comms)
+    {
+        super("Fleet Telemetry");
+
+        this.comms = comms;
+
+        setDaemon(true);
+    }
+
+    public void run()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                Thread.sleep(PUBLISH_INTERVAL);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            PositionFeed feed = getPositionFeed();
+
+            if (feed.size() > 0)
+                comms.sendPositions(feed);
+        }
+    }
+
+    // getPositionFeed(): Builds a PositionFeed containing the latest position of every drone that is currently delivering an order.
+    public PositionFeed getPositionFeed()
+    {
+        Drone[] fleet = drones.toArray(new Drone[0]);
+
+        String[] orders = new String[fleet.length];
+        double[] latitudes = new double[fleet.length];
+        double[] longitudes = new double[fleet.length];
+        float[] progress = new float[fleet.length];
+        int count = 0;
+
+        for (Drone drone : fleet)
+        {
+            DroneTelemetry telemetry = drone.getTelemetry();
+            String order = telemetry.getOrder();
+
+            if (order.equals("") || !telemetry.readLatest(count, latitudes, longitudes, progress))
+                continue;
+
+            orders[count++] = order;
+        }
+
+        if (count < fleet.length)
+        {
+            String[] trimmedOrders = new String[count];
+            double[] trimmedLatitudes = new double[count];
+            double[] trimmedLongitudes = new double[count];
+            float[] trimmedProgress = new float[count];
+
+            System.arraycopy(orders, 0, trimmedOrders, 0, count);
+            System.arraycopy(latitudes, 0, trimmedLatitudes, 0, count);
+            System.arraycopy(longitudes, 0, trimmedLongitudes, 0, count);
+            System.arraycopy(progress, 0, trimmedProgress, 0, count);
+
+            return new PositionFeed(System.currentTimeMillis(), trimmedOrders, trimmedLatitudes, trimmedLongitudes, trimmedProgress);
+        }
+
+        return new PositionFeed(System.currentTimeMillis(), orders, latitudes, longitudes, progress);
+    }
+
+    // register(Drone): Starts including the passed drone in the position feed.
+    public void register(Drone drone) { drones.add(drone); }
+
+    // unregister(Drone): Stops including the passed drone in the position feed.
+    public void unregister(Drone drone) { drones.remove(drone); }
+
+    // clear(): Removes every drone from the position feed.
+    public void clear() { drones.clear(); }
+}
@@ -7,6 +7,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import comp1206.sushi.common.*;
 import org.apache.logging.log4j.LogManager;
@@ -16,6 +18,13 @@ public class Server implements ServerInterface, Serializable {
 
     private static final Logger logger = LogManager.getLogger("Server");
     private static final String FILE_PATH = "server.bak";
+    private static final String HISTORY_FILE_PATH = "history.bak";
+    private static final int DEFAULT_CHARGING_BAYS = 2;
+    private static final long DEFAULT_DELIVERY_SLA = 30 * 60 * 1000;
+    private static final long DEFAULT_BATCH_SETUP_TIME = 25000;
+    private static final long DEFAULT_BATCH_TIME = 10000;
+    private static final int HOTSPOTS_LOGGED = 5;
+    private static final double REACH_SHARE = 0.9;
 	
 	private Restaurant restaurant;
 	private List<Dish> dishes = new ArrayList<Dish>();
@@ -27,11 +36,31 @@ public class Server implements ServerInterface, Serializable {
 	private transient Map<Staff, Thread> staffThreads = new HashMap<>();
 	private List<Supplier> suppliers = new ArrayList<Supplier>();
 	private List<User> users = new ArrayList<User>();
+	private Map<String, User> customers = new ConcurrentHashMap<>();
 	private List<Postcode> postcodes = new ArrayList<Postcode>();
+	private transient Map<Postcode, Postcode> postcodeIndex = new ConcurrentHashMap<>();
 	private Stock stock = new Stock();
+	private transient DemandForecast forecast = new DemandForecast();
+	private int chargingBays = DEFAULT_CHARGING_BAYS;
+	private transient ChargingStation chargingStation = new ChargingStation(DEFAULT_CHARGING_BAYS);
+	private transient DistanceMatrix distances = new DistanceMatrix();
+	private transient SpatialIndex spatialIndex = new SpatialIndex();
+	private String dispatchPolicy = DispatchPolicies.FIFO.getName();
+	private long deliverySla = DEFAULT_DELIVERY_SLA;
+	private String travelTimeModel = TravelTimeModels.STRAIGHT_LINE.getName();
+	private int maxBatches = 1;
+	private long batchSetupTime = DEFAULT_BATCH_SETUP_TIME;
+	private long batchTime = DEFAULT_BATCH_TIME;
+	private boolean makeToOrder = false;
+	private double serviceRadius = 0.0;
+	private double serviceRingWidth = ServiceArea.DEFAULT_RING_WIDTH;
+	private transient volatile ServiceArea serviceArea;
+	private transient Dispatcher dispatcher = new Dispatcher(DispatchPolicies.FIFO, this::getDeliveryDistance);
 	private transient final ArrayList<UpdateListener> listeners = new ArrayList<>();
 	private transient ServerComms comms = new ServerComms(this);
-	private transient final DataPersistence dataPersistence = new DataPersistence(FILE_PATH, this);
+	private transient final FleetTelemetry telemetry = new FleetTelemetry(comms);
+	private transient Kitchen kitchen;
+	private transient final DataPersistence dataPersistence = new DataPersistence(FILE_PATH, HISTORY_FILE_PATH, this);
 	
 	public Server() {
 		Server recoveredServer = dataPersistence.recoverServer();
@@ -41,17 +70,21 @@ public class Server implements ServerInterface, Serializable {
 			recoverServer(recoveredServer);
 
 			logger.info("Recovering server...");
+			logHotspots();
 
 			comms.start();
+			telemetry.start();
 		}
 		else
 		{
 			logger.info("Starting up server...");
 
-			addPostcode("SO17 1BJ");
-			restaurant = new Restaurant("Southampton Sushi", postcodes.get(0));
+			startKitchen();
+			restaurant = new Restaurant("Southampton Sushi", addDefaultPostcode("SO17 1BJ"));
+			updateServiceArea();
 
 			comms.start();
+			telemetry.start();
 		}
 	}
 	
@@ -65,6 +98,7 @@ public class Server implements ServerInterface, Serializable {
 		Dish newDish = new Dish(name,description,price,restockThreshold,restockAmount);
 		this.dishes.add(newDish);
 		stock.setStock(newDish, 0);
+		kitchen.requestReview();
 		comms.sendMessage("ADD DISH", newDish);
 		this.notifyUpdate();
 		return newDish;
@@ -76,6 +110,7 @@ public class Server implements ServerInterface, Serializable {
 			throw new UnableToDeleteException("Unable to delete Dish \"" + dish.getName() + "\" as it does not exist on the server.");
 		this.dishes.remove(dish);
 		stock.removeDish(dish);
+		forecast.forget(dish);
 		comms.sendMessage("REMOVE DISH", dish);
 		this.notifyUpdate();
 	}
@@ -88,24 +123,28 @@ public class Server implements ServerInterface, Serializable {
 	@Override
 	public void setRestockingIngredientsEnabled(boolean enabled) {
 		stock.setRestockingIngredientsEnabled(enabled);
+		dispatcher.signal();
 		this.notifyUpdate();
 	}
 
 	@Override
 	public void setRestockingDishesEnabled(boolean enabled) {
 		stock.setRestockingDishesEnabled(enabled);
+		kitchen.requestReview();
 		this.notifyUpdate();
 	}
 
 	@Override
 	public void setStock(Dish dish, Number stock) {
 		this.stock.setStock(dish, stock);
+		kitchen.requestReview();
 		this.notifyUpdate();
 	}
 
 	@Override
 	public void setStock(Ingredient ingredient, Number stock) {
 		this.stock.setStock(ingredient, stock);
+		kitchen.requestReview();
 		this.notifyUpdate();
 	}
 
@@ -120,6 +159,7 @@ public class Server implements ServerInterface, Serializable {
 		Ingredient ingredient = new Ingredient(name,unit,supplier,restockThreshold,restockAmount,weight);
 		this.ingredients.add(ingredient);
 		stock.setStock(ingredient, 0);
+		watchIngredient(ingredient);
 		this.notifyUpdate();
 		return ingredient;
 	}
@@ -162,14 +202,16 @@ public class Server implements ServerInterface, Serializable {
 
 	@Override
 	public Drone addDrone(Number speed) {
-		Drone drone = new Drone(speed, stock, comms, ingredients, orders, users, restaurant, dataPersistence);
+		Drone drone = new Drone(speed, stock, comms, ingredients, orders, customers, restaurant, forecast, chargingStation, distances, dispatcher, dataPersistence);
 		this.drones.add(drone);
+		telemetry.register(drone);
 
 		Thread thread = new Thread(drone);
 		thread.setName(drone.getName());
 		thread.start();
 		this.droneThreads.put(drone, thread);
 
+		updateServiceArea();
 		this.notifyUpdate();
 		return drone;
 	}
@@ -181,6 +223,8 @@ public class Server implements ServerInterface, Serializable {
 		this.droneThreads.get(drone).interrupt();
 		this.droneThreads.remove(drone);
 		this.drones.remove(drone);
+		telemetry.unregister(drone);
+		updateServiceArea();
 		this.notifyUpdate();
 	}
 
@@ -191,7 +235,7 @@ public class Server implements ServerInterface, Serializable {
 
 	@Override
 	public Staff addStaff(String name) {
-		Staff staff = new Staff(name, stock, dishes, dataPersistence);
+		Staff staff = new Staff(name, kitchen, dataPersistence);
 		this.staff.add(staff);
 
         Thread thread = new Thread(staff);
@@ -216,7 +260,9 @@ public class Server implements ServerInterface, Serializable {
 	public Order addOrder(User customer)
 	{
 		Order order = new Order();
+		indexOrder(order, customer);
 		this.orders.add(order);
+		queueOrder(order);
 		customer.placeOrder(order);
 		this.notifyUpdate();
 		return order;
@@ -227,14 +273,22 @@ public class Server implements ServerInterface, Serializable {
 		if(quantity.equals(0)) {
 			removeDishFromOrder(order, dish);
 		} else {
-			order.getOrderedDishes().put(dish, quantity);
+			Number previous = order.getOrderedDishes().put(dish, quantity);
+			int change = quantity.intValue() - ((previous == null) ? 0 : previous.intValue());
+			if (change > 0)
+				forecast.record(dish, change);
+			else
+				forecast.cancel(dish, -change, order.getPlacedAt());
 		}
 
+		kitchen.orderChanged(order);
 		this.notifyUpdate();
 	}
 
 	public void removeDishFromOrder(Order order, Dish dish) {
-		order.getOrderedDishes().remove(dish);
+		Number previous = order.getOrderedDishes().remove(dish);
+		if (previous != null)
+			forecast.cancel(dish, previous.intValue(), order.getPlacedAt());
 		this.notifyUpdate();
 	}
 
@@ -250,11 +304,13 @@ public class Server implements ServerInterface, Serializable {
 		if (!order.isComplete() && !order.isCancelled())
 			throw new UnableToDeleteException("Unable to delete Order \"" + order.getName() + "\" as it has not yet been completed or cancelled.");
 		this.orders.remove(order);
-		users.forEach(u -> {
-			if (u.getOrders().contains(order))
-				u.getOrders().remove(order);
-				comms.sendMessage("COMPLETE ORDER", order, u);
-				});
+		dispatcher.removeOrder(order);
+		stock.cancelWatch(order.getId());
+		User customer = customers.remove(order.getId());
+		if (customer != null) {
+			customer.getOrders().remove(order);
+			comms.sendMessage("COMPLETE ORDER", order, customer);
+		}
 		this.notifyUpdate();
 	}
 
@@ -302,6 +358,7 @@ public class Server implements ServerInterface, Serializable {
 			dish.getRecipe().put(ingredient,quantity);
 		}
 
+		kitchen.requestReview();
 		this.notifyUpdate();
 	}
 
@@ -321,30 +378,73 @@ public class Server implements ServerInterface, Serializable {
 		return this.postcodes;
 	}
 
+	// addPostcode(String): Looks up and adds the postcode with the passed code, returning the one already on the server instead if it has the same code. Throws an
+	// IllegalArgumentException, whose message says what was wrong, if the code is not a valid UK postcode (before it is looked up) or its location could not be found.
 	@Override
-	public Postcode addPostcode(String code) {
-        Postcode postcode;
-	    if (restaurant == null)
-	        postcode = new Postcode(code);
-	    else
-		    postcode = new Postcode(code, restaurant);
+	public Postcode addPostcode(String code) throws IllegalArgumentException {
+		if (!PostcodeRegistry.isValid(code))
+			throw new IllegalArgumentException("Unable to add Postcode \"" + code + "\" as it is not a valid UK postcode.");
+		return addPostcode(PostcodeRegistry.getDefault().intern(code));
+	}
+
+	// addPostcode(Postcode): Adds a postcode that has already been looked up, such as one from a PostcodeResolver, returning the one already on the server instead
+	// if it has the same code. A postcode that is not valid or could not be looked up is not added anywhere, and an IllegalArgumentException is thrown instead.
+	public Postcode addPostcode(Postcode postcode) throws IllegalArgumentException {
+		if (!PostcodeRegistry.isValid(postcode.getName()))
+			throw new IllegalArgumentException("Unable to add Postcode \"" + postcode.getName() + "\" as it is not a valid UK postcode.");
+		if (!postcode.isLocated())
+			throw new IllegalArgumentException("Unable to add Postcode \"" + postcode.getName() + "\" as its location could not be found.");
+		Postcode existing = postcodeIndex.putIfAbsent(postcode, postcode);
+		if (existing != null)
+			return existing;
+		if (restaurant != null)
+			postcode.updateDistance(restaurant);
 		this.postcodes.add(postcode);
+		distances.addPostcode(postcode);
+		spatialIndex.addPostcode(postcode);
 		comms.sendMessage("ADD POSTCODE", postcode);
 		this.notifyUpdate();
 		return postcode;
 	}
 
+	// addDefaultPostcode(String): Adds the postcode of the default restaurant, which the server is still started with if it can't be looked up (e.g. while offline),
+	// until a configuration sets a restaurant that can.
+	private Postcode addDefaultPostcode(String code) {
+		try {
+			return addPostcode(code);
+		} catch (IllegalArgumentException ex) {
+			logger.error(ex.getMessage());
+			return PostcodeRegistry.getDefault().intern(code);
+		}
+	}
+
+	// getPostcode(String): Returns the postcode on the server with the passed code, or null if there isn't one.
+	public Postcode getPostcode(String code) {
+		Postcode postcode = PostcodeRegistry.getDefault().get(code);
+		return (postcode != null) ? postcodeIndex.get(postcode) : null;
+	}
+
 	@Override
 	public void removePostcode(Postcode postcode) throws UnableToDeleteException {
-		if (!this.postcodes.contains(postcode))
+		if (!postcodeIndex.containsKey(postcode))
 			throw new UnableToDeleteException("Unable to delete Postcode \"" + postcode.getName() + "\" as it does not exist on the server.");
 		this.postcodes.remove(postcode);
+		postcodeIndex.remove(postcode);
+		distances.removePostcode(postcode);
+		spatialIndex.removePostcode(postcode);
 		comms.sendMessage("REMOVE POSTCODE", postcode);
 		this.notifyUpdate();
 	}
 
+	// addUser(String, String, String, Postcode): Adds a user, unless their postcode is outside the service area, in which case null is returned.
 	public User addUser(String username, String password, String address, Postcode postcode)
 	{
+		if (!isInServiceArea(postcode))
+		{
+			logger.warn("Unable to add user \"" + username + "\" as " + postcode.getName() + " is outside of the service area.");
+			return null;
+		}
+
 		User user = new User(username, password, address, postcode);
 		this.users.add(user);
 		comms.sendMessage("ADD USER", user);
@@ -362,6 +462,12 @@ public class Server implements ServerInterface, Serializable {
 		if (!this.users.contains(user))
 			throw new UnableToDeleteException("Unable to delete User \"" + user.getName() + "\" as it does not exist on the server.");
 		this.users.remove(user);
+		// Nobody is left to deliver the user's pending orders to, so stop the drones and the stock from waiting on them.
+		for (Order order : user.getOrders()) {
+			customers.remove(order.getId(), user);
+			dispatcher.removeOrder(order);
+			stock.cancelWatch(order.getId());
+		}
 		comms.sendMessage("REMOVE USER", user);
 		this.notifyUpdate();
 	}
@@ -379,6 +485,8 @@ public class Server implements ServerInterface, Serializable {
 		configuration.loadConfigFile();
 
 		System.out.println("Loaded configuration: " + filename);
+		logger.info("Geocode cache: " + GeocodeCache.getDefault());
+		logHotspots();
 	}
 
 	@Override
@@ -414,6 +522,7 @@ public class Server implements ServerInterface, Serializable {
 	public void setRestockLevels(Dish dish, Number restockThreshold, Number restockAmount) {
 		dish.setRestockThreshold(restockThreshold);
 		dish.setRestockAmount(restockAmount);
+		kitchen.requestReview();
 		this.notifyUpdate();
 	}
 
@@ -421,6 +530,7 @@ public class Server implements ServerInterface, Serializable {
 	public void setRestockLevels(Ingredient ingredient, Number restockThreshold, Number restockAmount) {
 		ingredient.setRestockThreshold(restockThreshold);
 		ingredient.setRestockAmount(restockAmount);
+		dispatcher.signal();
 		this.notifyUpdate();
 	}
 
@@ -472,6 +582,22 @@ public class Server implements ServerInterface, Serializable {
 
 	public Restaurant setRestaurant(String name, Postcode postcode) {
 		restaurant = new Restaurant(name, postcode);
+
+		// Every postcode's distance was worked out from the old restaurant, if there was one at all.
+		if (postcode.isLocated())
+		{
+			for (Postcode p : postcodes)
+			{
+				if (p.isLocated())
+					p.updateDistance(restaurant);
+			}
+		}
+
+		// Every drone works from the new restaurant from its next trip, including when deciding whether to top its battery up.
+		for (Drone drone : drones)
+			drone.setRestaurant(restaurant);
+
+		updateServiceArea();
 		this.notifyUpdate();
 		return restaurant;
 	}
@@ -499,29 +625,263 @@ public class Server implements ServerInterface, Serializable {
 		restaurant = null;
 		dishes.clear();
 		drones.clear();
+		telemetry.clear();
 		ingredients.clear();
 		orders.clear();
 		staff.clear();
 		suppliers.clear();
 		users.clear();
+		customers.clear();
+		dispatcher.clear();
+		kitchen.clear();
+		forecast.clear();
 		postcodes.clear();
+		postcodeIndex.clear();
+		distances.clear();
+		spatialIndex.clear();
+		serviceArea = null;
 
 		this.notifyUpdate();
 	}
 
 	public Stock getStock() { return this.stock; }
 
+	// setServiceArea(double, double): Sets the radius (in metres) beyond which users are turned away, or 0 to serve everywhere, and the width of the zones the
+	// delivery quotes are worked out for.
+	public void setServiceArea(double radius, double ringWidth) {
+		this.serviceRadius = Math.max(radius, 0.0);
+		this.serviceRingWidth = (ringWidth > 0) ? ringWidth : ServiceArea.DEFAULT_RING_WIDTH;
+		updateServiceArea();
+		this.notifyUpdate();
+	}
+
+	public double getServiceRadius() { return this.serviceRadius; }
+
+	public double getServiceRingWidth() { return this.serviceRingWidth; }
+
+	// getServiceArea(): Returns the current ServiceArea, or null if there is no restaurant yet.
+	public ServiceArea getServiceArea() { return this.serviceArea; }
+
+	// isInServiceArea(Postcode): Returns whether the postcode can be delivered to - always true if the service radius is unlimited or there is no restaurant yet.
+	public boolean isInServiceArea(Postcode postcode) {
+		ServiceArea area = serviceArea;
+		return serviceRadius <= 0 || area == null || area.covers(postcode);
+	}
+
+	// getDeliveryQuote(Postcode): Returns the number of milliseconds a delivery to the postcode is quoted to take, or -1 if it can't be quoted.
+	public long getDeliveryQuote(Postcode postcode) {
+		ServiceArea area = serviceArea;
+		return (area == null) ? -1 : area.getQuote(postcode);
+	}
+
+	// updateServiceArea(): Works out the ServiceArea again for the current restaurant and drone speeds, and sends it to the clients.
+	private void updateServiceArea() {
+		if (restaurant == null || restaurant.getLocation() == null)
+			serviceArea = null;
+		else
+			serviceArea = new ServiceArea(restaurant.getLocation(), serviceRadius, serviceRingWidth, drones.stream().mapToDouble(drone -> drone.getSpeed().doubleValue()).toArray(), (long)Staff.getAveragePrepTime(), getRouteDistances());
+
+		comms.sendServiceArea(serviceArea);
+	}
+
+	// getRouteDistances(): Returns the distance the travel time model gives from the restaurant to every postcode it can deliver to, by code, for quoting. With a service
+	// radius set, the SpatialIndex finds the postcodes inside it without checking every postcode on the server.
+	private Map<String, Double> getRouteDistances() {
+		Map<String, Double> routes = new HashMap<>();
+		Postcode location = restaurant.getLocation();
+		if (!location.isLocated())
+			return routes;
+		List<Postcode> served = (serviceRadius > 0) ? spatialIndex.getWithin(location, serviceRadius) : postcodes;
+		for (Postcode postcode : served) {
+			if (postcode.isLocated())
+				routes.put(postcode.getName(), distances.getDistance(location, postcode));
+		}
+		return routes;
+	}
+
+	// getForecast(): Returns the DemandForecast learnt from the orders placed on the server.
+	public DemandForecast getForecast() { return this.forecast; }
+
+	// getHeatmap(): Returns the DemandHeatmap of where orders have been placed from, by hour of the day.
+	public DemandHeatmap getHeatmap() { return forecast.getHeatmap(); }
+
+	// logHotspots(): Logs the cells of the heatmap that the most orders have been placed from, along with how far out from the restaurant most orders come from.
+	private void logHotspots() {
+		DemandHeatmap heatmap = getHeatmap();
+		if (heatmap.getTotal(DemandHeatmap.ALL_HOURS) == 0)
+			return;
+		StringBuilder hotspots = new StringBuilder();
+		for (DemandHeatmap.Cell cell : heatmap.getHotspots(DemandHeatmap.ALL_HOURS, HOTSPOTS_LOGGED))
+			hotspots.append(String.format(" (%.3f, %.3f): %d,", cell.getLatitude(), cell.getLongitude(), cell.getCount()));
+		logger.info("Busiest delivery areas by orders placed:" + hotspots.substring(0, hotspots.length() - 1));
+		if (restaurant != null && restaurant.getLocation().isLocated())
+			logger.info(String.format("%.0f%% of orders are placed within %.0fm of the restaurant.", REACH_SHARE * 100, heatmap.getReach(restaurant.getLocation(), DemandHeatmap.ALL_HOURS, REACH_SHARE)));
+	}
+
+	// setBatchCooking(int, long, long): Lets staff cook up to the passed number of batches of a dish in one go, taking the setup time plus the time per batch (in milliseconds).
+	public void setBatchCooking(int maxBatches, long setupTime, long batchTime) {
+		this.maxBatches = Math.max(maxBatches, 1);
+		this.batchSetupTime = setupTime;
+		this.batchTime = batchTime;
+		kitchen.setBatchCooking(this.maxBatches, setupTime, batchTime);
+		kitchen.requestReview();
+		this.notifyUpdate();
+	}
+
+	public int getMaxBatches() { return this.maxBatches; }
+
+	public long getBatchSetupTime() { return this.batchSetupTime; }
+
+	public long getBatchTime() { return this.batchTime; }
+
+	// setMakeToOrder(boolean): Sets whether the kitchen prepares the dishes an order is short of as soon as it is accepted, oldest order first, as well as restocking to the thresholds.
+	public void setMakeToOrder(boolean makeToOrder) {
+		this.makeToOrder = makeToOrder;
+		kitchen.setMakeToOrder(makeToOrder);
+		this.notifyUpdate();
+	}
+
+	public boolean isMakeToOrder() { return this.makeToOrder; }
+
+	// getProjectedCapacity(int): Returns the number of dishes the kitchen is expected to be able to prepare in each of the passed number of hours from now.
+	public double[] getProjectedCapacity(int hours) { return kitchen.getProjectedCapacity(hours); }
+
+	// setChargingBays(int): Sets the number of drones that can recharge at the restaurant at the same time.
+	public void setChargingBays(int bays) {
+		chargingBays = Math.max(bays, 1);
+		chargingStation.setBays(chargingBays);
+		this.notifyUpdate();
+	}
+
+	public int getChargingBays() { return this.chargingBays; }
+
+	// getDistances(): Returns the DistanceMatrix shared by every planner on the server.
+	public DistanceMatrix getDistances() { return this.distances; }
+
+	// getSpatialIndex(): Returns the SpatialIndex over every postcode on the server, for finding nearby postcodes.
+	public SpatialIndex getSpatialIndex() { return this.spatialIndex; }
+
+	// getPositionFeed(): Returns the latest positions of every order that is currently out for delivery.
+	public PositionFeed getPositionFeed() { return telemetry.getPositionFeed(); }
+
+	// getOrderCustomers(): Returns the index of order IDs to the User that placed them.
+	public Map<String, User> getOrderCustomers() { return this.customers; }
+
+	// cancelDemand(Order): Takes a cancelled order back out of the demand forecast and the heatmap, so that it no longer raises the restock thresholds.
+	public void cancelDemand(Order order) {
+		forecast.cancel(order);
+		User customer = customers.get(order.getId());
+		if (customer != null && customer.getPostcode() != null)
+			forecast.getHeatmap().remove(customer.getPostcode(), order.getPlacedAt());
+	}
+
+	// queueOrder(Order): Gives the order its delivery deadline, counts it on the demand heatmap, queues it with the dispatcher to be sent out once it is ready, and asks
+	// the kitchen to plan for it.
+	public void queueOrder(Order order) {
+		order.setDeadline(order.getPlacedAt() + deliverySla);
+		User customer = customers.get(order.getId());
+		if (customer != null && customer.getPostcode() != null)
+			forecast.getHeatmap().record(customer.getPostcode(), order.getPlacedAt());
+		dispatcher.addOrder(order);
+		kitchen.orderChanged(order);
+	}
+
+	public Dispatcher getDispatcher() { return this.dispatcher; }
+
+	// setDispatchPolicy(String): Changes the policy used to decide which order is delivered next, throwing a NoSuchElementException if there is no policy with that name.
+	public void setDispatchPolicy(String name) throws NoSuchElementException {
+		DispatchPolicy policy = DispatchPolicies.forName(name);
+		dispatchPolicy = policy.getName();
+		dispatcher.setPolicy(policy);
+		this.notifyUpdate();
+	}
+
+	public String getDispatchPolicy() { return this.dispatchPolicy; }
+
+	// setDeliverySla(long): Sets how long after being placed (in milliseconds) orders are due to be delivered, which deadline driven policies dispatch by. Orders already
+	// placed keep their deadline.
+	public void setDeliverySla(long deliverySla) {
+		this.deliverySla = Math.max(deliverySla, 0);
+		this.notifyUpdate();
+	}
+
+	public long getDeliverySla() { return this.deliverySla; }
+
+	// setTravelTimeModel(String): Changes the model drones' flights are costed with, working out every distance again, throwing a NoSuchElementException if there is no
+	// model with that name.
+	public void setTravelTimeModel(String name) throws NoSuchElementException {
+		TravelTimeModel model = TravelTimeModels.forName(name);
+		travelTimeModel = model.getName();
+		distances.setModel(model);
+		dispatcher.remeasure();
+		updateServiceArea();
+		this.notifyUpdate();
+	}
+
+	public String getTravelTimeModel() { return this.travelTimeModel; }
+
+	// getDeliveryDistance(Order): Returns the distance from the restaurant to the customer of the passed order, or 0 if the customer is unknown.
+	private double getDeliveryDistance(Order order) {
+		User customer = customers.get(order.getId());
+
+		if (customer == null || restaurant == null)
+			return 0.0;
+
+		return distances.getDistance(restaurant.getLocation(), customer.getPostcode());
+	}
+
+	// watchIngredient(Ingredient): Signals the idle drones whenever the available stock of the ingredient drops below its forecast threshold.
+	private void watchIngredient(Ingredient ingredient) {
+		stock.subscribe(ingredient, () -> forecast.getThreshold(ingredient), event -> {
+			if (event.getAvailable() < event.getPrevious())
+				dispatcher.signal();
+		});
+	}
+
+	// indexOrder(Order, User): Records the passed User as the customer of the order, so that drones can find them without scanning every user.
+	public void indexOrder(Order order, User customer) { customers.put(order.getId(), customer); }
+
 	// recoverServer(Server): Method that sets the server up according to the passed server object.
 	private void recoverServer(Server recoveredServer)
 	{
 		restaurant = recoveredServer.getRestaurant();
 		dishes = recoveredServer.getDishes();
+		stock = recoveredServer.getStock();
+		stock.clearReservations();
+		orders = recoveredServer.getOrders();
+
+		// The stock history and demand forecast are backed up less often than the rest of the server, in a file of their own.
+		DemandForecast recoveredForecast = dataPersistence.recoverHistory(stock);
+
+		if (recoveredForecast != null)
+			forecast = recoveredForecast;
+
+		maxBatches = recoveredServer.getMaxBatches();
+		batchSetupTime = recoveredServer.getBatchSetupTime();
+		batchTime = recoveredServer.getBatchTime();
+		makeToOrder = recoveredServer.isMakeToOrder();
+		startKitchen();
+
+		// Rebuild the DistanceMatrix from the recovered postcodes before any drone starts flying.
+		travelTimeModel = recoveredServer.getTravelTimeModel();
+		distances.setModel(TravelTimeModels.forName(travelTimeModel));
+		postcodes = recoveredServer.getPostcodes();
+		postcodes.forEach(postcode -> postcodeIndex.putIfAbsent(postcode, postcode));
+		postcodes.forEach(distances::addPostcode);
+		postcodes.forEach(spatialIndex::addPostcode);
+
 		drones = recoveredServer.getDrones();
+		chargingBays = recoveredServer.getChargingBays();
+		chargingStation.setBays(chargingBays);
+		serviceRadius = recoveredServer.getServiceRadius();
+		serviceRingWidth = recoveredServer.getServiceRingWidth();
+		updateServiceArea();
 
-		// For each Drone object, pass the ServerComms and DataPersistence objects to it and then start the thread, putting it in the droneThreads Map.
+		// For each Drone object, pass the ServerComms, DemandForecast, ChargingStation, DistanceMatrix, Dispatcher and DataPersistence objects to it and then start the thread, putting it in the droneThreads Map.
 		for (Drone drone : drones)
 		{
-			drone.recoverDrone(comms, dataPersistence);
+			drone.recoverDrone(comms, forecast, chargingStation, distances, dispatcher, dataPersistence);
+			telemetry.register(drone);
 
 			Thread thread = new Thread(drone);
 			thread.setName(drone.getName());
@@ -530,21 +890,28 @@ public class Server implements ServerInterface, Serializable {
 		}
 
 		ingredients = recoveredServer.getIngredients();
-		orders = recoveredServer.getOrders();
+		ingredients.forEach(this::watchIngredient);
+		customers = recoveredServer.getOrderCustomers();
+		dispatchPolicy = recoveredServer.getDispatchPolicy();
+		deliverySla = recoveredServer.getDeliverySla();
+		dispatcher.setPolicy(DispatchPolicies.forName(dispatchPolicy));
 
-		// For each Order object, reset the order if it was out for delivery when the server crashed.
+		// For each Order object, reset the order if it was out for delivery when the server crashed, and queue it with the dispatcher if it is still to be delivered.
 		for (Order order : orders)
 		{
 			if (order.isOutForDelivery())
 				order.resetOrder();
+
+			if (!order.isComplete() && !order.isCancelled())
+				dispatcher.addOrder(order);
 		}
 
 		staff = recoveredServer.getStaff();
 
-		// For each Staff object, pass the DataPersistence object to it and then start the thread, putting it in the staffThreads Map.
+		// For each Staff object, pass the Kitchen and DataPersistence objects to it and then start the thread, putting it in the staffThreads Map.
 		for (Staff staff : staff)
 		{
-			staff.recoverStaff(dataPersistence);
+			staff.recoverStaff(kitchen, dataPersistence);
 
 			Thread thread = new Thread(staff);
 			thread.setName(staff.getName());
@@ -554,8 +921,20 @@ public class Server implements ServerInterface, Serializable {
 
 		suppliers = recoveredServer.getSuppliers();
 		users = recoveredServer.getUsers();
-		postcodes = recoveredServer.getPostcodes();
-		stock = recoveredServer.getStock();
+	}
+
+	// startKitchen(): Creates the Kitchen for the current stock, dishes, orders and forecast, and starts the thread that schedules the preparation of dishes.
+	private void startKitchen()
+	{
+		kitchen = new Kitchen(stock, dishes, orders, forecast);
+		kitchen.setBatchCooking(maxBatches, batchSetupTime, batchTime);
+		kitchen.setMakeToOrder(makeToOrder);
+		stock.addListener(kitchen);
+
+		Thread thread = new Thread(kitchen);
+		thread.setName("Kitchen");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 	// interruptThreads(): Function that interrupts all staff and drone threads, and then clears the Map objects that keep track of them.
@@ -7,13 +7,22 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 // ServerComms class: Handles the server-side communications between the clients and the server.
+// Each connection has its own write lock, so a message to one client is written in one piece without holding up the server or the other clients.
 public class ServerComms extends Thread implements Comms
 {
+    private static final Logger logger = LogManager.getLogger("ServerComms");
     private static final int PORT_NUMBER = 2066;
+    // Both maps are guarded by the lock of serverListeners, and copied before anything is sent so that no client is written to while holding it.
     private final Map<ServerListener, User> serverListeners = new HashMap<>();
+    private final Map<ServerListener, Set<String>> trackedOrders = new HashMap<>();
     private ServerSocket serverSocket;
     private final Server server;
 
@@ -47,7 +56,12 @@ public class ServerComms extends Thread implements Comms
 
                 // Create a new ServerListener for each connection to handle any messages received from that client.
                 ServerListener serverListener = new ServerListener(this, input, output);
-                serverListeners.put(serverListener, null);
+
+                synchronized (serverListeners)
+                {
+                    serverListeners.put(serverListener, null);
+                }
+
                 serverListener.start();
             }
         }
@@ -134,114 +148,142 @@ public class ServerComms extends Thread implements Comms
             return input;
         }
 
-        private ObjectOutputStream getOutputStream()
+        // send(Object...): Writes the passed objects to the client as one message, holding the lock of this connection so that messages sent by different threads
+        // never interleave.
+        private void send(Object... objects) throws IOException
         {
-            return output;
+            synchronized (output)
+            {
+                for (Object object : objects)
+                {
+                    output.writeObject(object);
+                }
+
+                // Reset the ObjectOutputStream in order to ensure changes to objects update correctly.
+                output.reset();
+            }
+        }
+    }
+
+    // getServerListeners(): Returns a copy of the connected clients and the users logged in on them, so that they can be sent to without holding the lock of the map.
+    private Map<ServerListener, User> getServerListeners()
+    {
+        synchronized (serverListeners)
+        {
+            return new HashMap<>(serverListeners);
         }
     }
 
     // sendMessage(String, Model): Sends the passed message and object to all currently connected clients.
     public void sendMessage(String message, Model model)
     {
-        // Synchronize the server so a conflict cannot occur.
-        synchronized (server)
+        message = message.toUpperCase().trim();
+        Object[] objects;
+
+        // Select the correct command, and the data to send to the client with it.
+        switch (message)
         {
-            message = message.toUpperCase().trim();
+            case "ADD DISH":
+            case "EDIT DISH":
+            case "REMOVE DISH":
+                objects = new Object[] { message, (Dish)model };
+                break;
 
-            try
-            {
-                for (Map.Entry entry : serverListeners.entrySet()) {
-                    ServerListener serverListener = (ServerListener) entry.getKey();
-                    ObjectOutputStream output = serverListener.getOutputStream();
+            case "ADD POSTCODE":
+            case "EDIT POSTCODE":
+            case "REMOVE POSTCODE":
+                objects = new Object[] { message, (Postcode)model };
+                break;
 
-                    // Write the message to tell the client what data to expect and what to do with it.
-                    output.writeObject(message);
+            case "ADD USER":
+            case "REMOVE USER":
+                objects = new Object[] { message, (User)model };
+                break;
 
-                    // Select the correct command, and send the data to the client.
-                    switch (message)
-                    {
-                        case "ADD DISH":
-                        case "EDIT DISH":
-                        case "REMOVE DISH":
-                            output.writeObject((Dish)model);
-                            break;
-
-                        case "ADD POSTCODE":
-                        case "EDIT POSTCODE":
-                        case "REMOVE POSTCODE":
-                            output.writeObject((Postcode)model);
-                            break;
-
-                        case "ADD USER":
-                        case "REMOVE USER":
-                            output.writeObject((User)model);
-                            break;
-
-                        // The message alone will suffice.
-                        case "CLEAR DATA":
-                            break;
-
-                        default:
-                            throw new IOException("Attempting to send unrecognised command - " + message);
-                    }
+            // The message alone will suffice.
+            case "CLEAR DATA":
+                objects = new Object[] { message };
+                break;
 
-                    // Reset the ObjectOutputStream in order to ensure changes to objects update correctly.
-                    output.reset();
-                }
-            }
-            catch (IOException ex)
-            {
-                ex.printStackTrace();
-            }
+            default:
+                logger.error("Attempting to send unrecognised command - " + message);
+                return;
+        }
+
+        for (ServerListener serverListener : getServerListeners().keySet())
+        {
+            send(serverListener, objects);
         }
     }
 
     // sendMessage(String, Model, User): Sends the message and the model to the client of the user specified.
     public void sendMessage(String message, Model model, User user)
     {
-        // Synchronize the server so a conflict cannot occur.
-        synchronized (server)
+        message = message.toUpperCase().trim();
+        Object[] objects;
+
+        // Select the correct command, and the data to send to the client with it.
+        switch (message)
         {
-            message = message.toUpperCase().trim();
+            case "CHANGE ORDER STATUS":
+            case "COMPLETE ORDER":
+                objects = new Object[] { message, (Order)model };
+                break;
 
-            try
-            {
-                for (Map.Entry entry : serverListeners.entrySet()) {
-                    User loggedInUser = (User) entry.getValue();
-
-                    // If no one is logged in yet, continue.
-                    if (loggedInUser == null)
-                        continue;
-
-                    // If the loggedInUser of the client is equal to the user we want to send the message and data to, continue.
-                    if (loggedInUser.getName().equals(user.getName())) {
-                        ServerListener serverListener = (ServerListener) entry.getKey();
-                        ObjectOutputStream output = serverListener.getOutputStream();
-
-                        // Write the message to tell the client what data to expect and what to do with it.
-                        output.writeObject(message);
-
-                        // Select the correct command, and send the data to the client.
-                        switch (message)
-                        {
-                            case "CHANGE ORDER STATUS":
-                            case "COMPLETE ORDER":
-                                output.writeObject((Order)model);
-                                break;
-
-                            default:
-                                throw new IOException("Attempting to send unrecognised command - " + message);
-                        }
-
-                        // Reset the ObjectOutputStream in order to ensure changes to objects update correctly.
-                        output.reset();
-                    }
-                }
-            }
-            catch (IOException ex)
-            {
-                ex.printStackTrace();
-            }
+            default:
+                logger.error("Attempting to send unrecognised command - " + message);
+                return;
+        }
+
+        for (Map.Entry<ServerListener, User> entry : getServerListeners().entrySet())
+        {
+            User loggedInUser = entry.getValue();
+
+            // If the loggedInUser of the client is equal to the user we want to send the message and data to, send it.
+            if (loggedInUser != null && loggedInUser.getName().equals(user.getName()))
+                send(entry.getKey(), objects);
+        }
+    }
+
+    // sendServiceArea(ServiceArea): Sends every client the passed ServiceArea, so that they can quote delivery times.
+    public void sendServiceArea(ServiceArea serviceArea)
+    {
+        for (ServerListener serverListener : getServerListeners().keySet())
+        {
+            send(serverListener, "SERVICE AREA", serviceArea);
+        }
+    }
+
+    // sendPositions(PositionFeed): Sends each client the positions of the orders it is tracking from the passed feed, as a single batch.
+    public void sendPositions(PositionFeed feed)
+    {
+        Map<ServerListener, Set<String>> tracked = new HashMap<>();
+
+        synchronized (serverListeners)
+        {
+            trackedOrders.forEach((serverListener, orders) -> tracked.put(serverListener, new HashSet<>(orders)));
+        }
+
+        for (Map.Entry<ServerListener, Set<String>> entry : tracked.entrySet())
+        {
+            PositionFeed clientFeed = feed.filter(entry.getValue());
+
+            // If none of the orders the client is tracking are out for delivery, continue.
+            if (clientFeed.size() > 0)
+                send(entry.getKey(), "DRONE POSITIONS", clientFeed);
+        }
+    }
+
+    // send(ServerListener, Object...): Sends the passed objects to a single client, so that a client that has gone away doesn't stop the others being sent to.
+    private void send(ServerListener serverListener, Object... objects)
+    {
+        try
+        {
+            serverListener.send(objects);
+        }
+        catch (IOException ex)
+        {
+            logger.error("Unable to send " + objects[0] + " to a client: " + ex.getMessage());
         }
     }
 
@@ -256,13 +298,12 @@ public class ServerComms extends Thread implements Comms
             try
             {
                 ObjectInputStream input = serverListener.getInputStream();
-                ObjectOutputStream output = serverListener.getOutputStream();
 
                 // Based on the message, decide what to do with the passed data.
                 switch (message)
                 {
                     case "LOAD DATA":
-                        loadData(output);
+                        loadData(serverListener);
                         break;
 
                     case "LOGIN":
@@ -281,6 +322,10 @@ public class ServerComms extends Thread implements Comms
                         cancelOrder(input);
                         break;
 
+                    case "TRACK ORDER":
+                        trackOrder(serverListener);
+                        break;
+
                     default:
                         throw new IOException("Unrecognised message received - " + message);
                 }
@@ -298,45 +343,72 @@ public class ServerComms extends Thread implements Comms
         }
     }
 
-    // loadData(ObjectOutputStream): Send across the Restaurant, Postcode, Dish and User data to the client.
-    private void loadData(ObjectOutputStream output) throws IOException
+    // loadData(ServerListener): Send across the Restaurant, Postcode, Dish and User data to the client, as one message so that nothing else is sent to it part way through.
+    private void loadData(ServerListener serverListener) throws IOException
     {
-        output.writeObject(server.getRestaurant());
-        output.writeObject(server.getPostcodes());
-        output.writeObject(server.getDishes());
-        output.writeObject(server.getUsers());
+        serverListener.send(server.getRestaurant(), server.getPostcodes(), server.getDishes(), server.getUsers(), server.getServiceArea());
     }
 
     // login(ServerListener): Associate the passed ServerListener to the read User object in the serverListeners map, so that data can be sent to a specific client at a later point.
     private void login(ServerListener serverListener) throws ClassNotFoundException, IOException
     {
-        ObjectInputStream input = serverListener.getInputStream();
-        serverListeners.put(serverListener, (User)input.readObject());
+        User user = (User)serverListener.getInputStream().readObject();
+
+        synchronized (serverListeners)
+        {
+            serverListeners.put(serverListener, user);
+        }
     }
 
-    // register(ObjectInputStream): Add the passed User object to the list of users on the server.
+    // register(ObjectInputStream): Add the passed User object to the list of users on the server, unless they are outside of the service area, in which case the client
+    // is told that the registration was rejected.
     private void register(ObjectInputStream input, ServerListener serverListener) throws ClassNotFoundException, IOException
     {
         User user = (User)input.readObject();
+
+        // The client checks the service area before registering, so this only happens if it changed in the meantime.
+        if (!server.isInServiceArea(user.getPostcode()))
+        {
+            logger.warn("Unable to register user \"" + user.getName() + "\" as " + user.getPostcode().getName() + " is outside of the service area.");
+            rejectRegistration(serverListener, user);
+            return;
+        }
+
         server.getUsers().add(user);
-        serverListeners.put(serverListener, user);
+
+        synchronized (serverListeners)
+        {
+            serverListeners.put(serverListener, user);
+        }
+    }
+
+    // rejectRegistration(ServerListener, User): Tells the client of the passed ServerListener that the user it registered was rejected, so that it can undo the registration.
+    private void rejectRegistration(ServerListener serverListener, User user) throws IOException
+    {
+        serverListener.send("REGISTRATION REJECTED", user);
     }
 
     // newOrder(ObjectInputStream): Add the passed Order object to the list of orders on the server, and associate the order to the logged in user in the list of users.
     private void newOrder(ObjectInputStream input) throws ClassNotFoundException, IOException
     {
         Order order = (Order)input.readObject();
-        server.getOrders().add(order);
         User user = (User)input.readObject();
 
         for (User u : server.getUsers())
         {
             if (u.getName().equals(user.getName()))
             {
+                // Index the customer before the order becomes visible to the drones.
+                server.indexOrder(order, u);
                 u.getOrders().add(order);
                 break;
             }
         }
+
+        // Add the order to the list before queueing it, so that the kitchen can plan for it straight away.
+        server.getForecast().record(order);
+        server.getOrders().add(order);
+        server.queueOrder(order);
     }
 
     // cancelOrder(ObjectInputStream): Removes and re-adds the passed order so that it's status is updated to "Cancelled", then does the same to the order in the User object.
@@ -347,13 +419,18 @@ public class ServerComms extends Thread implements Comms
 
         for (Order o : server.getOrders())
         {
-            if (o.getName().equals(order.getName()))
+            if (o.getId().equals(order.getId()))
             {
                 serverOrder = o;
             }
         }
 
+        if (serverOrder != null && !serverOrder.isCancelled())
+            server.cancelDemand(serverOrder);
+
         server.getOrders().remove(serverOrder);
+        server.getDispatcher().removeOrder(serverOrder);
+        server.getStock().cancelWatch(order.getId());
         server.getOrders().add(order);
 
         User user = (User)input.readObject();
@@ -362,6 +439,7 @@ public class ServerComms extends Thread implements Comms
         {
             if (u.getName().equals(user.getName()))
             {
+                server.indexOrder(order, u);
                 u.getOrders().remove(serverOrder);
                 u.getOrders().add(order);
                 break;
@@ -369,9 +447,24 @@ public class ServerComms extends Thread implements Comms
         }
     }
 
-    // removeServerListener(ServerListener): Removes the specified ServerListener object from the serverListeners map.
+    // trackOrder(ServerListener): Subscribes the passed ServerListener to the position feed of the read Order object.
+    private void trackOrder(ServerListener serverListener) throws ClassNotFoundException, IOException
+    {
+        Order order = (Order)serverListener.getInputStream().readObject();
+
+        synchronized (serverListeners)
+        {
+            trackedOrders.computeIfAbsent(serverListener, l -> new HashSet<>()).add(order.getId());
+        }
+    }
+
+    // removeServerListener(ServerListener): Removes the specified ServerListener object from the serverListeners and trackedOrders maps.
     public void removeServerListener(ServerListener serverListener)
     {
-        serverListeners.remove(serverListener);
+        synchronized (serverListeners)
+        {
+            serverListeners.remove(serverListener);
+            trackedOrders.remove(serverListener);
+        }
     }
 }
\ No newline at end of file
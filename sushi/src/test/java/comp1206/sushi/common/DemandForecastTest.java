@@ -0,0 +1,131 @@
+package comp1206.sushi.common;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class DemandForecastTest extends TestCase
+{
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // The start of an hour, which every test starts at.
+    private static final long START = (1700000000000L / HOUR) * HOUR;
+
+    private final DemandForecast forecast = new DemandForecast();
+    private final Ingredient rice = new Ingredient("Rice", "grams", new Supplier("Rice Supplier", null), 5, 10, 1);
+    private final Ingredient salmon = new Ingredient("Salmon", "grams", new Supplier("Fish Supplier", null), 0, 10, 1);
+    private final Dish nigiri = dish("Nigiri", 2, 3, 2, 1);
+    private final Dish roll = dish("Roll", 2, 3, 1, 0);
+    private long now = START;
+
+    protected void setUp() { forecast.setClock(() -> now); }
+
+    public void testDemandIsAveragedByHourOfDay()
+    {
+        forecast.record(nigiri, 10);
+
+        // Once the hour is over, a share of it is expected at the same time the next day, and nothing at any other time.
+        now = START + DAY;
+        assertEquals(3.0, forecast.getDemand(nigiri, HOUR), 1e-9);
+        assertEquals(3.0, forecast.getDemand(nigiri, 2 * HOUR), 1e-9);
+        assertEquals(1.5, forecast.getDemand(nigiri, 30 * MINUTE), 1e-9);
+
+        now = START + (12 * HOUR);
+        assertEquals(0.0, forecast.getDemand(nigiri, HOUR), 1e-9);
+
+        // The next day's orders are folded in with the same weight.
+        now = START + DAY;
+        forecast.record(nigiri, 20);
+        now = START + (2 * DAY);
+        assertEquals((0.3 * 20) + (0.7 * 3), forecast.getDemand(nigiri, HOUR), 1e-9);
+    }
+
+    public void testCurrentHourExpectsAtLeastWhatHasBeenOrdered()
+    {
+        forecast.record(nigiri, 10);
+
+        now = START + DAY + (30 * MINUTE);
+        forecast.record(nigiri, 5);
+
+        assertEquals(2.5, forecast.getDemand(nigiri, 30 * MINUTE), 1e-9);
+    }
+
+    public void testIngredientsFollowTheRecipes()
+    {
+        forecast.record(nigiri, 10);
+        forecast.record(roll, 10);
+
+        now = START + DAY;
+        assertEquals(0.3 * 30, forecast.getDemand(rice, HOUR), 1e-9);
+        assertEquals(0.3 * 10, forecast.getDemand(salmon, HOUR), 1e-9);
+    }
+
+    public void testThresholdsAndBatchesAreRaisedAheadOfDemand()
+    {
+        // Nothing has been ordered yet, so the configured thresholds and restock amounts stand.
+        assertEquals(2, forecast.getThreshold(nigiri));
+        assertEquals(3, forecast.getBatchSize(nigiri));
+        assertEquals(5, forecast.getThreshold(rice));
+        assertEquals(10, forecast.getBatchSize(rice));
+
+        // 60 nigiri an hour is 15 over the 15 minutes it takes to prepare more, in batches of at least a quarter of that.
+        forecast.record(nigiri, 200);
+        now = START + DAY;
+
+        assertEquals(15, forecast.getThreshold(nigiri));
+        assertEquals(6, forecast.getBatchSize(nigiri));
+
+        // 120 grams of rice an hour is 60 over the 30 minutes it takes a drone to fetch more.
+        assertEquals(60, forecast.getThreshold(rice));
+        assertEquals(20, forecast.getBatchSize(rice));
+    }
+
+    public void testCancelledDishesAreTakenBackOut()
+    {
+        // Cancelled during the hour they were ordered in.
+        forecast.record(nigiri, 10);
+        forecast.cancel(nigiri, 4, START);
+
+        now = START + DAY;
+        assertEquals(0.3 * 6, forecast.getDemand(nigiri, HOUR), 1e-9);
+        assertEquals(0.3 * 12, forecast.getDemand(rice, HOUR), 1e-9);
+
+        // Cancelled after their hour was folded into the average.
+        forecast.record(roll, 10);
+        now = START + DAY + (2 * HOUR);
+        forecast.cancel(roll, 10, START + DAY);
+        now = START + (2 * DAY);
+
+        assertEquals(0.0, forecast.getDemand(roll, HOUR), 1e-9);
+    }
+
+    public void testForgottenDishesNoLongerRaiseTheirIngredients()
+    {
+        forecast.record(nigiri, 10);
+        forecast.record(roll, 10);
+
+        now = START + DAY;
+        forecast.forget(nigiri);
+
+        assertEquals(0.0, forecast.getDemand(nigiri, HOUR), 1e-9);
+        assertEquals(0.3 * 10, forecast.getDemand(rice, HOUR), 1e-9);
+        assertEquals(0.0, forecast.getDemand(salmon, HOUR), 1e-9);
+        assertEquals(0.3 * 10, forecast.getDemand(roll, HOUR), 1e-9);
+    }
+
+    private Dish dish(String name, int restockThreshold, int restockAmount, int riceAmount, int salmonAmount)
+    {
+        Dish dish = new Dish(name, "", 1, restockThreshold, restockAmount);
+        Map<Ingredient, Number> recipe = new HashMap<>();
+        recipe.put(rice, riceAmount);
+
+        if (salmonAmount > 0)
+            recipe.put(salmon, salmonAmount);
+
+        dish.setRecipe(recipe);
+        return dish;
+    }
+}
@@ -0,0 +1,128 @@
+package comp1206.sushi.common;
+
+import comp1206.sushi.mock.SyntheticConfiguration;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class DemandHeatmapTest extends TestCase
+{
+    private final DemandHeatmap heatmap = new DemandHeatmap();
+    private final long now = System.currentTimeMillis();
+    private final int hour = DemandForecast.hourOfDay(now);
+
+    protected void setUp() { Geocoders.setDefault(Geocoders.SYNTHETIC); }
+
+    protected void tearDown() { Geocoders.setDefault(null); }
+
+    public void testCountsOrdersByCellAndHour()
+    {
+        Postcode busy = postcode(2000);
+        Postcode quiet = postcode(2001);
+
+        for (int i = 0; i < 3; i++)
+        {
+            heatmap.record(busy, now);
+        }
+
+        heatmap.record(quiet, now);
+
+        assertEquals(4, heatmap.getTotal(hour));
+        assertEquals(4, heatmap.getTotal(DemandHeatmap.ALL_HOURS));
+        assertEquals(0, heatmap.getTotal((hour + 1) % 24));
+        assertEquals(heatmap.getCount(busy, hour), heatmap.getCount(busy, DemandHeatmap.ALL_HOURS));
+        assertTrue(heatmap.getCount(busy, hour) >= 3);
+
+        List<DemandHeatmap.Cell> hotspots = heatmap.getHotspots(hour, 1);
+
+        assertEquals(1, hotspots.size());
+        assertEquals(heatmap.getCount(busy, hour), hotspots.get(0).getCount());
+        assertEquals(busy.getLatitude(), hotspots.get(0).getLatitude(), DemandHeatmap.CELL_SIZE / 2);
+        assertEquals(busy.getLongitude(), hotspots.get(0).getLongitude(), DemandHeatmap.CELL_SIZE / 2);
+    }
+
+    public void testRemoveTakesAnOrderBackOut()
+    {
+        Postcode postcode = postcode(2002);
+
+        heatmap.record(postcode, now);
+        heatmap.record(postcode, now);
+        heatmap.remove(postcode, now);
+
+        assertEquals(1, heatmap.getCount(postcode, hour));
+        assertEquals(1, heatmap.getTotal(DemandHeatmap.ALL_HOURS));
+
+        // Removing more than was recorded never takes the counts below zero.
+        heatmap.remove(postcode, now);
+        heatmap.remove(postcode, now);
+
+        assertEquals(0, heatmap.getCount(postcode, hour));
+        assertEquals(0, heatmap.getTotal(hour));
+        assertTrue(heatmap.getHeatmap(hour).isEmpty());
+    }
+
+    public void testGrowsPastItsInitialCells()
+    {
+        Set<String> cells = new HashSet<>();
+
+        for (int i = 3000; i < 3300; i++)
+        {
+            Postcode postcode = postcode(i);
+            heatmap.record(postcode, now);
+            cells.add(Math.floor(postcode.getLatitude() / DemandHeatmap.CELL_SIZE) + "," + Math.floor(postcode.getLongitude() / DemandHeatmap.CELL_SIZE));
+        }
+
+        assertTrue(cells.size() > 64);
+        assertEquals(cells.size(), heatmap.size());
+        assertEquals(300, heatmap.getTotal(DemandHeatmap.ALL_HOURS));
+
+        List<DemandHeatmap.Cell> cellsByCount = heatmap.getHeatmap(DemandHeatmap.ALL_HOURS);
+        int total = 0;
+
+        for (int i = 0; i < cellsByCount.size(); i++)
+        {
+            total += cellsByCount.get(i).getCount();
+
+            if (i > 0)
+                assertTrue(cellsByCount.get(i - 1).getCount() >= cellsByCount.get(i).getCount());
+        }
+
+        assertEquals(300, total);
+
+        heatmap.clear();
+
+        assertEquals(0, heatmap.size());
+        assertEquals(0, heatmap.getTotal(DemandHeatmap.ALL_HOURS));
+    }
+
+    public void testReachCoversTheRequestedShareOfOrders()
+    {
+        Postcode origin = postcode(4000);
+
+        assertEquals(0.0, heatmap.getReach(origin, hour, 0.5), 0.0);
+
+        heatmap.record(origin, now);
+
+        // The only order came from the origin's own cell, so it is within half a cell's diagonal.
+        assertTrue(heatmap.getReach(origin, hour, 1.0) < 800);
+
+        for (int i = 4001; i < 4100; i++)
+        {
+            heatmap.record(postcode(i), now);
+        }
+
+        double half = heatmap.getReach(origin, hour, 0.5);
+        double all = heatmap.getReach(origin, hour, 1.0);
+
+        assertTrue(half > 0);
+        assertTrue(half <= all);
+    }
+
+    private static Postcode postcode(int index)
+    {
+        return PostcodeRegistry.getDefault().intern(SyntheticConfiguration.postcode(index));
+    }
+}
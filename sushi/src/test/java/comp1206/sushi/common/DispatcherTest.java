@@ -0,0 +1,204 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+public class DispatcherTest extends TestCase
+{
+    private final Dish dish = new Dish("Salmon Nigiri", "", 3, 0, 1);
+    private final Map<Order, Double> distances = new IdentityHashMap<>();
+
+    private Order first;
+    private Order second;
+    private Order third;
+
+    protected void setUp() throws InterruptedException
+    {
+        // Each order is placed a little after the last.
+        first = order(300);
+        Thread.sleep(5);
+        second = order(100);
+        Thread.sleep(5);
+        third = order(200);
+
+        long now = System.currentTimeMillis();
+        first.setDeadline(now + 2000);
+        second.setDeadline(now + 3000);
+        third.setDeadline(now + 1000);
+    }
+
+    public void testFifoDispatchesInPlacementOrder()
+    {
+        assertEquals(Arrays.asList(first, second, third), dispatchAll(DispatchPolicies.FIFO));
+    }
+
+    public void testEdfDispatchesTheEarliestDeadlineFirst()
+    {
+        assertEquals(Arrays.asList(third, first, second), dispatchAll(DispatchPolicies.EARLIEST_DEADLINE));
+    }
+
+    public void testSdfDispatchesTheShortestDeliveryFirst()
+    {
+        assertEquals(Arrays.asList(second, third, first), dispatchAll(DispatchPolicies.SHORTEST_DISTANCE));
+    }
+
+    public void testChangingPolicyReordersTheQueue()
+    {
+        Dispatcher dispatcher = dispatcher(DispatchPolicies.FIFO);
+        dispatcher.setPolicy(DispatchPolicies.SHORTEST_DISTANCE);
+
+        assertEquals(Arrays.asList(second, third, first), offered(dispatcher));
+
+        // Distances changing only re-orders the queue once it is remeasured.
+        distances.put(first, 10.0);
+        assertEquals(Arrays.asList(second, third, first), offered(dispatcher));
+
+        dispatcher.remeasure();
+        assertEquals(Arrays.asList(first, second, third), offered(dispatcher));
+    }
+
+    public void testWaitingReprioritisesAsOrdersWait() throws InterruptedException
+    {
+        // A delivery that has been waiting a while, and one half as long that has only just been placed.
+        Order longDelivery = order(40);
+        Thread.sleep(600);
+        Order shortDelivery = order(20);
+
+        Dispatcher dispatcher = new Dispatcher(DispatchPolicies.WAITING_TIME, distances::get);
+        dispatcher.addOrder(shortDelivery);
+        dispatcher.addOrder(longDelivery);
+
+        assertEquals(Arrays.asList(longDelivery, shortDelivery), offered(dispatcher));
+
+        // Waiting is worth twice as much against the shorter delivery once the priorities are worked out again.
+        Thread.sleep(1100);
+        assertEquals(Arrays.asList(shortDelivery, longDelivery), offered(dispatcher));
+    }
+
+    public void testRejectedOrdersStayQueuedAndUnclaimed()
+    {
+        Dispatcher dispatcher = dispatcher(DispatchPolicies.FIFO);
+
+        assertEquals(Arrays.asList(first, second, third), offered(dispatcher));
+        assertEquals(3, dispatcher.size());
+
+        // Even a predicate that throws gives its claim up.
+        try
+        {
+            dispatcher.nextOrder(order -> { throw new IllegalStateException(); });
+            fail();
+        }
+        catch (IllegalStateException ex)
+        {
+            // Expected.
+        }
+
+        assertEquals(Arrays.asList(first, second, third), offered(dispatcher));
+    }
+
+    public void testClaimedOrdersAreHiddenFromOtherDrones()
+    {
+        Dispatcher dispatcher = dispatcher(DispatchPolicies.FIFO);
+        List<Order> seenByOther = new ArrayList<>();
+
+        // While the first drone is deciding on the first order, another drone takes the next one.
+        Order taken = dispatcher.nextOrder(order -> {
+            seenByOther.add(dispatcher.nextOrder(other -> true));
+            return true;
+        });
+
+        assertSame(first, taken);
+        assertEquals(Arrays.asList(second), seenByOther);
+        assertTrue(first.isOutForDelivery());
+        assertTrue(second.isOutForDelivery());
+        assertEquals(1, dispatcher.size());
+        assertEquals(2, dispatcher.getWaitTimes("FIFO").getCount());
+    }
+
+    public void testOrdersRemovedOrCancelledWhileClaimedAreNotDispatched()
+    {
+        Dispatcher dispatcher = dispatcher(DispatchPolicies.FIFO);
+
+        assertNull(dispatcher.nextOrder(order -> {
+            dispatcher.removeOrder(order);
+            return true;
+        }));
+        assertNull(dispatcher.nextOrder(order -> {
+            order.cancelOrder();
+            return true;
+        }));
+
+        assertFalse(first.isOutForDelivery());
+        assertFalse(second.isOutForDelivery());
+        assertEquals(Arrays.asList(third), offered(dispatcher));
+    }
+
+    public void testPoliciesAreFoundByName()
+    {
+        assertSame(DispatchPolicies.EARLIEST_DEADLINE, DispatchPolicies.forName(" edf "));
+        assertSame(DispatchPolicies.WAITING_TIME, DispatchPolicies.forName("WAITING"));
+
+        try
+        {
+            DispatchPolicies.forName("LIFO");
+            fail();
+        }
+        catch (NoSuchElementException ex)
+        {
+            // Expected.
+        }
+    }
+
+    private Dispatcher dispatcher(DispatchPolicy policy)
+    {
+        Dispatcher dispatcher = new Dispatcher(policy, distances::get);
+
+        // Queue them backwards, so that the order they come out in is down to the policy.
+        dispatcher.addOrder(third);
+        dispatcher.addOrder(second);
+        dispatcher.addOrder(first);
+
+        return dispatcher;
+    }
+
+    private List<Order> dispatchAll(DispatchPolicy policy)
+    {
+        Dispatcher dispatcher = dispatcher(policy);
+        List<Order> dispatched = new ArrayList<>();
+        Order order;
+
+        while ((order = dispatcher.nextOrder(o -> true)) != null)
+        {
+            dispatched.add(order);
+        }
+
+        return dispatched;
+    }
+
+    // offered(Dispatcher): Returns the orders offered to a drone that turns every one of them down, in the order they were offered.
+    private static List<Order> offered(Dispatcher dispatcher)
+    {
+        List<Order> offered = new ArrayList<>();
+
+        assertNull(dispatcher.nextOrder(order -> {
+            offered.add(order);
+            return false;
+        }));
+
+        return offered;
+    }
+
+    private Order order(double distance)
+    {
+        Order order = new Order();
+        order.getOrderedDishes().put(dish, 1);
+        distances.put(order, distance);
+        return order;
+    }
+}
@@ -0,0 +1,76 @@
+package comp1206.sushi.common;
+
+import comp1206.sushi.mock.SyntheticConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class DistanceMatrixTest extends TestCase
+{
+    private final DistanceMatrix matrix = new DistanceMatrix();
+
+    protected void setUp() { Geocoders.setDefault(Geocoders.SYNTHETIC); }
+
+    protected void tearDown() { Geocoders.setDefault(null); }
+
+    public void testGrowsPastItsInitialCapacity()
+    {
+        List<Postcode> postcodes = postcodes(0, 40);
+        postcodes.forEach(matrix::addPostcode);
+
+        assertEquals(40, matrix.size());
+        assertDistances(postcodes);
+    }
+
+    public void testRemovingMovesTheLastPostcodeIntoTheGap()
+    {
+        List<Postcode> postcodes = postcodes(100, 10);
+        postcodes.forEach(matrix::addPostcode);
+
+        matrix.removePostcode(postcodes.remove(3));
+        matrix.removePostcode(postcodes.remove(0));
+        matrix.removePostcode(postcodes.remove(postcodes.size() - 1));
+
+        assertEquals(7, matrix.size());
+        assertDistances(postcodes);
+
+        // A removed postcode is calculated on the fly rather than read from a stale row.
+        Postcode removed = PostcodeRegistry.getDefault().intern(SyntheticConfiguration.postcode(103));
+        assertEquals(removed.calculateDistance(postcodes.get(0)), matrix.getDistance(postcodes.get(0), removed), 0.01);
+    }
+
+    public void testAddingAPostcodeTwiceOnlyAddsItOnce()
+    {
+        Postcode postcode = PostcodeRegistry.getDefault().intern(SyntheticConfiguration.postcode(200));
+
+        matrix.addPostcode(postcode);
+        matrix.addPostcode(postcode);
+
+        assertEquals(1, matrix.size());
+    }
+
+    private void assertDistances(List<Postcode> postcodes)
+    {
+        for (Postcode source : postcodes)
+        {
+            for (Postcode destination : postcodes)
+            {
+                assertEquals(destination.calculateDistance(source), matrix.getDistance(source, destination), 0.01);
+            }
+        }
+    }
+
+    private static List<Postcode> postcodes(int first, int count)
+    {
+        List<Postcode> postcodes = new ArrayList<>();
+
+        for (int i = first; i < first + count; i++)
+        {
+            postcodes.add(PostcodeRegistry.getDefault().intern(SyntheticConfiguration.postcode(i)));
+        }
+
+        return postcodes;
+    }
+}
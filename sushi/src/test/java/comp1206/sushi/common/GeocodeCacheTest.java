@@ -0,0 +1,79 @@
+package comp1206.sushi.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import junit.framework.TestCase;
+
+public class GeocodeCacheTest extends TestCase
+{
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private final Function<String, double[]> lookup = code -> {
+        lookups.incrementAndGet();
+        return new double[] { 50.9, -1.4 };
+    };
+
+    public void testCachedPostcodesAreNotLookedUpAgain()
+    {
+        GeocodeCache cache = new GeocodeCache(null, 60000, 10);
+
+        cache.resolve("SO17 1BJ", lookup);
+        double[] latLong = cache.resolve("so17 1bj", lookup);
+
+        assertEquals(1, lookups.get());
+        assertEquals(50.9, latLong[0], 0.0);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.invalidate("SO17 1BJ");
+        cache.resolve("SO17 1BJ", lookup);
+
+        assertEquals(2, lookups.get());
+    }
+
+    public void testExpiredPostcodesAreLookedUpAgain()
+    {
+        GeocodeCache cache = new GeocodeCache(null, 0, 10);
+
+        cache.resolve("SO17 1BJ", lookup);
+        cache.resolve("SO17 1BJ", lookup);
+
+        assertEquals(2, lookups.get());
+        assertEquals(1, cache.getRefreshes());
+    }
+
+    public void testFailedRefreshReturnsTheExpiredLocation()
+    {
+        GeocodeCache cache = new GeocodeCache(null, 0, 10);
+
+        cache.resolve("SO17 1BJ", lookup);
+        double[] latLong = cache.resolve("SO17 1BJ", code -> null);
+
+        assertNotNull(latLong);
+        assertEquals(-1.4, latLong[1], 0.0);
+        assertEquals(1, cache.getStaleHits());
+        assertNull(cache.resolve("SO16 3QD", code -> null));
+    }
+
+    public void testLeastRecentlyUsedPostcodeIsEvicted()
+    {
+        GeocodeCache cache = new GeocodeCache(null, 60000, 2);
+
+        cache.resolve("SO17 1BJ", lookup);
+        cache.resolve("SO16 3QD", lookup);
+        cache.resolve("SO17 1BJ", lookup);
+        cache.resolve("SO15 2JY", lookup);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, lookups.get());
+
+        // SO17 1BJ was used more recently than SO16 3QD, so it should still be cached.
+        cache.resolve("SO17 1BJ", lookup);
+        assertEquals(3, lookups.get());
+
+        cache.resolve("SO16 3QD", lookup);
+        assertEquals(4, lookups.get());
+    }
+}
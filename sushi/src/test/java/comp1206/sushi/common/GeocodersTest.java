@@ -0,0 +1,98 @@
+package comp1206.sushi.common;
+
+import comp1206.sushi.mock.MockGeocodingServer;
+import comp1206.sushi.mock.SyntheticConfiguration;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class GeocodersTest extends TestCase
+{
+    private static final Geocoder FAILING = new Geocoder()
+    {
+        public String getName() { return "failing"; }
+
+        public double[] locate(String code) { return null; }
+    };
+
+    public void testHttpLooksUpFromTheMockServer() throws IOException
+    {
+        MockGeocodingServer server = new MockGeocodingServer(0, Geocoders.SYNTHETIC);
+        server.start();
+
+        try
+        {
+            double[] expected = Geocoders.SYNTHETIC.locate("SO17 1BJ");
+            double[] location = Geocoders.http(server.getUrl()).locate("SO17 1BJ");
+
+            assertNotNull(location);
+            assertEquals(expected[0], location[0], 1e-6);
+            assertEquals(expected[1], location[1], 1e-6);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    public void testHttpReturnsNullForAnUnknownPostcode() throws IOException
+    {
+        MockGeocodingServer server = new MockGeocodingServer(0, FAILING);
+        server.start();
+
+        try
+        {
+            assertNull(Geocoders.http(server.getUrl()).locate("SO17 1BJ"));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    public void testHttpGivesUpOnALookupThatIsNeverAnswered() throws IOException
+    {
+        // Accept the connection but never answer it.
+        try (ServerSocket silent = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()))
+        {
+            Thread acceptor = new Thread(() -> {
+                try (Socket socket = silent.accept())
+                {
+                    // Block until the lookup gives up and closes the connection.
+                    socket.getInputStream().read();
+                }
+                catch (IOException ex)
+                {
+                    // Do nothing since the test is over.
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            long start = System.currentTimeMillis();
+
+            assertNull(Geocoders.http("http://localhost:" + silent.getLocalPort() + "/postcode.php", 200).locate("SO17 1BJ"));
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+    }
+
+    public void testSyntheticPostcodesAreValidAndDistinct()
+    {
+        Set<String> codes = new HashSet<>();
+
+        for (int i = 0; i < 10000; i++)
+        {
+            String code = SyntheticConfiguration.postcode(i);
+
+            assertTrue(code, PostcodeRegistry.isValid(code));
+            assertTrue(code, codes.add(code));
+            assertNotNull(Geocoders.SYNTHETIC.locate(code));
+        }
+    }
+}
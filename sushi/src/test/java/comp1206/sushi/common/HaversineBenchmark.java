@@ -0,0 +1,146 @@
+package comp1206.sushi.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// HaversineBenchmark class: Compares the Haversine kernel with the boxed calculation Postcode.calculateDistance() used to do, which looked the coordinates up in the
+// latLong map and rounded the result by formatting it as a String and parsing it back, and times building a DistanceMatrix from scratch.
+// Only compiled with the jmh profile, and run with "mvn -P jmh verify".
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HaversineBenchmark
+{
+    private static final double LATITUDE = 50.85;
+    private static final double LONGITUDE = -1.55;
+    private static final double SPAN = 0.2;
+
+    @Param({ "100", "1000" })
+    private int count;
+
+    private Map<String, Double>[] latLongs;
+    private double[] latRadians;
+    private double[] cosLatitudes;
+    private double[] lonRadians;
+    private double[] output;
+    private Postcode[] postcodes;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp()
+    {
+        Random random = new Random(1206);
+
+        latLongs = new Map[count];
+        latRadians = new double[count];
+        cosLatitudes = new double[count];
+        lonRadians = new double[count];
+        output = new double[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            double latitude = LATITUDE + (SPAN * random.nextDouble());
+            double longitude = LONGITUDE + (SPAN * random.nextDouble());
+
+            latLongs[i] = new HashMap<>();
+            latLongs[i].put("lat", latitude);
+            latLongs[i].put("long", longitude);
+
+            latRadians[i] = Math.toRadians(latitude);
+            cosLatitudes[i] = Math.cos(latRadians[i]);
+            lonRadians[i] = Math.toRadians(longitude);
+        }
+
+        Geocoders.setDefault(Geocoders.SYNTHETIC);
+        postcodes = new Postcode[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            postcodes[i] = PostcodeRegistry.getDefault().intern(String.format("SO%02d %d%cB", 10 + (i % 90), (i / 90) % 10, (char)('A' + ((i / 900) % 26))));
+        }
+    }
+
+    // legacy: One distance at a time, the way Postcode.calculateDistance() used to work it out.
+    @Benchmark
+    public void legacy(Blackhole blackhole)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            blackhole.consume(legacyDistance(latLongs[0], latLongs[i]));
+        }
+    }
+
+    // single: One distance at a time with the Haversine kernel, rounded as Postcode.calculateDistance() now does.
+    @Benchmark
+    public void single(Blackhole blackhole)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            blackhole.consume(Haversine.round(Haversine.distance(latRadians[0], cosLatitudes[0], lonRadians[0], latRadians[i], cosLatitudes[i], lonRadians[i])));
+        }
+    }
+
+    // batch: A whole row of distances in one pass of the Haversine kernel, as the DistanceMatrix fills a row.
+    @Benchmark
+    public double[] batch()
+    {
+        Haversine.distances(latRadians[0], cosLatitudes[0], lonRadians[0], latRadians, cosLatitudes, lonRadians, output, count);
+        return output;
+    }
+
+    // matrix: Builds a DistanceMatrix of every postcode with the straight line model.
+    @Benchmark
+    public DistanceMatrix matrix()
+    {
+        DistanceMatrix matrix = new DistanceMatrix();
+
+        for (Postcode postcode : postcodes)
+        {
+            matrix.addPostcode(postcode);
+        }
+
+        return matrix;
+    }
+
+    // legacyDistance(Map<String, Double>, Map<String, Double>): The calculation Postcode.calculateDistance() used before the Haversine kernel, kept for comparison.
+    private static double legacyDistance(Map<String, Double> destination, Map<String, Double> source)
+    {
+        final int R = 6371;
+
+        double lat1 = destination.get("lat");
+        double lon1 = destination.get("long");
+
+        double lat2 = source.get("lat");
+        double lon2 = source.get("long");
+
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        double distance = R * c * 1000;
+
+        distance = Math.pow(distance, 2);
+
+        return Double.parseDouble(String.format("%.2f", Math.sqrt(distance)));
+    }
+}
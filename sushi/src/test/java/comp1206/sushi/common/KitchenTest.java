@@ -0,0 +1,290 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class KitchenTest extends TestCase
+{
+    private final Stock stock = new Stock();
+    private final Ingredient rice = new Ingredient("Rice", "grams", new Supplier("Rice Supplier", null), 0, 1, 1);
+    private final Dish nigiri = dish("Nigiri", 5, 2);
+    private final List<Order> orders = new ArrayList<>();
+    private final Kitchen kitchen = new Kitchen(stock, new ArrayList<>(Arrays.asList(nigiri)), orders, new DemandForecast());
+    private final Staff staff = new Staff("Chef", kitchen, null);
+
+    protected void setUp()
+    {
+        stock.setStock(rice, 100);
+    }
+
+    public void testNothingIsQueuedWithoutStaff()
+    {
+        kitchen.review();
+
+        assertEquals(0, kitchen.getQueuedJobs());
+        assertEquals(100, stock.getAvailableStock(rice).intValue());
+    }
+
+    public void testJobsAreQueuedBelowTheThreshold()
+    {
+        kitchen.clockIn(staff);
+        stock.setStock(nigiri, 5);
+        kitchen.review();
+
+        assertEquals(0, kitchen.getQueuedJobs());
+
+        // Two batches of two bring the one dish left back up to the threshold of five.
+        stock.setStock(nigiri, 1);
+        kitchen.review();
+
+        assertEquals(2, kitchen.getQueuedJobs());
+        assertEquals(96, stock.getAvailableStock(rice).intValue());
+
+        // The jobs already queued count towards the threshold.
+        kitchen.review();
+
+        assertEquals(2, kitchen.getQueuedJobs());
+    }
+
+    public void testCompletedJobsAddTheDishesAndUseTheIngredients() throws InterruptedException
+    {
+        kitchen.clockIn(staff);
+        kitchen.review();
+
+        PrepJob job = kitchen.takeJob(staff);
+        kitchen.completeJob(job);
+
+        assertEquals(nigiri, job.getDish());
+        assertEquals(2, stock.getStock(nigiri).intValue());
+        assertEquals(98, stock.getStock(rice).intValue());
+    }
+
+    public void testIdleStaffBlockUntilAJobIsQueued() throws InterruptedException
+    {
+        kitchen.clockIn(staff);
+        stock.setStock(nigiri, 5);
+
+        AtomicReference<PrepJob> taken = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try
+            {
+                taken.set(kitchen.takeJob(staff));
+            }
+            catch (InterruptedException ex)
+            {
+                // Do nothing since the test is over.
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+
+        awaitWaiting(thread);
+        assertNull(taken.get());
+
+        stock.setStock(nigiri, 4);
+        kitchen.review();
+        thread.join(5000);
+
+        assertFalse(thread.isAlive());
+        assertEquals(nigiri, taken.get().getDish());
+    }
+
+    public void testLastStaffLeavingReleasesTheQueuedJobs()
+    {
+        kitchen.clockIn(staff);
+        kitchen.review();
+
+        assertEquals(3, kitchen.getQueuedJobs());
+        assertEquals(94, stock.getAvailableStock(rice).intValue());
+
+        kitchen.clockOut(staff);
+        kitchen.review();
+
+        assertEquals(0, kitchen.getQueuedJobs());
+        assertEquals(100, stock.getAvailableStock(rice).intValue());
+
+        // Jobs are queued again from scratch once someone clocks back in, since none are counted as in progress any more.
+        kitchen.clockIn(staff);
+        kitchen.review();
+
+        assertEquals(3, kitchen.getQueuedJobs());
+    }
+
+    public void testBatchesTakeASetupTimeAndATimePerBatch()
+    {
+        kitchen.setBatchCooking(4, 10000, 5000);
+
+        assertEquals(15000, kitchen.getBatchPrepTime(1));
+        assertEquals(30000, kitchen.getBatchPrepTime(4));
+
+        // Four batches at once take half as long as four one at a time.
+        assertEquals(kitchen.getBatchPrepTime(1) * 2, kitchen.getBatchPrepTime(4));
+    }
+
+    public void testBatchesAreCombinedIntoJobs() throws InterruptedException
+    {
+        Dish roll = dish("Roll", 9, 1);
+        Kitchen rollKitchen = new Kitchen(stock, new ArrayList<>(Arrays.asList(roll)), orders, new DemandForecast());
+        Staff chef = new Staff("Chef", rollKitchen, null);
+
+        rollKitchen.setBatchCooking(4, 10000, 5000);
+        rollKitchen.clockIn(chef);
+        rollKitchen.review();
+
+        assertEquals(Arrays.asList(4, 4, 1), takeBatches(rollKitchen, chef));
+        assertEquals(91, stock.getAvailableStock(rice).intValue());
+    }
+
+    public void testFewerBatchesAreCombinedWhenIngredientsAreShort() throws InterruptedException
+    {
+        Dish roll = dish("Roll", 9, 1);
+        Kitchen rollKitchen = new Kitchen(stock, new ArrayList<>(Arrays.asList(roll)), orders, new DemandForecast());
+        Staff chef = new Staff("Chef", rollKitchen, null);
+
+        stock.setStock(rice, 6);
+        rollKitchen.setBatchCooking(4, 10000, 5000);
+        rollKitchen.clockIn(chef);
+        rollKitchen.review();
+
+        assertEquals(Arrays.asList(4, 2), takeBatches(rollKitchen, chef));
+        assertEquals(0, stock.getAvailableStock(rice).intValue());
+    }
+
+    public void testMakeToOrderQueuesOrdersOldestFirstAheadOfRestocking() throws InterruptedException
+    {
+        Dish maki = dish("Maki", 0, 1);
+        Dish roll = dish("Roll", 2, 1);
+        Kitchen orderKitchen = new Kitchen(stock, new ArrayList<>(Arrays.asList(maki, roll)), orders, new DemandForecast());
+        Staff chef = new Staff("Chef", orderKitchen, null);
+
+        orderKitchen.clockIn(chef);
+        orderKitchen.setMakeToOrder(true);
+
+        Order older = order(maki, 2);
+        Thread.sleep(5);
+        Order newer = order(roll, 1);
+
+        // Accepting the newer order queues the jobs for both before it returns, without waiting for the kitchen thread.
+        orderKitchen.orderChanged(newer);
+
+        List<Long> priorities = new ArrayList<>();
+        List<Dish> dishes = new ArrayList<>();
+
+        while (orderKitchen.getQueuedJobs() > 0)
+        {
+            PrepJob job = orderKitchen.takeJob(chef);
+            priorities.add(job.getPriority());
+            dishes.add(job.getDish());
+        }
+
+        assertEquals(Arrays.asList(older.getPlacedAt(), older.getPlacedAt(), newer.getPlacedAt(), Long.MAX_VALUE), priorities);
+        assertEquals(Arrays.asList(maki, maki, roll, roll), dishes);
+    }
+
+    public void testOrdersOnlyQueueJobsStraightAwayInMakeToOrderMode()
+    {
+        kitchen.clockIn(staff);
+        stock.setStock(nigiri, 5);
+
+        kitchen.orderChanged(order(nigiri, 3));
+
+        assertFalse(kitchen.isMakeToOrder());
+        assertEquals(0, kitchen.getQueuedJobs());
+    }
+
+    public void testJobsGoToTheQuickestIdleStaff() throws InterruptedException
+    {
+        Staff slow = new Staff("Slow Chef", kitchen, null);
+        Staff tired = new Staff("Tired Chef", kitchen, null);
+        slow.setPrepSpeed(0.9);
+        tired.setPrepSpeed(1.1);
+        tired.setFatigue(100.0);
+
+        kitchen.clockIn(slow);
+        kitchen.clockIn(tired);
+        stock.setStock(nigiri, 3);
+
+        // The tired member of staff is naturally quicker, but slower than the other once their fatigue is taken into account.
+        AtomicReference<Staff> tookJob = new AtomicReference<>();
+        Thread slowThread = takeJob(slow, tookJob);
+        Thread tiredThread = takeJob(tired, tookJob);
+
+        awaitWaiting(slowThread);
+        awaitWaiting(tiredThread);
+
+        // Only one job is needed to get back up to the threshold.
+        stock.setStock(nigiri, 4);
+        kitchen.review();
+        slowThread.join(5000);
+
+        assertSame(slow, tookJob.get());
+        assertTrue(tiredThread.isAlive());
+
+        tiredThread.interrupt();
+    }
+
+    private Thread takeJob(Staff member, AtomicReference<Staff> tookJob)
+    {
+        Thread thread = new Thread(() -> {
+            try
+            {
+                kitchen.takeJob(member);
+                tookJob.set(member);
+            }
+            catch (InterruptedException ex)
+            {
+                // Do nothing since the test is over.
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    // takeBatches(Kitchen, Staff): Takes every queued job, returning the number of batches in each.
+    private static List<Integer> takeBatches(Kitchen kitchen, Staff staff) throws InterruptedException
+    {
+        List<Integer> batches = new ArrayList<>();
+
+        while (kitchen.getQueuedJobs() > 0)
+        {
+            batches.add(kitchen.takeJob(staff).getBatches());
+        }
+
+        return batches;
+    }
+
+    // awaitWaiting(Thread): Waits for the passed thread to block.
+    static void awaitWaiting(Thread thread) throws InterruptedException
+    {
+        for (int i = 0; i < 500 && thread.getState() != Thread.State.WAITING; i++)
+        {
+            Thread.sleep(10);
+        }
+
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+
+    private Order order(Dish dish, int quantity)
+    {
+        Order order = new Order();
+        order.getOrderedDishes().put(dish, quantity);
+        orders.add(order);
+        return order;
+    }
+
+    private Dish dish(String name, int restockThreshold, int restockAmount)
+    {
+        Dish dish = new Dish(name, "", 1, restockThreshold, restockAmount);
+        Map<Ingredient, Number> recipe = new HashMap<>();
+        recipe.put(rice, 1);
+        dish.setRecipe(recipe);
+        return dish;
+    }
+}
@@ -0,0 +1,55 @@
+package comp1206.sushi.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+public class PostcodeDatabaseTest extends TestCase
+{
+    public void testPackIgnoresCaseAndSpaces()
+    {
+        assertEquals(PostcodeDatabase.pack("SO17 1BJ"), PostcodeDatabase.pack("so171bj"));
+        assertEquals(PostcodeDatabase.pack("SO17 1BJ"), PostcodeDatabase.pack(" So17  1bJ "));
+    }
+
+    public void testPackGivesDistinctCodesDistinctKeys()
+    {
+        assertFalse(PostcodeDatabase.pack("SO17 1BJ") == PostcodeDatabase.pack("SO17 1BK"));
+        assertFalse(PostcodeDatabase.pack("SO17 1B") == PostcodeDatabase.pack("SO17 1BJ"));
+        assertFalse(PostcodeDatabase.pack("A1") == PostcodeDatabase.pack("1A"));
+    }
+
+    public void testPackRejectsInvalidCodes()
+    {
+        assertEquals(-1, PostcodeDatabase.pack("SO17 1BJX"));
+        assertEquals(-1, PostcodeDatabase.pack("SO17-1BJ"));
+        assertEquals(-1, PostcodeDatabase.pack(""));
+    }
+
+    public void testLoadSkipsTheHeaderAndFindsEveryPostcode() throws IOException
+    {
+        String csv = "id,postcode,latitude,longitude\n"
+                + "1,SO17 1BJ,50.936000,-1.396000\n"
+                + "2,SO16 3QD,50.927000,-1.442000\n"
+                + "3,SO15 2JY,50.911000,-1.414000\n";
+
+        PostcodeDatabase database = PostcodeDatabase.load(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, database.size());
+        assertEquals(-1, database.indexOf("SO14 0AA"));
+
+        int index = database.indexOf("so16 3qd");
+
+        assertTrue(index >= 0);
+        assertEquals(50.927, database.getLatitude(index), 1e-6);
+        assertEquals(-1.442, database.getLongitude(index), 1e-6);
+    }
+
+    public void testEmptyDatabaseFindsNothing()
+    {
+        assertEquals(0, PostcodeDatabase.empty().size());
+        assertEquals(-1, PostcodeDatabase.empty().indexOf("SO17 1BJ"));
+    }
+}
@@ -0,0 +1,97 @@
+package comp1206.sushi.common;
+
+import junit.framework.TestCase;
+
+public class PostcodeRegistryTest extends TestCase
+{
+    private static final Geocoder FAILING = new Geocoder()
+    {
+        public String getName() { return "failing"; }
+
+        public double[] locate(String code) { return null; }
+    };
+
+    private final PostcodeRegistry registry = PostcodeRegistry.getDefault();
+
+    protected void setUp() { Geocoders.setDefault(Geocoders.SYNTHETIC); }
+
+    protected void tearDown() { Geocoders.setDefault(null); }
+
+    public void testNormalise()
+    {
+        assertEquals("SO17 1BJ", PostcodeRegistry.normalise("so171bj"));
+        assertEquals("SO17 1BJ", PostcodeRegistry.normalise(" SO17  1BJ "));
+        assertEquals("W1", PostcodeRegistry.normalise("w1"));
+    }
+
+    public void testIsValid()
+    {
+        assertTrue(PostcodeRegistry.isValid("so171bj"));
+        assertTrue(PostcodeRegistry.isValid("W1A 1AA"));
+        assertTrue(PostcodeRegistry.isValid("EC1A 1BB"));
+        assertFalse(PostcodeRegistry.isValid("W1"));
+        assertFalse(PostcodeRegistry.isValid("SO17 BJ1"));
+        assertFalse(PostcodeRegistry.isValid("not a postcode"));
+        assertFalse(PostcodeRegistry.isValid(null));
+    }
+
+    public void testInternReturnsOneInstancePerCode()
+    {
+        Postcode postcode = registry.intern("zz90 1aa");
+
+        assertSame(postcode, registry.intern("ZZ901AA"));
+        assertEquals(postcode, new Postcode("ZZ90 1AA"));
+        assertEquals(postcode.hashCode(), new Postcode("zz90 1aa").hashCode());
+        assertTrue(postcode.isLocated());
+    }
+
+    public void testFailedLookupIsRetriedWithTheNextGeocoder()
+    {
+        Geocoders.setDefault(FAILING);
+        Postcode postcode = registry.intern("zz91 1aa");
+        assertFalse(postcode.isLocated());
+
+        Geocoders.setDefault(Geocoders.SYNTHETIC);
+        Postcode retried = registry.intern("ZZ91 1AA");
+
+        assertSame(postcode, retried);
+        assertTrue(retried.isLocated());
+    }
+
+    public void testChangingGeocoderLooksThePostcodeUpAgain()
+    {
+        Geocoders.setDefault(fixed(1.0, 2.0));
+        Postcode postcode = registry.intern("zz92 1aa");
+        assertEquals(1.0, postcode.getLatitude(), 0.0);
+
+        Geocoders.setDefault(Geocoders.SYNTHETIC);
+        registry.intern("zz92 1aa");
+
+        assertEquals(Geocoders.SYNTHETIC.locate("ZZ92 1AA")[0], postcode.getLatitude(), 0.0);
+    }
+
+    public void testPostcodesCannotBeRenamed()
+    {
+        Postcode postcode = registry.intern("zz93 1aa");
+
+        try
+        {
+            postcode.setName("ZZ93 1AB");
+            fail("Renaming a postcode should fail");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            assertEquals("ZZ93 1AA", postcode.getName());
+        }
+    }
+
+    private static Geocoder fixed(double latitude, double longitude)
+    {
+        return new Geocoder()
+        {
+            public String getName() { return "fixed"; }
+
+            public double[] locate(String code) { return new double[] { latitude, longitude }; }
+        };
+    }
+}
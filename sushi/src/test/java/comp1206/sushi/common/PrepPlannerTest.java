@@ -0,0 +1,90 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class PrepPlannerTest extends TestCase
+{
+    private final Stock stock = new Stock();
+    private final Ingredient rice = new Ingredient("Rice", "grams", new Supplier("Rice Supplier", null), 0, 1, 1);
+    private final Dish nigiri = dish("Nigiri");
+    private final Dish roll = dish("Roll");
+    private final PrepPlanner planner = new PrepPlanner(stock, Arrays.asList(nigiri, roll), new DemandForecast());
+
+    private Order older;
+    private Order newer;
+
+    protected void setUp() throws InterruptedException
+    {
+        stock.setStock(rice, 3);
+
+        older = order(nigiri, 4);
+        Thread.sleep(5);
+        newer = order(roll, 2);
+    }
+
+    public void testCheapestWholeOrderIsPlannedFirst()
+    {
+        List<PrepPlanner.Batch> plan = planner.plan(Arrays.asList(older, newer), Collections.emptyMap(), false);
+
+        assertEquals(1, plan.size());
+        assertEquals(roll, plan.get(0).getDish());
+        assertEquals(2, plan.get(0).getAmount());
+        assertEquals(newer.getPlacedAt(), plan.get(0).getPlacedAt());
+    }
+
+    public void testMakeToOrderPlansTheOldestOrderEvenInPart()
+    {
+        List<PrepPlanner.Batch> plan = planner.plan(Arrays.asList(newer, older), Collections.emptyMap(), true);
+
+        assertEquals(1, plan.size());
+        assertEquals(nigiri, plan.get(0).getDish());
+        assertEquals(1, plan.get(0).getBatchSize());
+        assertEquals(3, plan.get(0).getBatches());
+        assertEquals(older.getPlacedAt(), plan.get(0).getPlacedAt());
+    }
+
+    public void testDishesInStockOrBeingPreparedAreNotPlannedAgain()
+    {
+        stock.setStock(roll, 1);
+
+        Map<Dish, Integer> preparing = new HashMap<>();
+        preparing.put(nigiri, 4);
+
+        List<PrepPlanner.Batch> plan = planner.plan(new ArrayList<>(Arrays.asList(older, newer)), preparing, false);
+
+        assertEquals(1, plan.size());
+        assertEquals(roll, plan.get(0).getDish());
+        assertEquals(1, plan.get(0).getAmount());
+    }
+
+    public void testFinishedOrdersAreIgnored()
+    {
+        older.cancelOrder();
+        newer.completeOrder();
+
+        assertTrue(planner.plan(Arrays.asList(older, newer), Collections.emptyMap(), true).isEmpty());
+    }
+
+    private Dish dish(String name)
+    {
+        Dish dish = new Dish(name, "", 1, 0, 1);
+        Map<Ingredient, Number> recipe = new HashMap<>();
+        recipe.put(rice, 1);
+        dish.setRecipe(recipe);
+        return dish;
+    }
+
+    private static Order order(Dish dish, int quantity)
+    {
+        Order order = new Order();
+        order.getOrderedDishes().put(dish, quantity);
+        return order;
+    }
+}
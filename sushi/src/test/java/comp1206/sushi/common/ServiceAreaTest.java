@@ -0,0 +1,124 @@
+package comp1206.sushi.common;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ServiceAreaTest extends TestCase
+{
+    private static final long HANDLING_TIME = 60000;
+    private static final double[] SPEEDS = { 20, 10, 10, 0 };
+
+    // Every postcode lies due east of the restaurant on the equator, the number of metres away given by the digits after ZZ.
+    private static final Geocoder EAST = new Geocoder()
+    {
+        public String getName() { return "east"; }
+
+        public double[] locate(String code)
+        {
+            if (!code.startsWith("ZZ"))
+                return null;
+
+            double metres = Double.parseDouble(code.substring(2, code.indexOf(' ')));
+            return new double[] { 0.0, Math.toDegrees(metres / Haversine.EARTH_RADIUS) };
+        }
+    };
+
+    private Postcode restaurant;
+    private Postcode edge;
+
+    protected void setUp()
+    {
+        Geocoders.setDefault(EAST);
+        restaurant = new Postcode("ZZ0 0AA");
+        edge = new Postcode("ZZ2500 0AA");
+    }
+
+    protected void tearDown() { Geocoders.setDefault(null); }
+
+    public void testPostcodesAreZonedByRing()
+    {
+        ServiceArea area = area(Collections.emptyMap());
+
+        assertEquals(0, area.getZone(restaurant));
+        assertEquals(0, area.getZone(postcode(500)));
+        assertEquals(1, area.getZone(postcode(1500)));
+        assertEquals(2, area.getZone(postcode(2100)));
+        assertEquals(-1, area.getZone(postcode(2501)));
+        assertFalse(area.covers(postcode(2501)));
+        assertEquals(-1, area.getZone(new Postcode("SO17 1BJ")));
+    }
+
+    public void testPostcodesRightOnTheRadiusAreCovered()
+    {
+        ServiceArea area = area(Collections.emptyMap());
+
+        assertTrue(area.covers(edge));
+        assertEquals(2, area.getZone(edge));
+
+        // With a single ring as wide as the radius, the edge is in that ring rather than one beyond it.
+        ServiceArea oneRing = new ServiceArea(restaurant, area.getRadius(), area.getRadius(), SPEEDS, HANDLING_TIME);
+
+        assertEquals(0, oneRing.getZone(edge));
+    }
+
+    public void testQuotesAreForTheSlowestDroneToTheFarEdgeOfTheRing()
+    {
+        ServiceArea area = area(Collections.emptyMap());
+
+        assertEquals(10.0, area.getSpeedClasses()[0], 0.0);
+        assertEquals(2, area.getSpeedClasses().length);
+        assertEquals(HANDLING_TIME + 100000, area.getQuote(postcode(500)));
+
+        // The outermost ring stops at the radius.
+        assertEquals(HANDLING_TIME + 250000, area.getQuote(edge));
+        assertEquals(-1, area.getQuote(postcode(2501)));
+
+        assertEquals(100, area.getTravelTime(1, 1));
+        assertEquals(125, area.getTravelTime(2, 1));
+    }
+
+    public void testRouteDistancesOverrideTheRings()
+    {
+        Map<String, Double> routes = new HashMap<>();
+        routes.put("ZZ500 0AA", 4321.0);
+
+        ServiceArea area = area(routes);
+
+        assertEquals(HANDLING_TIME + 433000, area.getQuote(postcode(500)));
+        assertEquals(HANDLING_TIME + 200000, area.getQuote(postcode(1500)));
+
+        // The route is only used for postcodes inside the service radius.
+        routes.put("ZZ2501 0AA", 10.0);
+        assertEquals(-1, area(routes).getQuote(postcode(2501)));
+    }
+
+    public void testUnlimitedRadiusServesEverywhere()
+    {
+        ServiceArea area = new ServiceArea(restaurant, 0, 1000, SPEEDS, HANDLING_TIME);
+        Postcode far = postcode(100500);
+
+        assertEquals(100, area.getZone(far));
+        assertEquals(HANDLING_TIME + 10100000, area.getQuote(far));
+    }
+
+    public void testNothingIsQuotedWithoutDronesOrARestaurant()
+    {
+        assertEquals(-1, new ServiceArea(restaurant, 0, 1000, new double[0], HANDLING_TIME).getQuote(postcode(500)));
+        assertEquals(-1, new ServiceArea(new Postcode("SO17 1BJ"), 0, 1000, SPEEDS, HANDLING_TIME).getZone(postcode(500)));
+    }
+
+    // area(Map<String, Double>): Returns a service area with rings 1000m wide, whose radius is exactly the unrounded distance to the edge postcode.
+    private ServiceArea area(Map<String, Double> routes)
+    {
+        double radius = Haversine.distance(restaurant.getLatRadians(), restaurant.getCosLatitude(), restaurant.getLonRadians(), edge.getLatRadians(), edge.getCosLatitude(), edge.getLonRadians());
+        return new ServiceArea(restaurant, radius, 1000, SPEEDS, HANDLING_TIME, routes);
+    }
+
+    private static Postcode postcode(int metres)
+    {
+        return new Postcode("ZZ" + metres + " 0AA");
+    }
+}
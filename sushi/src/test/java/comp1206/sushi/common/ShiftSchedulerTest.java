@@ -0,0 +1,129 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ShiftSchedulerTest extends TestCase
+{
+    private final ShiftScheduler scheduler = new ShiftScheduler();
+    private final List<Staff> staff = new ArrayList<>();
+
+    protected void setUp()
+    {
+        // Six staff who are all tired enough for an early break, the first being the most tired.
+        for (int i = 0; i < 6; i++)
+        {
+            Staff member = new Staff("Chef " + i, null, null);
+            member.setFatigue(90.0 - (i * 5));
+            staff.add(member);
+            scheduler.clockIn(member);
+        }
+    }
+
+    public void testEarlyBreaksAreLimitedAndGoToTheMostTired()
+    {
+        assertEquals(2, scheduler.getMaxBreaks());
+
+        // Only the most tired member of staff still working is let off early.
+        assertFalse(scheduler.startBreak(staff.get(1)));
+        assertTrue(scheduler.startBreak(staff.get(0)));
+        assertTrue(scheduler.startBreak(staff.get(1)));
+
+        // Both break slots are taken, so nobody else is let off early.
+        assertFalse(scheduler.startBreak(staff.get(2)));
+        assertEquals(2, scheduler.getStaffOnBreak());
+
+        // Staff come back from a break rested.
+        scheduler.endBreak(staff.get(0));
+        staff.get(0).setFatigue(0.0);
+
+        assertTrue(scheduler.startBreak(staff.get(2)));
+        assertEquals(2, scheduler.getStaffOnBreak());
+    }
+
+    public void testExhaustedStaffAlwaysTakeABreak()
+    {
+        assertTrue(scheduler.startBreak(staff.get(0)));
+        assertTrue(scheduler.startBreak(staff.get(1)));
+
+        staff.get(5).setFatigue(100.0);
+
+        assertTrue(scheduler.startBreak(staff.get(5)));
+        assertEquals(3, scheduler.getStaffOnBreak());
+    }
+
+    public void testStaffNotTiredEnoughKeepWorking()
+    {
+        Staff fresh = new Staff("Fresh Chef", null, null);
+        ShiftScheduler scheduler = new ShiftScheduler();
+        scheduler.clockIn(fresh);
+
+        fresh.setFatigue(40.0);
+
+        assertFalse(scheduler.startBreak(fresh));
+        assertEquals(0, scheduler.getStaffOnBreak());
+    }
+
+    public void testClockingOutEndsABreak()
+    {
+        assertTrue(scheduler.startBreak(staff.get(0)));
+
+        scheduler.clockOut(staff.get(0));
+
+        assertEquals(0, scheduler.getStaffOnBreak());
+        assertEquals(5, scheduler.getRoster().size());
+    }
+
+    public void testFatigueSlowsStaffDown()
+    {
+        Staff member = staff.get(0);
+        member.setPrepSpeed(1.0);
+
+        member.setFatigue(0.0);
+        assertEquals(1.0, member.getEffectiveSpeed(), 1e-9);
+
+        member.setFatigue(100.0);
+        assertEquals(0.75, member.getEffectiveSpeed(), 1e-9);
+    }
+
+    public void testProjectionDropsWhileStaffAreOnBreak()
+    {
+        Staff fresh = new Staff("Fresh Chef", null, null);
+        Staff exhausted = new Staff("Exhausted Chef", null, null);
+        fresh.setPrepSpeed(1.0);
+        exhausted.setPrepSpeed(1.0);
+        exhausted.setFatigue(100.0);
+
+        double[] freshJobs = fresh.projectJobs(2);
+        double[] exhaustedJobs = exhausted.projectJobs(2);
+
+        // Staff who work without a break would fit in an hour's worth of jobs, so the breaks are all that hold them back.
+        assertTrue(freshJobs[0] < 3600000 / Staff.getAveragePrepTime());
+        assertTrue(freshJobs[1] > 0);
+
+        // The exhausted member of staff goes on a break straight away, so gets less done in the first hour.
+        assertTrue(exhaustedJobs[0] < freshJobs[0]);
+        assertEquals(0, fresh.projectJobs(0).length);
+    }
+
+    public void testKitchenCapacityAddsUpTheRoster()
+    {
+        Kitchen kitchen = new Kitchen(new Stock(), new ArrayList<>(), new ArrayList<>(), new DemandForecast());
+        Staff fresh = new Staff("Fresh Chef", kitchen, null);
+        Staff exhausted = new Staff("Exhausted Chef", kitchen, null);
+        exhausted.setFatigue(100.0);
+
+        assertEquals(0.0, kitchen.getProjectedCapacity(1)[0], 0.0);
+
+        kitchen.clockIn(fresh);
+        double[] capacity = kitchen.getProjectedCapacity(1);
+
+        assertEquals(fresh.projectJobs(1)[0], capacity[0], 1e-9);
+
+        kitchen.clockIn(exhausted);
+
+        assertEquals(capacity[0] + exhausted.projectJobs(1)[0], kitchen.getProjectedCapacity(1)[0], 1e-9);
+    }
+}
@@ -0,0 +1,86 @@
+package comp1206.sushi.common;
+
+import comp1206.sushi.mock.SyntheticConfiguration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SpatialIndexTest extends TestCase
+{
+    private final SpatialIndex index = new SpatialIndex();
+    private final List<Postcode> postcodes = new ArrayList<>();
+
+    protected void setUp()
+    {
+        Geocoders.setDefault(Geocoders.SYNTHETIC);
+
+        for (int i = 1000; i < 1500; i++)
+        {
+            Postcode postcode = PostcodeRegistry.getDefault().intern(SyntheticConfiguration.postcode(i));
+            postcodes.add(postcode);
+            index.addPostcode(postcode);
+        }
+    }
+
+    protected void tearDown() { Geocoders.setDefault(null); }
+
+    public void testNearestMatchesABruteForceSearch()
+    {
+        for (int i = 0; i < postcodes.size(); i += 50)
+        {
+            Postcode origin = postcodes.get(i);
+            List<Postcode> nearest = index.getNearest(origin, 10);
+            List<Postcode> expected = new ArrayList<>(postcodes);
+
+            expected.remove(origin);
+            expected.sort(Comparator.comparingDouble(origin::calculateDistance));
+
+            assertEquals(10, nearest.size());
+            assertFalse(nearest.contains(origin));
+
+            // Compare distances rather than postcodes, since two postcodes may be the same distance away.
+            for (int j = 0; j < nearest.size(); j++)
+            {
+                assertEquals(origin.calculateDistance(expected.get(j)), origin.calculateDistance(nearest.get(j)), 0.01);
+            }
+        }
+    }
+
+    public void testWithinMatchesABruteForceSearch()
+    {
+        Postcode origin = postcodes.get(0);
+        double radius = origin.calculateDistance(index.getNearest(origin, 25).get(24)) + 0.5;
+        List<Postcode> expected = new ArrayList<>();
+
+        for (Postcode postcode : postcodes)
+        {
+            if (origin.calculateDistance(postcode) <= radius)
+                expected.add(postcode);
+        }
+
+        List<Postcode> within = index.getWithin(origin, radius);
+
+        assertTrue(within.contains(origin));
+        assertEquals(new HashSet<>(expected), new HashSet<>(within));
+    }
+
+    public void testRemovedPostcodesAreNoLongerFound()
+    {
+        Postcode origin = postcodes.get(0);
+        Postcode nearest = index.getNearest(origin, 1).get(0);
+
+        index.removePostcode(nearest);
+
+        assertEquals(postcodes.size() - 1, index.size());
+        assertFalse(index.getNearest(origin, 10).contains(nearest));
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertTrue(index.getNearest(origin, 10).isEmpty());
+    }
+}
@@ -0,0 +1,136 @@
+package comp1206.sushi.common;
+
+import junit.framework.TestCase;
+
+public class StockHistoryTest extends TestCase
+{
+    public void testUsageIsExactOnceTheRawSamplesRollOver()
+    {
+        StockHistory history = new StockHistory();
+        long start = System.currentTimeMillis();
+        int used = 0;
+        int otherUsed = 0;
+
+        // More than the 32 chunks of 4096 raw samples held.
+        for (int i = 0; i < 150000; i++)
+        {
+            if (i % 5 == 0)
+            {
+                history.record(1, 4);
+            }
+            else if (i % 7 == 0)
+            {
+                history.record(2, -2);
+                otherUsed += 2;
+            }
+            else
+            {
+                history.record(1, -1);
+                used++;
+            }
+        }
+
+        assertEquals(150000, history.getSampleCount());
+        assertTrue(history.getOldestSample() >= start);
+        assertEquals(used, history.getUsage(1, 0, Long.MAX_VALUE));
+        assertEquals(otherUsed, history.getUsage(2, 0, Long.MAX_VALUE));
+        assertEquals(0, history.getUsage(3, 0, Long.MAX_VALUE));
+
+        long[] times = new long[16];
+        int[] deltas = new int[16];
+        int[] usedPerMinute = new int[16];
+        int minutes = history.getSeries(1, 0, Long.MAX_VALUE, times, deltas, usedPerMinute);
+        int seriesUsed = 0;
+
+        for (int i = 0; i < minutes; i++)
+        {
+            seriesUsed += usedPerMinute[i];
+
+            if (i > 0)
+                assertTrue(times[i - 1] < times[i]);
+        }
+
+        assertTrue(minutes > 0);
+        assertEquals(used, seriesUsed);
+    }
+
+    public void testSeriesAddsTheChangesUpByMinute()
+    {
+        StockHistory history = new StockHistory();
+        long start = System.currentTimeMillis();
+
+        history.record(0, 10);
+        history.record(0, -3);
+        history.record(1, -7);
+        history.record(0, -2);
+
+        long[] times = new long[4];
+        int[] deltas = new int[4];
+        int[] used = new int[4];
+        int minutes = history.getSeries(0, 0, Long.MAX_VALUE, times, deltas, used);
+
+        // The changes could straddle a minute boundary, so add the minutes up.
+        int delta = 0;
+        int totalUsed = 0;
+
+        for (int i = 0; i < minutes; i++)
+        {
+            assertEquals(0, times[i] % 60000);
+            assertTrue(times[i] > start - 60000);
+            delta += deltas[i];
+            totalUsed += used[i];
+        }
+
+        assertTrue(minutes >= 1 && minutes <= 2);
+        assertEquals(5, delta);
+        assertEquals(5, totalUsed);
+        assertEquals(0, history.getSeries(2, 0, Long.MAX_VALUE, times, deltas, used));
+        assertEquals(0, history.getSeries(0, 0, Long.MAX_VALUE, new long[0], new int[0], new int[0]));
+        assertEquals(0, history.getSeries(0, System.currentTimeMillis() + 60000, Long.MAX_VALUE, times, deltas, used));
+    }
+
+    public void testStockGraphsDishesAndIngredientsSeparately()
+    {
+        Stock stock = new Stock();
+        Dish dish = new Dish("Salmon Nigiri", "", 3, 0, 1);
+        Ingredient ingredient = new Ingredient("Rice", "grams", new Supplier("Rice Supplier", null), 0, 1, 1);
+
+        stock.setStock(dish, 4);
+        stock.setStock(dish, 1);
+        stock.setStock(ingredient, 9);
+
+        long[] times = new long[4];
+        int[] deltas = new int[4];
+        int[] used = new int[4];
+
+        int minutes = stock.getSeries(dish, 0, Long.MAX_VALUE, times, deltas, used);
+        int dishUsed = 0;
+
+        for (int i = 0; i < minutes; i++)
+        {
+            dishUsed += used[i];
+        }
+
+        assertEquals(3, dishUsed);
+        assertEquals(1, stock.getSeries(ingredient, 0, Long.MAX_VALUE, times, deltas, used));
+        assertEquals(9, deltas[0]);
+        assertEquals(0, used[0]);
+        assertEquals(0, stock.getSeries(new Dish("Tuna Roll", "", 4, 0, 1), 0, Long.MAX_VALUE, times, deltas, used));
+    }
+
+    public void testUsageOnlyCountsTheRequestedTimes()
+    {
+        StockHistory history = new StockHistory();
+
+        history.record(0, -3);
+        history.record(0, 5);
+        history.record(0, 0);
+
+        long now = System.currentTimeMillis();
+
+        assertEquals(2, history.getSampleCount());
+        assertEquals(3, history.getUsage(0, 0, Long.MAX_VALUE));
+        assertEquals(0, history.getUsage(0, now + 1000, Long.MAX_VALUE));
+        assertEquals(0, history.getUsage(0, 0, 0));
+    }
+}
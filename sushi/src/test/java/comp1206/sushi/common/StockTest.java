@@ -0,0 +1,216 @@
+package comp1206.sushi.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class StockTest extends TestCase
+{
+    private final Stock stock = new Stock();
+    private final Dish salmon = new Dish("Salmon Nigiri", "", 3, 0, 1);
+    private final Dish tuna = new Dish("Tuna Roll", "", 4, 0, 1);
+
+    protected void setUp()
+    {
+        stock.setStock(salmon, 5);
+        stock.setStock(tuna, 2);
+    }
+
+    public void testReserveHoldsBackStockUntilReleased()
+    {
+        Stock.Reservation reservation = stock.reserveDishes(dishes(3, 1));
+
+        assertNotNull(reservation);
+        assertEquals(5, stock.getStock(salmon).intValue());
+        assertEquals(2, stock.getAvailableStock(salmon).intValue());
+        assertEquals(1, stock.getAvailableStock(tuna).intValue());
+
+        stock.release(reservation);
+
+        assertEquals(5, stock.getAvailableStock(salmon).intValue());
+        assertEquals(2, stock.getAvailableStock(tuna).intValue());
+    }
+
+    public void testReserveIsAllOrNothing()
+    {
+        assertNull(stock.reserveDishes(dishes(3, 3)));
+        assertEquals(5, stock.getAvailableStock(salmon).intValue());
+        assertEquals(2, stock.getAvailableStock(tuna).intValue());
+    }
+
+    public void testCommitTakesTheReservedStockOut()
+    {
+        Stock.Reservation reservation = stock.reserveDishes(dishes(2, 2));
+        stock.commit(reservation);
+
+        assertEquals(3, stock.getStock(salmon).intValue());
+        assertEquals(0, stock.getStock(tuna).intValue());
+        assertEquals(3, stock.getAvailableStock(salmon).intValue());
+    }
+
+    public void testReservationIsOnlyClosedOnce()
+    {
+        Stock.Reservation reservation = stock.reserveDishes(dishes(2, 0));
+        Stock.Reservation other = stock.reserveDishes(dishes(1, 0));
+
+        stock.release(reservation);
+        stock.release(reservation);
+        stock.commit(reservation);
+
+        assertEquals(5, stock.getStock(salmon).intValue());
+        assertEquals(4, stock.getAvailableStock(salmon).intValue());
+
+        stock.release(other);
+        assertEquals(5, stock.getAvailableStock(salmon).intValue());
+    }
+
+    public void testRenamedDishKeepsItsStock()
+    {
+        salmon.setName("Salmon Sashimi");
+
+        assertEquals(5, stock.getStock(salmon).intValue());
+        assertEquals(0, stock.getStock(new Dish("Salmon Nigiri", "", 3, 0, 1)).intValue());
+    }
+
+    public void testListenersAreToldOnTheEventThread() throws InterruptedException
+    {
+        List<StockEvent> events = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        stock.addListener(event -> {
+            events.add(event);
+            threads.add(Thread.currentThread());
+        });
+
+        stock.setStock(salmon, 3);
+        stock.reserveDishes(dishes(1, 0));
+        awaitEvents();
+
+        assertEquals(2, events.size());
+        assertSame(salmon, events.get(0).getItem());
+        assertEquals(5, events.get(0).getPrevious());
+        assertEquals(3, events.get(0).getAvailable());
+        assertEquals(2, events.get(1).getAvailable());
+        assertNotSame(Thread.currentThread(), threads.get(0));
+    }
+
+    public void testSlowListenersNeverHoldUpTheStock() throws InterruptedException
+    {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger seen = new AtomicInteger();
+
+        // The first listener call changes the stock itself, and then blocks until the test lets it go.
+        stock.addListener(event -> {
+            if (seen.getAndIncrement() == 0)
+            {
+                stock.setStock(tuna, 9);
+                blocked.countDown();
+
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        stock.setStock(salmon, 4);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        // Updates carry on while the listener is blocked.
+        Thread updater = new Thread(() -> stock.release(stock.reserveDishes(dishes(2, 2))));
+        updater.setDaemon(true);
+        updater.start();
+        updater.join(5000);
+
+        assertFalse(updater.isAlive());
+        assertEquals(9, stock.getStock(tuna).intValue());
+        assertEquals(4, stock.getAvailableStock(salmon).intValue());
+
+        release.countDown();
+        awaitEvents();
+
+        assertEquals(6, seen.get());
+    }
+
+    public void testSubscriptionsOnlyHearAboutThresholdCrossings() throws InterruptedException
+    {
+        List<Integer> levels = new CopyOnWriteArrayList<>();
+        stock.subscribe(salmon, () -> 3, event -> levels.add(event.getAvailable()));
+
+        for (int level : new int[] { 4, 2, 1, 3, 6, 2 })
+        {
+            stock.setStock(salmon, level);
+        }
+
+        awaitEvents();
+
+        assertEquals(Arrays.asList(2, 3, 2), new ArrayList<>(levels));
+    }
+
+    public void testWatchRunsOnceWhenTheDishesAreAvailable() throws InterruptedException
+    {
+        AtomicInteger runs = new AtomicInteger();
+
+        stock.whenAvailable("order", dishes(6, 1), runs::incrementAndGet);
+        stock.whenAvailable("order", dishes(6, 1), runs::incrementAndGet);
+        stock.setStock(tuna, 4);
+        awaitEvents();
+
+        assertEquals(0, runs.get());
+
+        stock.setStock(salmon, 7);
+        stock.setStock(salmon, 8);
+        awaitEvents();
+
+        assertEquals(1, runs.get());
+
+        // Dishes that are already available run the watch straight away.
+        stock.whenAvailable("again", dishes(1, 1), runs::incrementAndGet);
+        awaitEvents();
+
+        assertEquals(2, runs.get());
+    }
+
+    public void testCancelledWatchesStaySilent() throws InterruptedException
+    {
+        AtomicInteger runs = new AtomicInteger();
+
+        stock.whenAvailable("order", dishes(6, 0), runs::incrementAndGet);
+        stock.cancelWatch("order");
+        stock.setStock(salmon, 10);
+        awaitEvents();
+
+        assertEquals(0, runs.get());
+    }
+
+    // awaitEvents(): Waits for the event thread to deliver every event published so far, by queuing a watch that is already satisfied behind them.
+    private void awaitEvents() throws InterruptedException
+    {
+        CountDownLatch delivered = new CountDownLatch(1);
+        stock.whenAvailable(new Object(), Collections.emptyMap(), delivered::countDown);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    }
+
+    private Map<Dish, Number> dishes(int salmonQuantity, int tunaQuantity)
+    {
+        Map<Dish, Number> dishes = new HashMap<>();
+        dishes.put(salmon, salmonQuantity);
+        dishes.put(tuna, tunaQuantity);
+        return dishes;
+    }
+}
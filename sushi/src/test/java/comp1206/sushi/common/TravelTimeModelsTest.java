@@ -0,0 +1,138 @@
+package comp1206.sushi.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+public class TravelTimeModelsTest extends TestCase
+{
+    // The length of a hundredth of a degree along the equator or a meridian, which every fixture below is laid out in.
+    private static final double STEP = Haversine.EARTH_RADIUS * Math.toRadians(0.01);
+    private static final double ROOT_TWO = Math.sqrt(2);
+
+    // A no-fly zone between A (0, 0) and B (0, 0.02) on the equator, with corridors to the north of it.
+    private static final double[][] ZONES = { { 0.0, 0.01, 600 } };
+    private static final double[][] NORTH = { { 0.01, 0.0 }, { 0.01, 0.02 } };
+
+    public void testStraightLineIsTheDistance()
+    {
+        assertEquals(2 * STEP, cost(TravelTimeModels.STRAIGHT_LINE, 0, 0, 0, 0.02), 0.01);
+        assertEquals(STEP, cost(TravelTimeModels.STRAIGHT_LINE, 0, 0, 0.01, 0), 0.01);
+    }
+
+    public void testWindSpeedsUpAndSlowsDownTheLegs()
+    {
+        // A 5 m/s northerly against the reference airspeed of 20 m/s.
+        TravelTimeModel wind = TravelTimeModels.wind(5, 0);
+
+        assertEquals(STEP * 20 / 25, cost(wind, 0.01, 0, 0, 0), 0.01);
+        assertEquals(STEP * 20 / 15, cost(wind, 0, 0, 0.01, 0), 0.01);
+        assertEquals(STEP * 20 / Math.sqrt((20 * 20) - (5 * 5)), cost(wind, 0, 0, 0, 0.01), 0.01);
+        assertEquals(0.0, cost(wind, 0, 0, 0, 0), 0.0);
+
+        // A headwind faster than the drone still lets it make some headway.
+        assertEquals(STEP * 10, cost(TravelTimeModels.wind(30, 0), 0, 0, 0.01, 0), 0.01);
+        assertEquals(STEP, cost(TravelTimeModels.wind(0, 0), 0, 0, 0.01, 0), 0.01);
+    }
+
+    public void testClearLegsAreFlownStraight()
+    {
+        CorridorModel model = new CorridorModel("test", TravelTimeModels.STRAIGHT_LINE, ZONES, NORTH);
+
+        assertEquals(STEP, cost(model, 0, 0, 0.01, 0), 0.01);
+        assertEquals(2 * STEP, cost(model, 0.02, 0, 0.02, 0.02), 0.01);
+    }
+
+    public void testBlockedLegsGoThroughTheCorridor()
+    {
+        CorridorModel model = new CorridorModel("test", TravelTimeModels.STRAIGHT_LINE, ZONES, NORTH);
+
+        // Up to the first waypoint, across to the second and back down again.
+        assertEquals(4 * STEP, cost(model, 0, 0, 0, 0.02), 0.01);
+        assertEquals(4 * STEP, cost(model, 0, 0.02, 0, 0), 0.01);
+    }
+
+    public void testCheapestCorridorIsChosen()
+    {
+        // A waypoint to the south cuts the corner on both sides of the zone.
+        double[][] waypoints = { NORTH[0], NORTH[1], { -0.01, 0.01 } };
+        CorridorModel model = new CorridorModel("test", TravelTimeModels.STRAIGHT_LINE, ZONES, waypoints);
+
+        assertEquals(2 * ROOT_TWO * STEP, cost(model, 0, 0, 0, 0.02), 0.01);
+    }
+
+    public void testRoutesChainSeveralWaypoints()
+    {
+        // A second zone between the northern waypoints forces the route up round it through a third waypoint.
+        double[][] zones = { ZONES[0], { 0.01, 0.01, 550 } };
+        double[][] waypoints = { NORTH[0], NORTH[1], { 0.02, 0.01 } };
+        CorridorModel model = new CorridorModel("test", TravelTimeModels.STRAIGHT_LINE, zones, waypoints);
+
+        assertEquals((2 + (2 * ROOT_TWO)) * STEP, cost(model, 0, 0, 0, 0.02), 0.01);
+    }
+
+    public void testLegsWithNoCorridorAreFlownStraight()
+    {
+        CorridorModel model = new CorridorModel("test", TravelTimeModels.STRAIGHT_LINE, ZONES, new double[0][]);
+
+        assertEquals(2 * STEP, cost(model, 0, 0, 0, 0.02), 0.01);
+    }
+
+    public void testCorridorsAreLoadedFromAFile() throws IOException
+    {
+        File file = File.createTempFile("corridors", ".txt");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(file))
+        {
+            writer.println("NOFLY:0.0:0.01:600");
+            writer.println("NOFLY:broken");
+            writer.println("WAYPOINT:0.01:0.0");
+            writer.println("WAYPOINT:0.01:0.02");
+            writer.println("WIND:0:0");
+        }
+
+        TravelTimeModel model = TravelTimeModels.forName("corridors:" + file.getPath());
+
+        assertEquals("corridors:" + file.getPath(), model.getName());
+        assertEquals(4 * STEP, cost(model, 0, 0, 0, 0.02), 0.01);
+    }
+
+    public void testUnreadableFileGivesAModelWithoutZones()
+    {
+        CorridorModel model = CorridorModel.load(new File("does-not-exist/corridors.txt"));
+
+        assertEquals(2 * STEP, cost(model, 0, 0, 0, 0.02), 0.01);
+    }
+
+    public void testModelsAreFoundByName()
+    {
+        assertSame(TravelTimeModels.STRAIGHT_LINE, TravelTimeModels.forName(" Straight "));
+        assertEquals(STEP * 20 / 15, cost(TravelTimeModels.forName("wind:5:0"), 0, 0, 0.01, 0), 0.01);
+
+        for (String name : new String[] { "curved", "wind:5", "wind:fast:0" })
+        {
+            try
+            {
+                TravelTimeModels.forName(name);
+                fail(name);
+            }
+            catch (NoSuchElementException ex)
+            {
+                // Expected.
+            }
+        }
+    }
+
+    // cost(TravelTimeModel, double, double, double, double): Returns the cost of the leg between the two points, given in degrees.
+    private static double cost(TravelTimeModel model, double fromLatitude, double fromLongitude, double toLatitude, double toLongitude)
+    {
+        double fromLat = Math.toRadians(fromLatitude);
+        double toLat = Math.toRadians(toLatitude);
+
+        return model.getCost(fromLat, Math.cos(fromLat), Math.toRadians(fromLongitude), toLat, Math.cos(toLat), Math.toRadians(toLongitude));
+    }
+}
@@ -0,0 +1,56 @@
+package comp1206.sushi.common;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class WaitTimeHistogramTest extends TestCase
+{
+    public void testEmptyHistogramReturnsZero()
+    {
+        WaitTimeHistogram histogram = new WaitTimeHistogram();
+
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    public void testPercentilesAreWithinAQuarter()
+    {
+        WaitTimeHistogram histogram = new WaitTimeHistogram();
+        Random random = new Random(1206);
+        long[] waits = new long[10000];
+
+        for (int i = 0; i < waits.length; i++)
+        {
+            waits[i] = (long)(Math.exp(random.nextDouble() * 14));
+            histogram.record(waits[i]);
+        }
+
+        Arrays.sort(waits);
+
+        for (double percentile : new double[] { 1, 25, 50, 90, 99, 100 })
+        {
+            long exact = waits[(int)Math.ceil((percentile / 100.0) * waits.length) - 1];
+            long estimate = histogram.getPercentile(percentile);
+
+            assertTrue(percentile + ": " + estimate + " < " + exact, estimate >= exact);
+            assertTrue(percentile + ": " + estimate + " > " + exact, estimate <= exact * 1.25 + 1);
+        }
+    }
+
+    public void testPercentileNeverExceedsTheMaximum()
+    {
+        WaitTimeHistogram histogram = new WaitTimeHistogram();
+        histogram.record(1000);
+        histogram.record(1001);
+        histogram.record(-5);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(1001, histogram.getMax());
+        assertEquals(1001, histogram.getPercentile(100));
+        assertEquals(0, histogram.getPercentile(10));
+        assertEquals(667.0, histogram.getMean(), 0.0);
+    }
+}
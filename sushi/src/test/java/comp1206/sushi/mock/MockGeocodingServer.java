@@ -0,0 +1,122 @@
+package comp1206.sushi.mock;
+
+import comp1206.sushi.common.Geocoder;
+import comp1206.sushi.common.Geocoders;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONObject;
+
+// MockGeocodingServer class: Tiny local stand-in for the university's online postcode lookup, answering /postcode.php?postcode=<code> in the same JSON format from
+// another Geocoder (synthetic coordinates by default), so that anything that creates postcodes over HTTP can run offline and reproducibly.
+// It lives with the tests, which start it on a free port. Run it on its own from the test classpath with: java comp1206.sushi.mock.MockGeocodingServer [port] [fixture file],
+// then select it with GEOCODER:http:http://localhost:<port>/postcode.php
+public class MockGeocodingServer
+{
+    public static final int DEFAULT_PORT = 8089;
+    private static final String PATH = "/postcode.php";
+    private static final int THREADS = 4;
+
+    private final Geocoder source;
+    private final HttpServer server;
+    private final ExecutorService pool = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "Mock Geocoding Server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // MockGeocodingServer(int, Geocoder): Creates a server on the passed port (or any free port if it is 0), answering lookups from the passed geocoder.
+    public MockGeocodingServer(int port, Geocoder source) throws IOException
+    {
+        this.source = source;
+
+        // Without this, each small response waits on Nagle's algorithm and the client's delayed acknowledgement for around 40ms.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+
+        server.createContext(PATH, this::handle);
+        server.setExecutor(pool);
+    }
+
+    public void start() { server.start(); }
+
+    public void stop()
+    {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    // getUrl(): Returns the URL to pass to Geocoders.http() to look postcodes up with this server.
+    public String getUrl() { return "http://localhost:" + server.getAddress().getPort() + PATH; }
+
+    // handle(HttpExchange): Answers a lookup with the postcode and its coordinates, or a 404 if the source can't find it.
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        String code = "";
+        String query = exchange.getRequestURI().getRawQuery();
+
+        if (query != null)
+        {
+            for (String parameter : query.split("&"))
+            {
+                if (parameter.startsWith("postcode="))
+                    code = URLDecoder.decode(parameter.substring("postcode=".length()), "UTF-8");
+            }
+        }
+
+        double[] location = code.isEmpty() ? null : source.locate(code);
+        JSONObject response = new JSONObject();
+
+        if (location != null)
+        {
+            response.put("postcode", code.toUpperCase());
+            response.put("lat", String.valueOf(location[0]));
+            response.put("long", String.valueOf(location[1]));
+        }
+        else
+            response.put("error", "Postcode not found");
+
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders((location != null) ? 200 : 404, body.length);
+
+        try (OutputStream output = exchange.getResponseBody())
+        {
+            output.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Geocoder source = (args.length > 1) ? Geocoders.fixture(new File(args[1])) : Geocoders.SYNTHETIC;
+
+        MockGeocodingServer server = new MockGeocodingServer(port, source);
+        server.start();
+
+        System.out.println("Mock geocoding server answering from " + source.getName() + " at " + server.getUrl());
+
+        // The request threads are daemons, so keep the main thread alive until the server is killed.
+        try
+        {
+            Thread.currentThread().join();
+        }
+        catch (InterruptedException ex)
+        {
+            server.stop();
+        }
+    }
+}
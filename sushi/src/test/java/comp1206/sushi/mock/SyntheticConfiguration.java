@@ -0,0 +1,109 @@
+package comp1206.sushi.mock;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+// SyntheticConfiguration class: Writes a configuration file with any number of made up postcodes, users and orders, using the synthetic geocoder so that it loads
+// without any postcode data or network. The same seed always gives the same file, for reproducible load runs.
+// It lives with the tests. Run it from the test classpath with: java comp1206.sushi.mock.SyntheticConfiguration <file> [postcodes] [users] [orders] [seed]
+public class SyntheticConfiguration
+{
+    private static final String[] INGREDIENTS = { "Rice", "Nori", "Salmon", "Tuna", "Avocado", "Cucumber" };
+    private static final String[] DISHES = { "Salmon Nigiri:1*Rice,1*Salmon", "Tuna Roll:1*Rice,1*Nori,1*Tuna", "Avocado Roll:1*Rice,1*Nori,1*Avocado",
+            "Cucumber Maki:1*Rice,1*Nori,1*Cucumber" };
+    private static final int SUPPLIERS = 3;
+    private static final int STAFF = 5;
+    private static final int DRONES = 5;
+
+    private SyntheticConfiguration() { }
+
+    // write(String, int, int, int, long): Writes a configuration with the passed number of postcodes, users and orders to the file.
+    public static void write(String file, int postcodes, int users, int orders, long seed) throws FileNotFoundException
+    {
+        Random random = new Random(seed);
+        postcodes = Math.max(postcodes, SUPPLIERS + 1);
+
+        try (PrintWriter writer = new PrintWriter(file))
+        {
+            writer.println("GEOCODER:synthetic");
+
+            for (int i = 0; i < postcodes; i++)
+            {
+                writer.println("POSTCODE:" + postcode(i));
+            }
+
+            writer.println("RESTAURANT:Synthetic Sushi:" + postcode(0));
+
+            for (int i = 0; i < SUPPLIERS; i++)
+            {
+                writer.println("SUPPLIER:Supplier " + (i + 1) + ":" + postcode(i + 1));
+            }
+
+            for (int i = 0; i < INGREDIENTS.length; i++)
+            {
+                writer.println("INGREDIENT:" + INGREDIENTS[i] + ":grams:Supplier " + ((i % SUPPLIERS) + 1) + ":50:100:1");
+            }
+
+            for (String dish : DISHES)
+            {
+                String[] parts = dish.split(":");
+                writer.println("DISH:" + parts[0] + ":Synthetic " + parts[0].toLowerCase() + ":" + (3 + random.nextInt(5)) + ":5:10:" + parts[1]);
+            }
+
+            for (int i = 0; i < users; i++)
+            {
+                writer.println("USER:user" + i + ":password:" + (i + 1) + " Synthetic Street:" + postcode(1 + random.nextInt(postcodes - 1)));
+            }
+
+            for (int i = 0; i < orders && users > 0; i++)
+            {
+                String dish = DISHES[random.nextInt(DISHES.length)].split(":")[0];
+                writer.println("ORDER:user" + random.nextInt(users) + ":" + (1 + random.nextInt(3)) + " * " + dish);
+            }
+
+            for (String ingredient : INGREDIENTS)
+            {
+                writer.println("STOCK:" + ingredient + ":100");
+            }
+
+            for (int i = 0; i < STAFF; i++)
+            {
+                writer.println("STAFF:Staff " + (i + 1));
+            }
+
+            for (int i = 0; i < DRONES; i++)
+            {
+                writer.println("DRONE:" + (10 + (5 * (i % 3))));
+            }
+        }
+    }
+
+    // postcode(int): Returns a made up postcode that is different for every index, in the form ZZ<n> <digit><letter><letter>.
+    public static String postcode(int index)
+    {
+        int inward = index % 6760;
+        char first = (char)('A' + ((inward / 10) / 26));
+        char second = (char)('A' + ((inward / 10) % 26));
+
+        return "ZZ" + (1 + (index / 6760)) + " " + (inward % 10) + first + second;
+    }
+
+    public static void main(String[] args) throws FileNotFoundException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: SyntheticConfiguration <file> [postcodes] [users] [orders] [seed]");
+            return;
+        }
+
+        int postcodes = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        int users = (args.length > 2) ? Integer.parseInt(args[2]) : postcodes;
+        int orders = (args.length > 3) ? Integer.parseInt(args[3]) : users;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 0;
+
+        write(args[0], postcodes, users, orders, seed);
+
+        System.out.println("Wrote " + postcodes + " postcodes, " + users + " users and " + orders + " orders to " + args[0]);
+    }
+}